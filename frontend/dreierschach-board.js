@@ -0,0 +1,162 @@
+/**
+ * Selection of moves on the board in the browser. Clicks are mapped to the squares here, the selected figure and
+ * its legal destinations are marked on an overlay above the board. The server sends the legal moves of every
+ * position and only receives complete moves, as a "board-move" event of the board canvas.
+ * <p>
+ * The figures are copied from the sprite sheet of the server, which is loaded once and rasterized once for each
+ * size of the squares, so drawing a figure neither decodes an image nor requests one.
+ */
+const COLOR_SELECTED = 'rgba(0, 128, 0, 0.45)';
+const COLOR_TARGET = 'rgba(0, 128, 0, 0.6)';
+
+// the sprite sheets by their urls, kept while the page is open, the zoom creates a new board canvas
+const SHEETS = new Map();
+
+window.dreierschachBoard = {
+    /**
+     * @param canvas the canvas the server draws the board on
+     * @param overlay a canvas of the same size above it, for the selection
+     * @param sprites the url of the sprite sheet, its rows and columns
+     */
+    init(canvas, overlay, tileWidth, tileHeight, sprites, rows, columns) {
+        const board = {canvas, overlay, tileWidth, tileHeight, moves: new Map(), from: null};
+        board.sheet = this.sheet(sprites, rows, columns);
+        canvas.$board = board;
+        canvas.addEventListener('click', e => this.click(board, e.offsetX, e.offsetY));
+    },
+
+    /**
+     * draws a figure from the sprite sheet, figures drawn before the sheet is loaded follow once it is
+     *
+     * @param index the index of the figure in the sheet, -1 for an empty square
+     */
+    drawPiece(canvas, index, x, y, width, height) {
+        const board = canvas.$board;
+        const sheet = board.sheet;
+        if (!sheet.loaded) {
+            // only the last figure of a square is drawn, it may have been emptied in the meantime
+            sheet.pending.set(board.canvas, (sheet.pending.get(board.canvas) || new Map())
+                .set(x + ',' + y, {index, x, y, width, height}));
+            return;
+        }
+        if (index < 0) {
+            return;
+        }
+        const cellWidth = Math.round(width);
+        const cellHeight = Math.round(height);
+        const key = cellWidth + 'x' + cellHeight;
+        let raster = sheet.rasters.get(key);
+        if (!raster) {
+            raster = document.createElement('canvas');
+            raster.width = cellWidth * sheet.columns;
+            raster.height = cellHeight * sheet.rows;
+            raster.getContext('2d').drawImage(sheet.image, 0, 0, raster.width, raster.height);
+            sheet.rasters.set(key, raster);
+        }
+        const sx = (index % sheet.columns) * cellWidth;
+        const sy = Math.floor(index / sheet.columns) * cellHeight;
+        canvas.getContext('2d').drawImage(raster, sx, sy, cellWidth, cellHeight, x, y, width, height);
+    },
+
+    /**
+     * @return the sprite sheet, its loading is started by the first board using it
+     */
+    sheet(url, rows, columns) {
+        let sheet = SHEETS.get(url);
+        if (!sheet) {
+            sheet = {image: new Image(), rows, columns, loaded: false, rasters: new Map(), pending: new Map()};
+            sheet.image.onload = () => {
+                sheet.loaded = true;
+                sheet.pending.forEach((squares, canvas) => squares.forEach(
+                    p => this.drawPiece(canvas, p.index, p.x, p.y, p.width, p.height)));
+                sheet.pending.clear();
+            };
+            sheet.image.src = url;
+            SHEETS.set(url, sheet);
+        }
+        return sheet;
+    },
+
+    /**
+     * replaces the legal moves and clears the selection
+     *
+     * @param moves five numbers per move: x and y of the source, x and y of the destination, 1 for a capture
+     */
+    setMoves(canvas, moves) {
+        const board = canvas.$board;
+        board.moves = new Map();
+        for (let i = 0; i + 4 < moves.length; i += 5) {
+            const key = moves[i] + ',' + moves[i + 1];
+            if (!board.moves.has(key)) {
+                board.moves.set(key, []);
+            }
+            board.moves.get(key).push({x: moves[i + 2], y: moves[i + 3], capture: moves[i + 4] === 1});
+        }
+        this.select(board, null);
+    },
+
+    click(board, offsetX, offsetY) {
+        const y = 12 - Math.floor((offsetY - board.tileHeight * 0.125) / (board.tileHeight * 0.75));
+        const x = Math.floor((offsetX + (y - 5) * board.tileWidth / 2) / board.tileWidth);
+        const from = board.from;
+        if (from) {
+            const target = board.moves.get(from.x + ',' + from.y).find(t => t.x === x && t.y === y);
+            if (target) {
+                this.select(board, null);
+                board.canvas.dispatchEvent(new CustomEvent('board-move', {
+                    detail: {fromX: from.x, fromY: from.y, toX: x, toY: y}
+                }));
+                return;
+            }
+        }
+        this.select(board, board.moves.has(x + ',' + y) ? {x, y} : null);
+    },
+
+    /**
+     * marks the figure and all its legal destinations, a dot on every empty and a ring on every occupied one
+     */
+    select(board, from) {
+        board.from = from;
+        const ctx = board.overlay.getContext('2d');
+        ctx.clearRect(0, 0, board.overlay.width, board.overlay.height);
+        if (!from) {
+            return;
+        }
+        const tw = board.tileWidth;
+        const th = board.tileHeight;
+        const [px, py] = this.position(board, from.x, from.y);
+        ctx.fillStyle = COLOR_SELECTED;
+        ctx.beginPath();
+        ctx.moveTo(px + tw / 2, py);
+        ctx.lineTo(px + tw, py + th * .25);
+        ctx.lineTo(px + tw, py + th * .75);
+        ctx.lineTo(px + tw / 2, py + th);
+        ctx.lineTo(px, py + th * .75);
+        ctx.lineTo(px, py + th * .25);
+        ctx.closePath();
+        ctx.fill();
+
+        const targets = board.moves.get(from.x + ',' + from.y);
+        ctx.fillStyle = COLOR_TARGET;
+        ctx.strokeStyle = COLOR_TARGET;
+        ctx.lineWidth = tw * 0.08;
+        ctx.beginPath();
+        targets.filter(t => !t.capture).forEach(t => this.circle(board, ctx, t, tw * 0.15));
+        ctx.fill();
+        ctx.beginPath();
+        targets.filter(t => t.capture).forEach(t => this.circle(board, ctx, t, tw * 0.45));
+        ctx.stroke();
+    },
+
+    circle(board, ctx, square, radius) {
+        const [px, py] = this.position(board, square.x, square.y);
+        const cx = px + board.tileWidth / 2;
+        const cy = py + board.tileHeight / 2;
+        ctx.moveTo(cx + radius, cy);
+        ctx.arc(cx, cy, radius, 0, 2 * Math.PI, false);
+    },
+
+    position(board, x, y) {
+        return [x * board.tileWidth + (5 - y) * board.tileWidth / 2, (12 - y) * board.tileHeight * 0.75];
+    }
+};
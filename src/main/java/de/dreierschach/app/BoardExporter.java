@@ -1,12 +1,50 @@
 package de.dreierschach.app;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.dreierschach.app.engine.DreierschachEngineImpl;
 import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.BoardSnapshot;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.persistence.GameArchive;
+import de.dreierschach.app.persistence.MoveCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 @Component
 public class BoardExporter {
+    private static final int MAX_ERRORS = 100;
+
+    private static final Timer EXPORT = Timer.builder("dreierschach.games.export")
+            .description("Exporting games").register(Metrics.globalRegistry);
+    private static final Timer IMPORT = Timer.builder("dreierschach.games.import")
+            .description("Importing and validating games").register(Metrics.globalRegistry);
+    private static final Counter IMPORTED = Counter.builder("dreierschach.games.imported")
+            .tag("result", "valid").register(Metrics.globalRegistry);
+    private static final Counter REJECTED = Counter.builder("dreierschach.games.imported")
+            .tag("result", "rejected").register(Metrics.globalRegistry);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public String toJson(Board board) {
@@ -17,6 +55,13 @@ public class BoardExporter {
         }
     }
 
+    /**
+     * @return the JSON form of the snapshot, computed once for all readers
+     */
+    public String toJson(BoardSnapshot snapshot) {
+        return snapshot.toJson();
+    }
+
     public Board toBoard(String json) {
         try {
             return objectMapper.readValue(json, Board.class);
@@ -24,4 +69,265 @@ public class BoardExporter {
             throw new RuntimeException("Fehler beim Parsen des JSON-Strings", e);
         }
     }
+
+    /**
+     * writes the games as a JSON array of {@code {"id", "winner", "moves": ["b1-c1", ...]}} objects, one game at a
+     * time, so the memory needed does not depend on the number of games. Promotions are written as
+     * {@code "l5-m5=QUEEN"}
+     *
+     * @param boards the games to export
+     * @param out    the stream to write to, it is not closed
+     */
+    public void exportGames(Stream<Board> boards, OutputStream out) {
+        EXPORT.record(() -> writeGames(boards, out));
+    }
+
+    private void writeGames(Stream<Board> boards, OutputStream out) {
+        try (var generator = createGenerator(out)) {
+            generator.writeStartArray();
+            for (var board : (Iterable<Board>) boards::iterator) {
+                writeGame(generator, board.getId(), null, board.getMoves().mapToInt(MoveCodec::encode).toArray());
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Exportieren der Spiele", e);
+        }
+    }
+
+    /**
+     * exports all games of the archive without creating boards for them
+     *
+     * @param archive the archive
+     * @param out     the stream to write to, it is not closed
+     */
+    public void exportGames(GameArchive archive, OutputStream out) {
+        EXPORT.record(() -> writeGames(archive, out));
+    }
+
+    private void writeGames(GameArchive archive, OutputStream out) {
+        try (var generator = createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < archive.size(); i++) {
+                var header = archive.header(i);
+                writeGame(generator, header.getId().toString(), header.getWinner().orElse(null), archive.moves(i));
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Exportieren des Spielarchivs", e);
+        }
+    }
+
+    /**
+     * reads games written by {@link #exportGames(Stream, OutputStream)} one at a time and validates each game by
+     * replaying it through the engine. Games are validated in parallel, at most two games per core are held in
+     * memory at the same time. Valid games are passed to the consumer, which has to be thread safe, in no
+     * particular order.
+     *
+     * @param in       the stream to read from, it is not closed
+     * @param consumer receives every valid game
+     * @return the number of imported and rejected games
+     */
+    public ImportResult importGames(InputStream in, Consumer<ImportedGame> consumer) {
+        var result = IMPORT.record(() -> readGames(in, consumer));
+        IMPORTED.increment(result.getImported());
+        REJECTED.increment(result.getRejected());
+        return result;
+    }
+
+    private ImportResult readGames(InputStream in, Consumer<ImportedGame> consumer) {
+        var threads = Runtime.getRuntime().availableProcessors();
+        var executor = Executors.newFixedThreadPool(threads);
+        var permits = new Semaphore(2 * threads);
+        var imported = new AtomicInteger();
+        var errors = Collections.synchronizedList(new ArrayList<String>());
+        var rejected = new AtomicInteger();
+        try (var parser = objectMapper.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Array von Spielen erwartet");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                var game = readGame(parser);
+                permits.acquire();
+                executor.execute(() -> {
+                    try {
+                        var winner = game.winner == null ? null : Color.valueOf(game.winner);
+                        consumer.accept(new ImportedGame(replay(game), winner));
+                        imported.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        rejected.incrementAndGet();
+                        if (errors.size() < MAX_ERRORS) {
+                            errors.add(game.id + ": " + e.getMessage());
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Importieren der Spiele", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Import der Spiele abgebrochen", e);
+        } finally {
+            shutdown(executor);
+        }
+        return new ImportResult(imported.get(), rejected.get(), List.copyOf(errors));
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        var generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    private void writeGame(JsonGenerator generator, String id, Color winner, int[] moves) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", id);
+        generator.writeStringField("winner", winner == null ? null : winner.name());
+        generator.writeArrayFieldStart("moves");
+        for (var move : moves) {
+            var promotion = MoveCodec.promotion(move);
+            generator.writeString(MoveCodec.source(move) + "-" + MoveCodec.destination(move)
+                    + (promotion == null ? "" : "=" + promotion.name()));
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private GameData readGame(JsonParser parser) throws IOException {
+        var game = new GameData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var name = parser.getCurrentName();
+            var token = parser.nextToken();
+            switch (name) {
+                case "id":
+                    game.id = parser.getValueAsString();
+                    break;
+                case "winner":
+                    game.winner = token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                    break;
+                case "moves":
+                    if (token != JsonToken.START_ARRAY) {
+                        throw new IOException("Spiel " + game.id + ": Array von Zügen erwartet");
+                    }
+                    readMoves(parser, game);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return game;
+    }
+
+    /**
+     * reads the moves up to the end of the array, a game with a move that is not a string is rejected
+     */
+    private void readMoves(JsonParser parser, GameData game) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Spiel " + game.id + ": Ende der Züge erwartet");
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                game.moves.add(parser.getText());
+            } else {
+                if (game.error == null) {
+                    game.error = "ungültiger Zug " + parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private Board replay(GameData game) {
+        if (game.error != null) {
+            throw new IllegalArgumentException(game.error);
+        }
+        var engine = new DreierschachEngineImpl().startGame();
+        if (game.id != null) {
+            engine.board().setId(game.id);
+        }
+        for (var notation : game.moves) {
+            var parts = notation.split("=");
+            var squares = parts[0].split("-");
+            var promotion = parts.length == 2 ? toFigureType(parts[1]) : null;
+            if (parts.length > 2 || squares.length != 2
+                    || !engine.move(Pos.of(squares[0]), Pos.of(squares[1]), promotion)) {
+                throw new IllegalArgumentException("ungültiger Zug " + notation);
+            }
+        }
+        return engine.board();
+    }
+
+    private static FigureType toFigureType(String name) {
+        try {
+            return FigureType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ungültige Umwandlung " + name, e);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class GameData {
+        private String id;
+        private String winner;
+        private final List<String> moves = new ArrayList<>();
+        // the reason the game is rejected, found while it was read
+        private String error;
+    }
+
+    public static class ImportedGame {
+        private final Board board;
+        private final Color winner;
+
+        public ImportedGame(Board board, Color winner) {
+            this.board = board;
+            this.winner = winner;
+        }
+
+        public Board getBoard() {
+            return board;
+        }
+
+        public Color getWinner() {
+            return winner;
+        }
+    }
+
+    public static class ImportResult {
+        private final int imported;
+        private final int rejected;
+        private final List<String> errors;
+
+        public ImportResult(int imported, int rejected, List<String> errors) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errors = errors;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return the reasons for the first rejected games
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
 }
@@ -0,0 +1,187 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.BoardExporter;
+import de.dreierschach.app.engine.MaxNSearch;
+import de.dreierschach.app.engine.TranspositionTable;
+import de.dreierschach.app.model.Board;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Analyzes positions in the background: the position is searched with increasing depth until the analysis is
+ * cancelled or has used its time or depth, and the best lines of each depth are reported. All analyses share one
+ * transposition table, so analyzing the next position of a game starts with the scores found for it before.
+ * <p>
+ * The analyses run on a few threads with a bounded queue, analyses beyond the queue are rejected at once.
+ */
+@Component
+public class Analyzer {
+    private static Logger log = LoggerFactory.getLogger(Analyzer.class);
+
+    private final BoardExporter boardExporter;
+    private final TranspositionTable table;
+    private final int maxDepth;
+    private final long maxTime;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param tableSize the entries of the transposition table
+     * @param threads   the number of analyses running at the same time
+     * @param queue     the number of analyses waiting for a thread
+     * @param maxDepth  the depth an analysis stops at
+     * @param maxTime   the time an analysis stops after, from its start on a thread
+     */
+    public Analyzer(BoardExporter boardExporter,
+                    @Value("${dreierschach.analysis.table-size:1048576}") int tableSize,
+                    @Value("${dreierschach.analysis.threads:2}") int threads,
+                    @Value("${dreierschach.analysis.queue:8}") int queue,
+                    @Value("${dreierschach.analysis.max-depth:12}") int maxDepth,
+                    @Value("${dreierschach.analysis.max-time:60s}") Duration maxTime) {
+        this.boardExporter = boardExporter;
+        this.table = new TranspositionTable(tableSize);
+        this.maxDepth = maxDepth;
+        this.maxTime = maxTime.toNanos();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+            var thread = new Thread(runnable, "analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param json a position exported with {@link BoardExporter#toJson(Board)}
+     * @see #analyze(Board, int, Duration, Consumer)
+     */
+    public Analysis analyze(String json, int lines, Duration interval, Consumer<MaxNSearch.Iteration> listener) {
+        return analyze(boardExporter.toBoard(json), lines, interval, listener);
+    }
+
+    /**
+     * starts the analysis of the position, it waits if all threads are analyzing other positions
+     *
+     * @param board    the position, it is copied
+     * @param lines    the number of best moves to report
+     * @param interval the listener is called at most once within the interval, an iteration completed within it
+     *                 is reported at its end instead, unless a deeper one has replaced it by then
+     * @param listener called on the thread of the analysis with the lines of a depth
+     * @throws IllegalStateException if too many analyses are waiting for a thread
+     */
+    public Analysis analyze(Board board, int lines, Duration interval, Consumer<MaxNSearch.Iteration> listener) {
+        var position = Board.copyOf(board);
+        var analysis = new Analysis(interval, listener);
+        try {
+            analysis.future = executor.submit(() -> {
+                if (analysis.isCancelled()) {
+                    return;
+                }
+                try {
+                    analysis.deadline = System.nanoTime() + maxTime;
+                    var result = new MaxNSearch(null, MaxNSearch.defaultValues(), table)
+                            .analyze(position, lines, maxDepth, analysis::poll, analysis::report);
+                    analysis.flush();
+                    log.debug("Analyzed position {} to depth {}", position.getHash(), result.getDepth());
+                } catch (RuntimeException e) {
+                    log.warn("Analysis failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("zu viele Analysen in Arbeit", e);
+        }
+        return analysis;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * a running analysis
+     */
+    public static class Analysis {
+        private final long interval;
+        private final Consumer<MaxNSearch.Iteration> listener;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private Future<?> future;
+        // written by the thread of the analysis only
+        private long reported;
+        private long deadline;
+        private MaxNSearch.Iteration pending;
+
+        Analysis(Duration interval, Consumer<MaxNSearch.Iteration> listener) {
+            this.interval = interval.toNanos();
+            this.listener = listener;
+            this.reported = System.nanoTime() - this.interval;
+        }
+
+        /**
+         * stops the analysis, the listener is not called any more once the running iteration has noticed it
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        /**
+         * called by the search at every node: reports a held back iteration once the interval has passed
+         *
+         * @return true, if the analysis has been cancelled or its time is up
+         */
+        private boolean poll() {
+            var now = System.nanoTime();
+            if (pending != null && now - reported >= interval) {
+                reported = now;
+                send(pending);
+                pending = null;
+            }
+            return cancelled.get() || now - deadline > 0;
+        }
+
+        private void report(MaxNSearch.Iteration iteration) {
+            var now = System.nanoTime();
+            if (now - reported >= interval) {
+                reported = now;
+                pending = null;
+                send(iteration);
+            } else {
+                pending = iteration;
+            }
+        }
+
+        /**
+         * reports the last iteration, when the analysis ends before the interval has passed
+         */
+        private void flush() {
+            if (pending != null) {
+                send(pending);
+                pending = null;
+            }
+        }
+
+        private void send(MaxNSearch.Iteration iteration) {
+            if (!cancelled.get()) {
+                listener.accept(iteration);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.engine.LegalMoves;
+import de.dreierschach.app.engine.MaxNSearch;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.GameClock;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.persistence.MoveCodec;
+import de.dreierschach.app.tablebase.Tablebases;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the moves of the computer. Positions of the opening book are answered with a weighted random book
+ * move, all other positions are searched until the time budget is used up, using the endgame tables.
+ */
+@Component
+public class ComputerPlayer {
+    private static Logger log = LoggerFactory.getLogger(ComputerPlayer.class);
+
+    static final int MAX_DEPTH = 64;
+
+    private static final Timer BOOK = moveTimer("book");
+    private static final Timer SEARCH = moveTimer("search");
+
+    private final OpeningBook book;
+    private final Tablebases tablebases;
+    private final Duration budget;
+    private final TimeManager timeManager;
+
+    public ComputerPlayer(OpeningBook book, Tablebases tablebases,
+                          @Value("${dreierschach.ai.budget:2s}") Duration budget) {
+        this.book = book;
+        this.tablebases = tablebases;
+        this.budget = budget;
+        this.timeManager = new TimeManager(budget);
+    }
+
+    public Optional<Move> chooseMove(Board board) {
+        return chooseMove(board, budget);
+    }
+
+    /**
+     * @param clock the clock of the game, the time to search is taken from the remaining time of the player to move
+     */
+    public Optional<Move> chooseMove(Board board, GameClock clock) {
+        if (clock == null) {
+            return chooseMove(board);
+        }
+        return chooseMove(board, timeManager.budget(clock, board.getPlayer(), board.getMoveCount()));
+    }
+
+    /**
+     * @param board  the position, it is not changed
+     * @param budget the time to search, if the position is not in the book
+     * @return the move or empty, if the player to move cannot move
+     */
+    public Optional<Move> chooseMove(Board board, Duration budget) {
+        var sample = Timer.start();
+        var move = bookMove(board);
+        if (move.isPresent()) {
+            sample.stop(BOOK);
+            return move;
+        }
+        var result = new MaxNSearch(tablebases).search(board, System.nanoTime() + budget.toNanos(), MAX_DEPTH);
+        sample.stop(SEARCH);
+        log.debug("Searched {} nodes to depth {}, score {}", result.getNodes(), result.getDepth(), result.getScore());
+        return Optional.ofNullable(result.getMove());
+    }
+
+    /**
+     * @return a weighted random move of the book, which is legal in the position
+     */
+    Optional<Move> bookMove(Board board) {
+        var entries = book.probe(board.getHash());
+        if (entries.isEmpty()) {
+            return Optional.empty();
+        }
+        var legalMoves = new DreierschachEngineImpl().withBoard(board).legalMoves();
+        var total = 0;
+        for (var entry : entries) {
+            if (isLegal(legalMoves, entry.getMove())) {
+                total += entry.getWeight();
+            }
+        }
+        if (total == 0) {
+            return Optional.empty();
+        }
+        var choice = ThreadLocalRandom.current().nextInt(total);
+        for (var entry : entries) {
+            if (isLegal(legalMoves, entry.getMove())) {
+                choice -= entry.getWeight();
+                if (choice < 0) {
+                    var code = entry.getMove();
+                    var move = board.createMove(MoveCodec.source(code), MoveCodec.destination(code));
+                    var promotion = MoveCodec.promotion(code);
+                    return Optional.of(promotion == null ? move : move.withPromotion(promotion));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isLegal(LegalMoves legalMoves, int code) {
+        return legalMoves.isLegal(MoveCodec.source(code), MoveCodec.destination(code));
+    }
+
+    private static Timer moveTimer(String source) {
+        return Timer.builder("dreierschach.ai.move")
+                .description("Choosing a move of the computer")
+                .tag("source", source)
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,90 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.engine.MaxNSearch;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.tablebase.Tablebases;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The settings of the search of a computer player, e.g. for tuning them in {@link SelfPlay}.
+ */
+public class EngineVariant {
+    private final String name;
+    private final Duration budget;
+    private final int maxDepth;
+    private final int[] values;
+
+    public EngineVariant(String name, Duration budget, int maxDepth, int[] values) {
+        this.name = name;
+        this.budget = budget;
+        this.maxDepth = maxDepth;
+        this.values = values.clone();
+    }
+
+    /**
+     * @param spec the name, optionally followed by settings, e.g. {@code deep:depth=3,budget=2s,queen=1000}. The
+     *             settings are the depth, the time budget of a move and the values of the figures.
+     */
+    public static EngineVariant parse(String spec) {
+        var nameAndSettings = spec.split(":", 2);
+        var budget = Duration.ofSeconds(1);
+        var maxDepth = ComputerPlayer.MAX_DEPTH;
+        var values = MaxNSearch.defaultValues();
+        if (nameAndSettings.length > 1) {
+            for (var setting : nameAndSettings[1].split(",")) {
+                var keyAndValue = setting.split("=", 2);
+                if (keyAndValue.length != 2) {
+                    throw new IllegalArgumentException("ungültige Einstellung " + setting);
+                }
+                var key = keyAndValue[0].trim();
+                var value = keyAndValue[1].trim();
+                switch (key) {
+                    case "depth":
+                        maxDepth = Integer.parseInt(value);
+                        break;
+                    case "budget":
+                        budget = DurationStyle.detectAndParse(value);
+                        break;
+                    default:
+                        try {
+                            var type = FigureType.valueOf(key.toUpperCase(Locale.ROOT));
+                            values[type.ordinal()] = Integer.parseInt(value);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("ungültige Einstellung " + setting, e);
+                        }
+                }
+            }
+        }
+        return new EngineVariant(nameAndSettings[0], budget, maxDepth, values);
+    }
+
+    /**
+     * searches the best move of the player to move
+     *
+     * @param tablebases the endgame tables or null
+     */
+    public MaxNSearch.SearchResult search(Board board, Tablebases tablebases) {
+        return new MaxNSearch(tablebases, values).search(board, System.nanoTime() + budget.toNanos(), maxDepth);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getBudget() {
+        return budget;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
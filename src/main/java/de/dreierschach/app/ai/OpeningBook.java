@@ -0,0 +1,263 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.persistence.GameArchive;
+import de.dreierschach.app.persistence.MoveCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted moves for known positions. The book file holds fixed-size entries of position hash, move in
+ * {@link MoveCodec} format and weight, sorted by hash and read through a memory mapping, so a probe is a binary
+ * search that does not allocate unless the position is in the book.
+ * <p>
+ * A missing book is built from the archive in the background, the book is empty until it is done, so the start of
+ * the application does not wait for the archive to be read.
+ */
+@Component
+public class OpeningBook {
+    private static Logger log = LoggerFactory.getLogger(OpeningBook.class);
+
+    static final int MAGIC = 0x44534f42;
+    static final int HEADER_BYTES = 16;
+    /**
+     * hash (8), move (4), weight (4)
+     */
+    static final int ENTRY_BYTES = 16;
+
+    private static final Counter HITS = Counter.builder("dreierschach.book.probe").tag("result", "hit")
+            .register(Metrics.globalRegistry);
+    private static final Counter MISSES = Counter.builder("dreierschach.book.probe").tag("result", "miss")
+            .register(Metrics.globalRegistry);
+
+    // replaced once, when the book has been built in the background
+    private volatile Mapping mapping;
+
+    /**
+     * opens the book, if it does not exist yet it is built from the archived games in the background
+     *
+     * @param file    the book file
+     * @param archive the archived games
+     * @param plies   the number of moves of each game taken into the book
+     */
+    @Autowired
+    public OpeningBook(@Value("${dreierschach.book.file:data/book/book.bin}") Path file, GameArchive archive,
+                       @Value("${dreierschach.book.plies:24}") int plies) {
+        if (Files.exists(file) || archive.size() == 0) {
+            mapping = Mapping.open(file);
+            return;
+        }
+        mapping = Mapping.EMPTY;
+        var builder = new Thread(() -> {
+            try {
+                log.info("Building the opening book from {} archived games", archive.size());
+                build(archive, plies, file);
+                mapping = Mapping.open(file);
+                log.info("Opening book built with {} entries", mapping.size);
+            } catch (RuntimeException e) {
+                log.error("Opening book not built", e);
+            }
+        }, "opening-book");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public OpeningBook(Path file) {
+        mapping = Mapping.open(file);
+    }
+
+    /**
+     * @param hash the hash of the position, see {@link de.dreierschach.app.model.Board#getHash()}
+     * @return the moves of the position with their weights, empty if the position is not in the book
+     */
+    public List<Entry> probe(long hash) {
+        var mapping = this.mapping;
+        var size = mapping.size;
+        var low = 0;
+        var high = size;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (mapping.hash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == size || mapping.hash(low) != hash) {
+            MISSES.increment();
+            return List.of();
+        }
+        HITS.increment();
+        var result = new ArrayList<Entry>();
+        for (int i = low; i < size && mapping.hash(i) == hash; i++) {
+            var base = HEADER_BYTES + i * ENTRY_BYTES;
+            result.add(new Entry(hash, mapping.map.getInt(base + 8), mapping.map.getInt(base + 12)));
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of entries, 0 while the book is being built
+     */
+    public int size() {
+        return mapping.size;
+    }
+
+    @PreDestroy
+    public void close() {
+        var channel = mapping.channel;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Schließen der Eröffnungsbibliothek", e);
+        }
+    }
+
+    /**
+     * builds a book from the first moves of the archived games. A move gets one point every time it has been
+     * played in a position and two more if its player won the game.
+     *
+     * @param archive the archived games
+     * @param plies   the number of moves of each game taken into the book
+     * @param file    the book file, it is replaced atomically
+     */
+    public static void build(GameArchive archive, int plies, Path file) {
+        var weights = new HashMap<Long, Map<Integer, Integer>>();
+        for (int number = 0; number < archive.size(); number++) {
+            var winner = archive.header(number).getWinner().orElse(null);
+            var moves = archive.moves(number);
+            var engine = new DreierschachEngineImpl().startGame();
+            for (int i = 0; i < Math.min(plies, moves.length); i++) {
+                var board = engine.board();
+                var hash = board.getHash();
+                var player = board.getPlayer();
+                var code = moves[i];
+                if (!engine.move(MoveCodec.source(code), MoveCodec.destination(code), MoveCodec.promotion(code))) {
+                    log.warn("Archived game {} contains an invalid move {}", number, i);
+                    break;
+                }
+                // the move as played, e.g. with the casteling flags set by the engine
+                var played = MoveCodec.encode(board.getLastMove());
+                weights.computeIfAbsent(hash, h -> new HashMap<>()).merge(played, weight(player, winner),
+                        Integer::sum);
+            }
+        }
+        var entries = new ArrayList<Entry>();
+        weights.forEach((hash, moves) -> moves.forEach((move, weight) -> entries.add(new Entry(hash, move, weight))));
+        entries.sort((e1, e2) -> e1.hash != e2.hash ? Long.compare(e1.hash, e2.hash)
+                : Integer.compare(e2.weight, e1.weight));
+        write(entries, file);
+    }
+
+    private static int weight(Color player, Color winner) {
+        return player == winner ? 3 : 1;
+    }
+
+    private static void write(List<Entry> entries, Path file) {
+        var buffer = ByteBuffer.allocate(HEADER_BYTES + entries.size() * ENTRY_BYTES)
+                .putInt(MAGIC)
+                .putInt(entries.size())
+                .putLong(0);
+        for (var entry : entries) {
+            buffer.putLong(entry.hash).putInt(entry.move).putInt(entry.weight);
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, buffer.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Schreiben der Eröffnungsbibliothek " + file, e);
+        }
+    }
+
+    /**
+     * the mapped book file
+     */
+    private static class Mapping {
+        private static final Mapping EMPTY = new Mapping(null, null, 0);
+
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+        private final int size;
+
+        Mapping(FileChannel channel, MappedByteBuffer map, int size) {
+            this.channel = channel;
+            this.map = map;
+            this.size = size;
+        }
+
+        static Mapping open(Path file) {
+            try {
+                if (!Files.exists(file)) {
+                    write(List.of(), file);
+                }
+                var channel = FileChannel.open(file, StandardOpenOption.READ);
+                var map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (map.getInt(0) != MAGIC) {
+                    channel.close();
+                    throw new IOException("Keine Eröffnungsbibliothek: " + file);
+                }
+                return new Mapping(channel, map, map.getInt(4));
+            } catch (IOException e) {
+                throw new RuntimeException("Fehler beim Öffnen der Eröffnungsbibliothek " + file, e);
+            }
+        }
+
+        long hash(int index) {
+            return map.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+        }
+    }
+
+    public static class Entry {
+        private final long hash;
+        private final int move;
+        private final int weight;
+
+        public Entry(long hash, int move, int weight) {
+            this.hash = hash;
+            this.move = move;
+            this.weight = weight;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the move in {@link MoveCodec} format
+         */
+        public int getMove() {
+            return move;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.persistence.GameArchive;
+import de.dreierschach.app.tablebase.Tablebases;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays games between three engine variants without the user interface, each variant on every seat: one round
+ * consists of the six permutations of the variants on the seats. The games run in parallel, each with its own
+ * board, and are written to the archive. A game ends when the player to move cannot move or a king is captured,
+ * the player who moved last wins. A game drawn by repetition or without progress, see
+ * {@link de.dreierschach.app.model.PositionHistory}, or reaching the maximal number of plies is a draw.
+ * <p>
+ * Usage: {@code SelfPlay <archive directory> <rounds> <variant> <variant> <variant> [<tablebase directory>]},
+ * see {@link EngineVariant#parse(String)}
+ */
+public class SelfPlay {
+    private static Logger log = LoggerFactory.getLogger(SelfPlay.class);
+
+    static final int MAX_PLIES = 600;
+
+    private static final Color[] COLORS = Color.values();
+    private static final int[][] PERMUTATIONS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+    private final GameArchive archive;
+    private final Tablebases tablebases;
+    private final int threads;
+    private final int maxPlies;
+
+    /**
+     * @param tablebases the endgame tables or null
+     * @param threads    the number of games played at the same time
+     */
+    public SelfPlay(GameArchive archive, Tablebases tablebases, int threads, int maxPlies) {
+        this.archive = archive;
+        this.tablebases = tablebases;
+        this.threads = threads;
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: SelfPlay <archive directory> <rounds> <variant> <variant> <variant> "
+                    + "[<tablebase directory>]  e.g. data/archive 10 base fast:depth=2 rich:queen=1000");
+            System.exit(1);
+        }
+        var archive = new GameArchive(Paths.get(args[0]));
+        var tablebases = args.length > 5 ? new Tablebases(Paths.get(args[5])) : null;
+        var variants = List.of(EngineVariant.parse(args[2]), EngineVariant.parse(args[3]),
+                EngineVariant.parse(args[4]));
+        var selfPlay = new SelfPlay(archive, tablebases, Runtime.getRuntime().availableProcessors(), MAX_PLIES);
+        var standings = selfPlay.play(variants, Integer.parseInt(args[1]));
+        System.out.println(standings);
+        archive.close();
+        if (tablebases != null) {
+            tablebases.close();
+        }
+    }
+
+    /**
+     * @param variants three variants
+     * @param rounds   the number of rounds of six games
+     */
+    public Standings play(List<EngineVariant> variants, int rounds) {
+        if (variants.size() != COLORS.length) {
+            throw new IllegalArgumentException("drei Varianten erwartet, nicht " + variants.size());
+        }
+        var standings = new Standings(variants);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var games = new ArrayList<Future<?>>();
+            for (int round = 0; round < rounds; round++) {
+                for (var permutation : PERMUTATIONS) {
+                    var seats = new EngineVariant[COLORS.length];
+                    for (int i = 0; i < seats.length; i++) {
+                        seats[i] = variants.get(permutation[i]);
+                    }
+                    games.add(executor.submit(() -> play(seats, standings)));
+                }
+            }
+            for (var game : games) {
+                game.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Fehler beim Spielen einer Partie", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unterbrochen beim Spielen der Partien", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return standings;
+    }
+
+    /**
+     * plays and archives one game
+     *
+     * @param seats the variants playing white, brown and black
+     * @return the winner or null, if the game is a draw
+     */
+    Color play(EngineVariant[] seats, Standings standings) {
+        var engine = new DreierschachEngineImpl().startGame();
+        var board = engine.board();
+        Color winner = null;
+        Color loser = null;
+        for (int ply = 0; ply < maxPlies && winner == null && !engine.positions().isDraw(); ply++) {
+            var player = board.getPlayer();
+            var variant = seats[player.ordinal()];
+            var start = System.nanoTime();
+            var move = variant.search(board, tablebases).getMove();
+            standings.addMoveTime(variant, System.nanoTime() - start);
+            if (move == null) {
+                winner = COLORS[(player.ordinal() + COLORS.length - 1) % COLORS.length];
+                loser = player;
+                break;
+            }
+            if (!engine.move(move.p1(), move.p2(), move.promotion())) {
+                throw new IllegalStateException("Variant " + variant + " chose the invalid move " + move);
+            }
+            if (move.f2().getType() == FigureType.KING) {
+                winner = player;
+                loser = move.f2().getColor();
+            }
+        }
+        archive.archive(board, winner);
+        standings.addGame(seats, winner, loser);
+        log.debug("Game {} finished, winner {}", board.getId(), winner);
+        return winner;
+    }
+
+    /**
+     * the results of the variants, safe to be updated by the games running in parallel
+     */
+    public static class Standings {
+        private final Map<EngineVariant, Result> results = new IdentityHashMap<>();
+        private final List<EngineVariant> variants;
+
+        Standings(List<EngineVariant> variants) {
+            this.variants = variants;
+            variants.forEach(variant -> results.put(variant, new Result()));
+        }
+
+        public Result get(EngineVariant variant) {
+            return results.get(variant);
+        }
+
+        synchronized void addGame(EngineVariant[] seats, Color winner, Color loser) {
+            for (int i = 0; i < seats.length; i++) {
+                var result = results.get(seats[i]);
+                result.games++;
+                if (winner == null) {
+                    result.draws++;
+                    result.score += 1.0 / seats.length;
+                } else if (winner.ordinal() == i) {
+                    result.wins++;
+                    result.score += 1;
+                } else if (loser != null && loser.ordinal() == i) {
+                    result.losses++;
+                }
+            }
+        }
+
+        synchronized void addMoveTime(EngineVariant variant, long nanos) {
+            var result = results.get(variant);
+            if (result.moves == result.moveTimes.length) {
+                result.moveTimes = Arrays.copyOf(result.moveTimes, Math.max(64, 2 * result.moveTimes.length));
+            }
+            result.moveTimes[result.moves++] = nanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            var result = new StringBuilder(String.format("%-16s %6s %6s %6s %6s %8s %8s %10s %10s %10s %10s%n",
+                    "variant", "games", "wins", "losses", "draws", "score", "moves", "p50 ms", "p90 ms", "p99 ms",
+                    "max ms"));
+            for (var variant : variants) {
+                var r = results.get(variant);
+                result.append(String.format("%-16s %6d %6d %6d %6d %8.2f %8d %10.1f %10.1f %10.1f %10.1f%n",
+                        variant.getName(), r.games, r.wins, r.losses, r.draws, r.score, r.moves,
+                        r.percentile(0.5), r.percentile(0.9), r.percentile(0.99), r.percentile(1)));
+            }
+            return result.toString();
+        }
+    }
+
+    public static class Result {
+        private int games;
+        private int wins;
+        private int losses;
+        private int draws;
+        private double score;
+        private int moves;
+        private long[] moveTimes = new long[0];
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        /**
+         * @return the number of games in which the variant could not move any more or lost its king
+         */
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * @return one point for every win and a third for every draw
+         */
+        public double getScore() {
+            return score;
+        }
+
+        public int getMoves() {
+            return moves;
+        }
+
+        /**
+         * @param p between 0 and 1
+         * @return the time the given part of the moves took at most, in milliseconds
+         */
+        public double percentile(double p) {
+            if (moves == 0) {
+                return 0;
+            }
+            var sorted = Arrays.copyOf(moveTimes, moves);
+            Arrays.sort(sorted);
+            var index = Math.min(moves - 1, (int) Math.ceil(p * moves) - 1);
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
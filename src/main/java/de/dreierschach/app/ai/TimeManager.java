@@ -0,0 +1,49 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.GameClock;
+
+import java.time.Duration;
+
+/**
+ * Divides the remaining time of the computer among its remaining moves. Each move gets its share of the remaining
+ * time, most of the increment and the whole delay, but never more than a third of the remaining time, so a single
+ * deep search cannot lose the game on time.
+ */
+public class TimeManager {
+    // the number of moves of each player a game is expected to last and the least number of moves still expected
+    static final int EXPECTED_MOVES = 60;
+    static final int MIN_MOVES_TO_GO = 15;
+    // kept back for answering the request and the latency of the user interface
+    static final Duration SAFETY = Duration.ofMillis(100);
+    static final Duration MIN_BUDGET = Duration.ofMillis(50);
+
+    private final Duration max;
+
+    /**
+     * @param max the longest time a move is searched, even if there is plenty of time
+     */
+    public TimeManager(Duration max) {
+        this.max = max;
+    }
+
+    /**
+     * @param moveCount the number of moves made in the game by all players
+     * @return the time to search the move of the given player
+     */
+    public Duration budget(GameClock clock, Color player, int moveCount) {
+        var control = clock.getControl();
+        var remaining = clock.remaining(player).minus(SAFETY);
+        var movesToGo = Math.max(MIN_MOVES_TO_GO, EXPECTED_MOVES - moveCount / Color.values().length);
+        var budget = remaining.dividedBy(movesToGo)
+                .plus(control.getIncrement().multipliedBy(3).dividedBy(4))
+                .plus(control.getDelay());
+        budget = min(budget, remaining.dividedBy(3).plus(control.getDelay()));
+        budget = min(budget, max);
+        return budget.compareTo(MIN_BUDGET) < 0 ? MIN_BUDGET : budget;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,76 @@
+package de.dreierschach.app.clock;
+
+import de.dreierschach.app.model.GameClock;
+import de.dreierschach.app.model.TimeControl;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the clocks of the games with the configured time control and ticks the clocks of all games: a single
+ * thread calls every tick listener, e.g. to push the remaining times to the browsers, so the number of threads
+ * does not grow with the number of games or sessions.
+ */
+@Component
+public class GameClocks {
+    private static Logger log = LoggerFactory.getLogger(GameClocks.class);
+
+    private final TimeControl control;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    public GameClocks(@Value("${dreierschach.clock.initial:30m}") Duration initial,
+                      @Value("${dreierschach.clock.increment:5s}") Duration increment,
+                      @Value("${dreierschach.clock.delay:0s}") Duration delay,
+                      @Value("${dreierschach.clock.tick:500ms}") Duration tick) {
+        this.control = new TimeControl(initial, increment, delay);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "game-clocks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public TimeControl getControl() {
+        return control;
+    }
+
+    public GameClock newClock() {
+        return new GameClock(control);
+    }
+
+    /**
+     * @param listener called on every tick, it must not block
+     * @return removes the listener
+     */
+    public Runnable onTick(Runnable listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    private void tick() {
+        for (var listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                // a failing listener must not stop the ticks of the other games
+                log.warn("Tick listener failed", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
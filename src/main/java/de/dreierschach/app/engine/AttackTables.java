@@ -0,0 +1,278 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.BitBoard;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Dir;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed bitboard masks of every square: the single steps and jumps, the rays of the twelve straight and
+ * diagonal directions and the two squares flanking each diagonal step. A diagonal step is blocked, if both of
+ * its flanks are occupied, so testing it is a single mask test, see {@link #isBlocked(Board, int, int)}.
+ * <p>
+ * The directions are numbered 0 to 5 for the straight and 6 to 11 for the diagonal ones, as in {@link Dir}.
+ */
+final class AttackTables {
+    static final int DIRECTIONS = 12;
+    /**
+     * the line of two squares a knight's jump apart, see {@link #line(int, int)}
+     */
+    static final int JUMP = -1;
+    /**
+     * the line of two squares neither on a ray nor a knight's jump apart
+     */
+    static final int NO_LINE = -2;
+
+    private static final int WORDS = BitBoard.WORDS;
+
+    // [square * WORDS + word]
+    private static final long[] STRAIGHT_STEPS = new long[Pos.SQUARES * WORDS];
+    private static final long[] DIAGONAL_STEPS = new long[Pos.SQUARES * WORDS];
+    private static final long[] JUMPS = new long[Pos.SQUARES * WORDS];
+    // [direction][square * WORDS + word]
+    private static final long[][] RAYS = new long[DIRECTIONS][Pos.SQUARES * WORDS];
+    // the squares of the rays in the order they are passed: [direction][square][step]
+    private static final int[][][] RAY_SQUARES = new int[DIRECTIONS][Pos.SQUARES][];
+    // the flanks of the diagonal steps, empty if one of them is not on the board: [direction - 6][square * WORDS]
+    private static final long[][] FLANKS = new long[DIRECTIONS / 2][Pos.SQUARES * WORDS];
+    // the direction * 16 + distance from a square to another one, JUMP or NO_LINE: [source * SQUARES + destination]
+    private static final int[] LINES = new int[Pos.SQUARES * Pos.SQUARES];
+    // the squares a pawn of a color captures on: [color][square * WORDS + word]
+    private static final long[][] PAWN_CAPTURES = new long[Color.values().length][Pos.SQUARES * WORDS];
+
+    static {
+        Arrays.fill(LINES, NO_LINE);
+        for (int s = 0; s < Pos.SQUARES; s++) {
+            var pos = Pos.square(s);
+            for (int d = 0; d < DIRECTIONS; d++) {
+                var dir = dir(d);
+                var p = Pos.add(pos, dir);
+                var squares = new int[13];
+                var length = 0;
+                while (p.isValid()) {
+                    squares[length++] = p.index();
+                    LINES[s * Pos.SQUARES + p.index()] = d * 16 + length;
+                    add(RAYS[d], s, p.index());
+                    p = Pos.add(p, dir);
+                }
+                RAY_SQUARES[d][s] = Arrays.copyOf(squares, length);
+                if (length > 0) {
+                    add(d < 6 ? STRAIGHT_STEPS : DIAGONAL_STEPS, s, squares[0]);
+                }
+            }
+            for (int d = 0; d < 6; d++) {
+                var straight = Dir.get(Dir.Type.straight, d);
+                var left = Pos.add(pos, straight);
+                var right = Pos.add(pos, Dir.rotateRight(straight));
+                if (left.isValid() && right.isValid()) {
+                    add(FLANKS[d], s, left.index());
+                    add(FLANKS[d], s, right.index());
+                }
+            }
+            for (int j = 0; j < Dir.Type.jump.size(); j++) {
+                var p = Pos.add(pos, Dir.get(Dir.Type.jump, j));
+                if (p.isValid()) {
+                    add(JUMPS, s, p.index());
+                    LINES[s * Pos.SQUARES + p.index()] = JUMP;
+                }
+            }
+            for (var color : Color.values()) {
+                for (var capture : PawnTables.capture(color, s)) {
+                    if (capture >= 0) {
+                        add(PAWN_CAPTURES[color.ordinal()], s, capture);
+                    }
+                }
+            }
+        }
+    }
+
+    private AttackTables() {
+    }
+
+    /**
+     * @return the direction and distance from the source to the destination, to be read by
+     * {@link #direction(int)} and {@link #distance(int)}, or {@link #JUMP} or {@link #NO_LINE}
+     */
+    static int line(int source, int destination) {
+        return LINES[source * Pos.SQUARES + destination];
+    }
+
+    /**
+     * @return the direction of the line, 0 to 11, or a negative value, if the squares are not on a ray
+     */
+    static int direction(int line) {
+        return line < 0 ? line : line >> 4;
+    }
+
+    /**
+     * @return the number of steps along the line
+     */
+    static int distance(int line) {
+        return line & 15;
+    }
+
+    /**
+     * @return the squares of the ray in the order they are passed, not to be modified
+     */
+    static int[] ray(int direction, int square) {
+        return RAY_SQUARES[direction][square];
+    }
+
+    /**
+     * @return true, if both flanks of the diagonal step in the given direction (6 to 11) are occupied
+     */
+    static boolean isBlocked(Board b, int direction, int square) {
+        var flanks = FLANKS[direction - 6];
+        var i = square * WORDS;
+        var flanks0 = flanks[i];
+        var flanks1 = flanks[i + 1];
+        return (flanks0 | flanks1) != 0 && (b.occupiedBits(0) & flanks0) == flanks0
+                && (b.occupiedBits(1) & flanks1) == flanks1;
+    }
+
+    /**
+     * @return true, if a figure of an opponent of the player attacks the square
+     */
+    static boolean isAttacked(Board b, Color player, int square) {
+        var i = square * WORDS;
+        var occupied0 = b.occupiedBits(0);
+        var occupied1 = b.occupiedBits(1);
+        var enemies0 = occupied0 & ~b.colorBits(player, 0);
+        var enemies1 = occupied1 & ~b.colorBits(player, 1);
+        if ((JUMPS[i] & enemies0 & b.typeBits(FigureType.KNIGHT, 0)) != 0
+                || (JUMPS[i + 1] & enemies1 & b.typeBits(FigureType.KNIGHT, 1)) != 0) {
+            return true;
+        }
+        if ((STRAIGHT_STEPS[i] & enemies0 & b.typeBits(FigureType.KING, 0)) != 0
+                || (STRAIGHT_STEPS[i + 1] & enemies1 & b.typeBits(FigureType.KING, 1)) != 0) {
+            return true;
+        }
+        var straight0 = enemies0 & (b.typeBits(FigureType.ROOK, 0) | b.typeBits(FigureType.QUEEN, 0));
+        var straight1 = enemies1 & (b.typeBits(FigureType.ROOK, 1) | b.typeBits(FigureType.QUEEN, 1));
+        if ((straight0 | straight1) != 0) {
+            for (int d = 0; d < 6; d++) {
+                var blocker = firstBlocker(d, square, occupied0, occupied1);
+                if (blocker >= 0 && BitBoard.contains(straight0, straight1, blocker)) {
+                    return true;
+                }
+            }
+        }
+        var diagonal0 = enemies0 & (b.typeBits(FigureType.BISHOP, 0) | b.typeBits(FigureType.QUEEN, 0));
+        var diagonal1 = enemies1 & (b.typeBits(FigureType.BISHOP, 1) | b.typeBits(FigureType.QUEEN, 1));
+        var near0 = enemies0 & DIAGONAL_STEPS[i] & (b.typeBits(FigureType.KING, 0) | b.typeBits(FigureType.PAWN, 0));
+        var near1 = enemies1 & DIAGONAL_STEPS[i + 1]
+                & (b.typeBits(FigureType.KING, 1) | b.typeBits(FigureType.PAWN, 1));
+        if ((diagonal0 | diagonal1 | near0 | near1) == 0) {
+            return false;
+        }
+        for (int d = 6; d < DIRECTIONS; d++) {
+            var from = square;
+            for (var to : RAY_SQUARES[d][square]) {
+                if (isBlocked(b, d, from)) {
+                    break;
+                }
+                if (BitBoard.contains(occupied0, occupied1, to)) {
+                    if (BitBoard.contains(diagonal0, diagonal1, to)
+                            || from == square && BitBoard.contains(near0, near1, to) && attacksNear(b, to, square)) {
+                        return true;
+                    }
+                    break;
+                }
+                from = to;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true, if the king or pawn on the given square next to the target attacks it
+     */
+    private static boolean attacksNear(Board b, int attacker, int target) {
+        var figure = b.get(Pos.square(attacker));
+        if (figure.getType() == FigureType.KING) {
+            return true;
+        }
+        var captures = PAWN_CAPTURES[figure.getColor().ordinal()];
+        return BitBoard.contains(captures[attacker * WORDS], captures[attacker * WORDS + 1], target);
+    }
+
+    /**
+     * @return the first occupied square of the straight ray or -1
+     */
+    static int firstBlocker(int direction, int square, long occupied0, long occupied1) {
+        var ray = RAYS[direction];
+        var i = square * WORDS;
+        var blockers0 = ray[i] & occupied0;
+        var blockers1 = ray[i + 1] & occupied1;
+        return isAscending(direction) ? BitBoard.lowest(blockers0, blockers1)
+                : BitBoard.highest(blockers0, blockers1);
+    }
+
+    /**
+     * adds the single steps of a king or the jumps of a knight, except the squares of its own figures
+     *
+     * @return the number of squares in the result after adding the steps
+     */
+    static int addSteps(Board b, FigureType type, Color color, int square, int[] result, int count) {
+        var i = square * WORDS;
+        var masks = type == FigureType.KNIGHT ? JUMPS : STRAIGHT_STEPS;
+        var free0 = ~b.colorBits(color, 0);
+        var free1 = ~b.colorBits(color, 1);
+        count = addSquares(masks[i] & free0, masks[i + 1] & free1, result, count);
+        if (type == FigureType.KING) {
+            count = addSquares(DIAGONAL_STEPS[i] & free0, DIAGONAL_STEPS[i + 1] & free1, result, count);
+        }
+        return count;
+    }
+
+    /**
+     * adds the squares of the rays up to and including the first figure
+     *
+     * @return the number of squares in the result after adding the rays
+     */
+    static int addRays(Board b, int fromDirection, int toDirection, int square, int[] result, int count) {
+        var occupied0 = b.occupiedBits(0);
+        var occupied1 = b.occupiedBits(1);
+        for (int d = fromDirection; d < toDirection; d++) {
+            for (var to : RAY_SQUARES[d][square]) {
+                result[count++] = to;
+                if (BitBoard.contains(occupied0, occupied1, to)) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int addSquares(long word0, long word1, int[] result, int count) {
+        while (word0 != 0) {
+            result[count++] = Long.numberOfTrailingZeros(word0);
+            word0 &= word0 - 1;
+        }
+        while (word1 != 0) {
+            result[count++] = 64 + Long.numberOfTrailingZeros(word1);
+            word1 &= word1 - 1;
+        }
+        return count;
+    }
+
+    /**
+     * @return true, if the indexes of the squares grow along the direction: the squares are numbered row by row
+     */
+    private static boolean isAscending(int direction) {
+        var dir = dir(direction);
+        return dir.y() > 0 || dir.y() == 0 && dir.x() > 0;
+    }
+
+    private static Dir dir(int direction) {
+        return direction < 6 ? Dir.get(Dir.Type.straight, direction) : Dir.get(Dir.Type.diagonal, direction - 6);
+    }
+
+    private static void add(long[] masks, int square, int target) {
+        masks[square * WORDS + BitBoard.word(target)] |= BitBoard.bit(target);
+    }
+}
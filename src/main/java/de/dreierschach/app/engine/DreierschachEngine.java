@@ -1,19 +1,53 @@
 package de.dreierschach.app.engine;
 
 import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.GameClock;
 import de.dreierschach.app.model.Move;
 import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.model.PositionHistory;
 
 public interface DreierschachEngine {
     DreierschachEngine startGame();
 
     DreierschachEngineImpl withBoard(Board board);
 
+    DreierschachEngineImpl withClock(GameClock clock);
+
     Board board();
 
+    /**
+     * @return the clock of the game or null, if it is played without clock
+     */
+    GameClock clock();
+
+    /**
+     * @return the positions of the game, to find out whether it is drawn
+     */
+    PositionHistory positions();
+
     boolean move(Pos source, Pos destination);
 
+    /**
+     * @param promotion the type a pawn reaching the baseline of an opponent is promoted to, null for a queen
+     */
+    boolean move(Pos source, Pos destination, FigureType promotion);
+
     boolean move(Move move);
 
+    /**
+     * passes the turn of the player to move to the next player, if its time has run out
+     *
+     * @return true, if the player to move has changed
+     */
+    boolean passFlaggedPlayer();
+
+    /**
+     * @return false, if there is no move to take back
+     */
+    boolean undoLastMove();
+
     boolean validateMoveOrAttack(Move move);
+
+    LegalMoves legalMoves();
 }
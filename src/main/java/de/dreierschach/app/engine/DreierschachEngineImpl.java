@@ -1,20 +1,44 @@
 package de.dreierschach.app.engine;
 
 import de.dreierschach.app.model.*;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 @Component
 public class DreierschachEngineImpl implements DreierschachEngine {
     private static Logger log = LoggerFactory.getLogger(DreierschachEngineImpl.class);
 
+    // destinations of the king when casteling
+    private static final Pos A2 = Pos.of("a2");
+    private static final Pos A7 = Pos.of("a7");
+    private static final Pos G2 = Pos.of("g2");
+    private static final Pos G13 = Pos.of("g13");
+    private static final Pos L7 = Pos.of("l7");
+    private static final Pos L13 = Pos.of("l13");
+
+    private static final int[] CASTELING_SQUARES = {A2.index(), A7.index(), G2.index(), G13.index(), L7.index(),
+            L13.index()};
+
+    /**
+     * the most moves generated for a position, the size of the move stacks of the search
+     */
+    static final int MAX_MOVES = 1024;
+    // the most destinations of a single figure, including duplicates
+    private static final int MAX_CANDIDATES = 128;
+
     private Board board;
+    // legal moves of the last position they were requested for
+    private LegalMoves legalMoves;
+    private GameClock clock;
+    // the positions of the game, replayed from the moves of a board on first use
+    private PositionHistory positions;
 
     public DreierschachEngineImpl() {
         board = new Board();
@@ -23,6 +47,17 @@ public class DreierschachEngineImpl implements DreierschachEngine {
     @Override
     public DreierschachEngineImpl withBoard(Board board) {
         this.board = board;
+        this.legalMoves = null;
+        this.positions = null;
+        return this;
+    }
+
+    /**
+     * @param clock the clock of the game, moves are rejected once the time of their player has run out
+     */
+    @Override
+    public DreierschachEngineImpl withClock(GameClock clock) {
+        this.clock = clock;
         return this;
     }
 
@@ -31,49 +66,288 @@ public class DreierschachEngineImpl implements DreierschachEngine {
         return board;
     }
 
+    @Override
+    public GameClock clock() {
+        return clock;
+    }
+
     @Override
     public DreierschachEngineImpl startGame() {
         board.clear();
         board.setup();
+        positions = new PositionHistory(board.getPositionHash());
+        if (clock != null) {
+            clock.reset();
+            clock.start(board.getPlayer());
+        }
         return this;
     }
 
+    /**
+     * @return the positions of the game, once it is drawn no more moves are accepted
+     */
+    @Override
+    public PositionHistory positions() {
+        if (positions == null) {
+            positions = PositionHistory.of(board);
+        }
+        return positions;
+    }
+
     @Override
     public boolean move(Pos source, Pos destination) {
         return move(new Move(source, board.get(source), destination, board.get(destination)));
     }
 
+    @Override
+    public boolean move(Pos source, Pos destination, FigureType promotion) {
+        var move = new Move(source, board.get(source), destination, board.get(destination));
+        return move(promotion == null ? move : move.withPromotion(promotion));
+    }
+
     @Override
     public boolean move(Move m) {
-        var move = m;
-        if (!validateMoveOrAttack(move)) {
+        var sample = Timer.start();
+        var result = doMove(m);
+        sample.stop(result ? EngineMetrics.MOVE_ACCEPTED : EngineMetrics.MOVE_REJECTED);
+        return result;
+    }
+
+    /**
+     * computes the legal moves of the current position once, later calls for the same position return the same
+     * result. While they are known, {@link #move(Move)} only looks the move up instead of validating it.
+     *
+     * @return the legal moves of the player to move
+     */
+    @Override
+    public LegalMoves legalMoves() {
+        var known = currentLegalMoves();
+        if (known != null) {
+            return known;
+        }
+        legalMoves = EngineMetrics.LEGAL_MOVES.record(() -> computeLegalMoves(board));
+        return legalMoves;
+    }
+
+    private LegalMoves currentLegalMoves() {
+        return legalMoves != null && legalMoves.getHash() == board.getHash() ? legalMoves : null;
+    }
+
+    LegalMoves computeLegalMoves(Board b) {
+        var moves = new int[MAX_MOVES];
+        var count = generateMoves(b, moves, 0);
+        var result = new LegalMoves(b.getHash());
+        var i = 0;
+        while (i < count) {
+            var source = PackedMove.source(moves[i]);
+            var targets = new ArrayList<Pos>();
+            for (; i < count && PackedMove.source(moves[i]) == source; i++) {
+                targets.add(Pos.square(PackedMove.destination(moves[i])));
+            }
+            result.add(Pos.square(source), targets);
+        }
+        return result;
+    }
+
+    /**
+     * writes the legal moves of the player to move, grouped by their source squares. Captures en passant are
+     * marked, pawns are promoted to queens.
+     *
+     * @param moves  receives the moves, see {@link PackedMove}, it must have room for {@link #MAX_MOVES} moves
+     * @param offset the index of the first move
+     * @return the index after the last move
+     */
+    int generateMoves(Board b, int[] moves, int offset) {
+        var count = offset;
+        var candidates = new int[MAX_CANDIDATES];
+        var player = b.getPlayer();
+        for (int word = 0; word < BitBoard.WORDS; word++) {
+            var own = b.colorBits(player, word);
+            while (own != 0) {
+                var source = word * 64 + Long.numberOfTrailingZeros(own);
+                own &= own - 1;
+                var f1 = b.get(Pos.square(source));
+                var size = addCandidates(b, source, f1, candidates);
+                // the casteling squares of the king may also be single steps
+                long seen0 = 0;
+                long seen1 = 0;
+                for (int c = 0; c < size; c++) {
+                    var destination = candidates[c];
+                    if (BitBoard.contains(seen0, seen1, destination)) {
+                        continue;
+                    }
+                    if (destination < 64) {
+                        seen0 |= BitBoard.bit(destination);
+                    } else {
+                        seen1 |= BitBoard.bit(destination);
+                    }
+                    var move = PackedMove.of(source, f1, destination, b.get(Pos.square(destination)));
+                    if (isLegal(b, move)) {
+                        moves[count++] = isEnPassant(b, move)
+                                ? PackedMove.withEnPassant(move, b.get(b.getEnPassantPawn())) : move;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * writes a superset of the destinations of a figure: the rays up to and including the first figure, the
+     * single steps and jumps and the casteling squares
+     *
+     * @return the number of destinations
+     */
+    private int addCandidates(Board b, int source, Figure figure, int[] result) {
+        switch (figure.getType()) {
+            case PAWN:
+                return addPawnMoves(b, source, result, 0);
+            case KNIGHT:
+                return AttackTables.addSteps(b, FigureType.KNIGHT, figure.getColor(), source, result, 0);
+            case KING:
+                var count = AttackTables.addSteps(b, FigureType.KING, figure.getColor(), source, result, 0);
+                for (var casteling : CASTELING_SQUARES) {
+                    result[count++] = casteling;
+                }
+                return count;
+            case ROOK:
+                return AttackTables.addRays(b, 0, 6, source, result, 0);
+            case BISHOP:
+                return AttackTables.addRays(b, 6, 12, source, result, 0);
+            case QUEEN:
+                return AttackTables.addRays(b, 0, 12, source, result, 0);
+            default:
+                return 0;
+        }
+    }
+
+    private boolean isLegal(Board b, int move) {
+        var f2 = PackedMove.captured(move);
+        if (f2 != Figure.NONE && f2.getColor() == PackedMove.moved(move).getColor()) {
             return false;
         }
-        var figure = move.f1();
+        if (!(f2 == Figure.NONE ? isValidMove(b, move) : isValidAttack(b, move))) {
+            return false;
+        }
+        if (isEnPassant(b, move)) {
+            move = PackedMove.withEnPassant(move, b.get(b.getEnPassantPawn()));
+        }
+        return !isSelfCheck(b, move);
+    }
+
+    private boolean isSelfCheck(Board b, int move) {
+        var copy = EngineMetrics.BOARD_COPY.record(() -> Board.copyOf(b));
+        copy.doMove(move);
+        checkCheck(copy);
+        return copy.isCheck(copy.getPlayer());
+    }
+
+    /**
+     * plays a legal move on a copy of the board, without listeners and metrics, e.g. for the search
+     *
+     * @return the copy after the move, with the next player to move and the check state computed
+     */
+    Board after(Board b, Pos source, Pos destination) {
+        var move = PackedMove.of(source.index(), b.get(source), destination.index(), b.get(destination));
+        if (isEnPassant(b, move)) {
+            move = PackedMove.withEnPassant(move, b.get(b.getEnPassantPawn()));
+        }
+        return after(b, move);
+    }
+
+    /**
+     * @param move a legal move as written by {@link #generateMoves(Board, int[], int)}
+     * @see #after(Board, Pos, Pos)
+     */
+    Board after(Board b, int move) {
+        var result = Board.copyOf(b);
+        result.doMove(move);
+        result.nextPlayer();
+        checkCheck(result);
+        return result;
+    }
+
+    @Override
+    public boolean passFlaggedPlayer() {
+        if (clock == null || !clock.isFlagged(board.getPlayer())) {
+            return false;
+        }
+        board.setPlayer(clock.next(board.getPlayer()));
+        return true;
+    }
+
+    private boolean doMove(Move m) {
+        passFlaggedPlayer();
+        if (positions().isDraw()) {
+            EngineMetrics.REJECTED_DRAWN.increment();
+            log.debug("Move {} is not allowed: the game is drawn", m);
+            return false;
+        }
+        var known = currentLegalMoves();
+        if (known != null) {
+            if (m.f1() != board.get(m.p1()) || !known.isLegal(m.p1(), m.p2()) || !isValidPromotion(m)) {
+                EngineMetrics.REJECTED_ILLEGAL.increment();
+                return false;
+            }
+        } else if (!validateMoveOrAttack(m)) {
+            return false;
+        }
+        var figure = m.f1();
         if (figure != Figure.NONE) {
-            // disable Casteling, when King or Rook are moved
-            if (figure.getType() == FigureType.KING || figure.getType() == FigureType.ROOK) {
-                board.disableCasteling(figure.getColor());
-                if (!board.isCastelingForbidden(figure.getColor())) {
-                    log.info("Disable casteling for player {}", figure.getColor());
-                    move = move.withDisablesCasteling();
-                }
+            var move = PackedMove.of(m);
+            if (isEnPassant(board, move)) {
+                move = PackedMove.withEnPassant(move, board.get(board.getEnPassantPawn()));
             }
-            var b = Board.copyOf(board);
-            b.doMove(move);
-            checkCheck(b);
-            if (b.isCheck(b.getPlayer())) {
+            if (known == null && isSelfCheck(board, move)) {
+                EngineMetrics.REJECTED_SELF_CHECK.increment();
                 return false;
             }
+            if (clock != null && !clock.moved(figure.getColor())) {
+                EngineMetrics.REJECTED_TIME.increment();
+                log.debug("Move {} is not allowed: the time of player {} has run out", m, figure.getColor());
+                return false;
+            }
+            // moving the king or a rook disables the casteling of the player
             board.doMove(move);
             board.nextPlayer();
+            passFlaggedPlayer();
             checkCheck(board);
+            positions.push(board.getPositionHash(), PositionHistory.isProgress(move));
             board.notifyMoveListeners();
             return true;
         }
         return false;
     }
 
+    /**
+     * takes the last move back from the state recorded with it, the player of the move gets back the time it had
+     * before the move, see {@link GameClock#undo(Color)}
+     *
+     * @return false, if there is no move to take back
+     */
+    @Override
+    public boolean undoLastMove() {
+        var count = board.getMoveCount();
+        if (count == 0) {
+            return false;
+        }
+        var checkKnown = board.isCheckKnownBefore(count - 1);
+        board.undoLastMove();
+        if (!checkKnown) {
+            checkCheck(board);
+        }
+        if (positions != null && positions.size() > 1) {
+            positions.pop();
+        } else {
+            // the positions before have not been known, they are replayed on first use
+            positions = null;
+        }
+        if (clock != null) {
+            clock.undo(board.getPlayer());
+        }
+        return true;
+    }
+
     @Override
     public boolean validateMoveOrAttack(Move move) {
         if (move.p2().equals(move.p1()) || !move.p1().isValid() || !move.p2().isValid()) {
@@ -81,35 +355,38 @@ public class DreierschachEngineImpl implements DreierschachEngine {
         }
         var f1 = move.f1();
         if (f1 == Figure.NONE || f1.getColor() != board.getPlayer()) {
-            log.info("Move {} is not allowed: figure = {}, active player = {} ", move, f1, board.getPlayer());
+            EngineMetrics.REJECTED_WRONG_PLAYER.increment();
+            log.debug("Move {} is not allowed: figure = {}, active player = {} ", move, f1, board.getPlayer());
+            return false;
+        }
+        if (!isValidPromotion(move)) {
+            log.debug("Move {} is not allowed: promotion = {}", move, move.promotion());
             return false;
         }
         var f2 = move.f2();
         if (f2 == Figure.NONE) {
-            return isValidMove(board, move);
+            return isValidMove(board, PackedMove.of(move));
         }
         if (f2.getColor() == f1.getColor()) {
-            log.info("player {} is not allowed to kill its own figure", board.getPlayer());
+            EngineMetrics.REJECTED_OWN_FIGURE.increment();
+            log.debug("player {} is not allowed to kill its own figure", board.getPlayer());
             return false;
         }
-        return isValidAttack(board, move);
-    }
-
-    List<Pos> getAttacks(Board b, Color player, Pos pos) {
-        var result = new ArrayList<Pos>();
-        if (!pos.isValid()) {
-            return result;
-        }
-        result.addAll(getAttacksStraight(b, player, pos));
-        result.addAll(getAttacksDiagonal(b, player, pos));
-        result.addAll(getAttacksJump(b, player, pos));
-        return result;
+        return isValidAttack(board, PackedMove.of(move));
     }
 
     void checkCheck(Board b) {
-        b.setCheck(Arrays.stream(Color.values())
-                .filter(color -> getAttacks(b, color, b.getKingsPosition(color)).size() > 0)
+        var check = EngineMetrics.CHECK.record(() -> Arrays.stream(Color.values())
+                .filter(color -> isAttacked(b, color, b.getKingsPosition(color)))
                 .collect(Collectors.toSet()));
+        b.setCheck(check);
+    }
+
+    /**
+     * @return true, if a figure of an opponent of the player attacks the position, computed with the attack tables
+     */
+    boolean isAttacked(Board b, Color player, Pos pos) {
+        return pos != null && pos.isValid() && AttackTables.isAttacked(b, player, pos.index());
     }
 
     void checkCheckmate(Board b) {
@@ -121,32 +398,6 @@ public class DreierschachEngineImpl implements DreierschachEngine {
         // is more than one opponent and my they both be blocked or one killed and the others blocked?
     }
 
-    List<Pos> getAttacksStraight(Board b, Color player, Pos pos) {
-        //@formatter:off
-        return scan(b, pos, Dir.Type.straight).stream()
-                .filter(p -> b.get(p).getColor() != player)
-                .filter(p -> List.of(FigureType.ROOK, FigureType.KING,  FigureType.QUEEN).contains(b.get(p).getType()))
-                .filter(p -> isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE)))
-                .collect(Collectors.toList());
-        //@formatter:on
-    }
-
-    List<Pos> getAttacksDiagonal(Board b, Color player, Pos pos) {
-        //@formatter:off
-        return scan(b, pos, Dir.Type.diagonal).stream()
-                .filter(p -> b.get(p).getColor() != player)
-                .filter(p -> List.of(FigureType.BISHOP, FigureType.KING,  FigureType.QUEEN, FigureType.PAWN).contains(b.get(p).getType()))
-                .filter(p -> isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE)))
-                .collect(Collectors.toList());
-        //@formatter:on
-    }
-
-    List<Pos> getAttacksJump(Board b, Color player, Pos pos) {
-        return scan(b, pos, Dir.Type.jump).stream().filter(p -> b.get(p).getColor() != player)
-                .filter(p -> b.get(p).getType() == FigureType.KNIGHT)
-                .filter(p -> isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE))).collect(Collectors.toList());
-    }
-
     /**
      * Prüfe, ob von Pos ausgehend der diagonale Weg in Richgung dir frei ist.
      * Dafür muss eines der benachbarten Felder, durch die hindurchgezogen werden soll, frei sein.
@@ -156,45 +407,17 @@ public class DreierschachEngineImpl implements DreierschachEngine {
      * @return true, wenn der Weg frei ist.
      */
     boolean isDiagonalFreeToMove(Board b, Pos pos, Dir dir) {
+        if (pos.isValid()) {
+            return !AttackTables.isBlocked(b, 6 + dir.getIndex(), pos.index());
+        }
         var straightDir = Dir.get(Dir.Type.straight, dir.getIndex());
         Pos left = Pos.add(pos, straightDir);
         Pos right = Pos.add(pos, Dir.rotateRight(straightDir));
         return b.get(left) == Figure.NONE || b.get(right) == Figure.NONE;
     }
 
-    List<Pos> scan(Board b, Pos pos, Dir.Type type) {
-        var result = new ArrayList<Pos>();
-        for (int i = 0; i < type.size(); i++) {
-            var dir = Dir.get(type, i);
-            var p = pos;
-            switch (type) {
-                case straight:
-                    do {
-                        p = Pos.add(p, dir);
-                    } while (p.isValid() && b.get(p) == Figure.NONE);
-                    if (p.isValid()) {
-                        result.add(p);
-                    }
-                    break;
-                case diagonal:
-                    if (isDiagonalFreeToMove(b, p, dir)) {
-                        do {
-                            p = Pos.add(p, dir);
-                        } while (p.isValid() && b.get(p) == Figure.NONE && isDiagonalFreeToMove(b, p, dir));
-                        if (p.isValid() && b.get(p) != Figure.NONE) {
-                            result.add(p);
-                        }
-                    }
-                    break;
-                case jump:
-                    p = Pos.add(p, dir);
-                    if (p.isValid() && b.get(p) != Figure.NONE) {
-                        result.add(p);
-                    }
-                default:
-            }
-        }
-        return result;
+    boolean isValidAttack(Board b, Move move) {
+        return isValidAttack(b, PackedMove.of(move));
     }
 
     /**
@@ -204,10 +427,10 @@ public class DreierschachEngineImpl implements DreierschachEngine {
      * @param move the attacking move
      * @return true, when the attack is possible
      */
-    boolean isValidAttack(Board b, Move move) {
-        switch (move.f1().getType()) {
+    boolean isValidAttack(Board b, int move) {
+        switch (PackedMove.moved(move).getType()) {
             case KNIGHT:
-                return isValidMoveKnight(b, move);
+                return isValidMoveKnight(move);
             case ROOK:
                 return isValidMoveRook(b, move);
             case BISHOP:
@@ -229,10 +452,10 @@ public class DreierschachEngineImpl implements DreierschachEngine {
      * @param move the move or attack
      * @return true, if the move or attack is possible
      */
-    boolean isValidMove(Board b, Move move) {
-        switch (move.f1().getType()) {
+    boolean isValidMove(Board b, int move) {
+        switch (PackedMove.moved(move).getType()) {
             case KNIGHT:
-                return isValidMoveKnight(b, move);
+                return isValidMoveKnight(move);
             case ROOK:
                 return isValidMoveRook(b, move);
             case BISHOP:
@@ -248,70 +471,62 @@ public class DreierschachEngineImpl implements DreierschachEngine {
         }
     }
 
-    boolean isValidMoveKnight(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        return dirDistance != null && dirDistance.getLeft().getType() == Dir.Type.jump && dirDistance.getRight() == 1;
+    boolean isValidMoveKnight(int move) {
+        return AttackTables.line(PackedMove.source(move), PackedMove.destination(move)) == AttackTables.JUMP;
     }
 
-    boolean isValidMoveRook(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        if (dirDistance == null || dirDistance.getLeft().getType() != Dir.Type.straight) {
-            return false;
-        }
-        return isFree(b, move.p1(), dirDistance.getLeft(), dirDistance.getRight() - 1);
+    boolean isValidMoveRook(Board b, int move) {
+        var line = AttackTables.line(PackedMove.source(move), PackedMove.destination(move));
+        var direction = AttackTables.direction(line);
+        return direction >= 0 && direction < 6
+                && isFree(b, PackedMove.source(move), direction, AttackTables.distance(line) - 1);
     }
 
-    boolean isValidMoveBishop(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        if (dirDistance == null || dirDistance.getLeft().getType() != Dir.Type.diagonal) {
-            return false;
-        }
-        return isFree(b, move.p1(), dirDistance.getLeft(), dirDistance.getRight() - 1);
+    boolean isValidMoveBishop(Board b, int move) {
+        var line = AttackTables.line(PackedMove.source(move), PackedMove.destination(move));
+        var direction = AttackTables.direction(line);
+        return direction >= 6 && isFree(b, PackedMove.source(move), direction, AttackTables.distance(line) - 1);
     }
 
-    boolean isValidMoveQueen(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        if (dirDistance == null) {
-            return false;
-        }
-        var type = dirDistance.getLeft().getType();
-        if (type != Dir.Type.straight && type != Dir.Type.diagonal) {
-            return false;
-        }
-        return isFree(b, move.p1(), dirDistance.getLeft(), dirDistance.getRight() - 1);
+    boolean isValidMoveQueen(Board b, int move) {
+        var line = AttackTables.line(PackedMove.source(move), PackedMove.destination(move));
+        var direction = AttackTables.direction(line);
+        return direction >= 0 && isFree(b, PackedMove.source(move), direction, AttackTables.distance(line) - 1);
     }
 
-    boolean isValidRoachadeKing(Board b, Move move) {
-        var f = move.f1();
+    boolean isValidRoachadeKing(Board b, int move) {
+        var f = PackedMove.moved(move);
         if (b.isCastelingForbidden(f.getColor())) {
             return false;
         }
         if (b.isCheck(f.getColor())) {
             return false;
         }
+        var p1 = Pos.square(PackedMove.source(move));
+        var p2 = Pos.square(PackedMove.destination(move));
         switch (f.getColor()) {
             case WHITE:
-                if (move.p2().equals(Pos.of("a2"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 0), 2);
+                if (p2.equals(A2)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 0), 2);
                 }
-                if (move.p2().equals(Pos.of("a7"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 3), 3);
+                if (p2.equals(A7)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 3), 3);
                 }
                 return false;
             case BROWN:
-                if (move.p2().equals(Pos.of("l7"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 2), 2);
+                if (p2.equals(L7)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 2), 2);
                 }
-                if (move.p2().equals(Pos.of("g2"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 5), 3);
+                if (p2.equals(G2)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 5), 3);
                 }
                 return false;
             case BLACK:
-                if (move.p2().equals(Pos.of("g13"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 4), 2);
+                if (p2.equals(G13)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 4), 2);
                 }
-                if (move.p2().equals(Pos.of("l13"))) {
-                    return isSafe(b, move.p1(), Dir.get(Dir.Type.straight, 1), 3);
+                if (p2.equals(L13)) {
+                    return isSafe(b, p1, Dir.get(Dir.Type.straight, 1), 3);
                 }
                 return false;
             default:
@@ -319,67 +534,141 @@ public class DreierschachEngineImpl implements DreierschachEngine {
         }
     }
 
-    boolean isValidMoveKing(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        if (dirDistance == null) {
-            return false;
-        }
-        if (dirDistance.getRight() != 1) {
+    boolean isValidMoveKing(Board b, int move) {
+        var source = PackedMove.source(move);
+        var line = AttackTables.line(source, PackedMove.destination(move));
+        var direction = AttackTables.direction(line);
+        if (direction < 0 || AttackTables.distance(line) != 1) {
             return false;
         }
-        var type = dirDistance.getLeft().getType();
-        if (type == Dir.Type.diagonal) {
-            return isDiagonalFreeToMove(b, move.p1(), dirDistance.getLeft());
-        }
-        return type == Dir.Type.straight;
+        return direction < 6 || !AttackTables.isBlocked(b, direction, source);
     }
 
     boolean isValidMovePawn(Board b, Move move) {
-        var dirDistance = Dir.find(move.p1(), move.p2()).orElse(null);
-        if (dirDistance == null) {
-            return false;
+        return isValidMovePawn(b, PackedMove.of(move));
+    }
+
+    boolean isValidMovePawn(Board b, int move) {
+        var color = PackedMove.moved(move).getColor();
+        var source = PackedMove.source(move);
+        var destination = PackedMove.destination(move);
+        var push = PawnTables.push(color, source);
+        var doublePush = PawnTables.doublePush(color, source);
+        for (int k = 0; k < push.length; k++) {
+            if (push[k] < 0 || !isEmpty(b, push[k])) {
+                continue;
+            }
+            if (push[k] == destination || doublePush[k] == destination && isEmpty(b, destination)) {
+                return true;
+            }
         }
+        return isEnPassant(b, move);
+    }
 
-        var dir = dirDistance.getLeft();
-        var distance = dirDistance.getRight();
+    boolean isEnPassant(Board b, Move move) {
+        return isEnPassant(b, PackedMove.of(move));
+    }
 
-        var f1 = move.f1();
-        if (!isForward(dir, f1.getColor())) {
+    /**
+     * @return true, if the move is a pawn capturing a pawn that has moved two squares in the previous move
+     */
+    boolean isEnPassant(Board b, int move) {
+        var f1 = PackedMove.moved(move);
+        if (f1.getType() != FigureType.PAWN || PackedMove.destination(move) != b.getEnPassant().index()) {
             return false;
         }
-
-        if (dir.getType() != Dir.Type.straight) {
+        var pawn = b.get(b.getEnPassantPawn());
+        if (pawn.getType() != FigureType.PAWN || pawn.getColor() == f1.getColor()) {
             return false;
         }
-        if (distance == 1) {
-            return b.get(Pos.add(move.p1(), dir)) == Figure.NONE;
-        }
-        if (distance > 2 || !isPawnBaseline(move.p1(), f1.getColor())) {
-            return false;
+        return isValidKillPawn(b, move);
+    }
+
+    boolean isValidPromotion(Move move) {
+        var promotion = move.promotion();
+        var f1 = move.f1();
+        if (f1.getType() != FigureType.PAWN || !move.p2().isPromotion(f1.getColor())) {
+            return promotion == null;
         }
-        return isFree(b, move.p1(), dir, 2);
+        return promotion == FigureType.QUEEN || promotion == FigureType.ROOK || promotion == FigureType.BISHOP
+                || promotion == FigureType.KNIGHT;
     }
 
     boolean isValidKillPawn(Board b, Move move) {
-        var optionalDir = Dir.find(move.p1(), move.p2());
-        if (optionalDir.isEmpty()) {
-            return false;
+        return isValidKillPawn(b, PackedMove.of(move));
+    }
+
+    boolean isValidKillPawn(Board b, int move) {
+        var color = PackedMove.moved(move).getColor();
+        var source = PackedMove.source(move);
+        var capture = PawnTables.capture(color, source);
+        for (int k = 0; k < capture.length; k++) {
+            if (capture[k] == PackedMove.destination(move)) {
+                return isEmpty(b, PawnTables.captureLeft(color, source)[k])
+                        || isEmpty(b, PawnTables.captureRight(color, source)[k]);
+            }
         }
+        return false;
+    }
 
-        var dir = optionalDir.get().getLeft();
-        var distance = optionalDir.get().getRight();
-        var f1 = move.f1();
+    /**
+     * adds the destinations of all moves and attacks of the pawn on the given position, ignoring checks. A pawn
+     * reaching the baseline of an opponent is promoted, see {@link Move#promotion()}
+     *
+     * @param b      the board
+     * @param pos    the position of the pawn
+     * @param result receives the destinations
+     */
+    void addPawnMoves(Board b, Pos pos, Collection<Pos> result) {
+        var destinations = new int[MAX_CANDIDATES];
+        var count = addPawnMoves(b, pos.index(), destinations, 0);
+        for (int i = 0; i < count; i++) {
+            result.add(Pos.square(destinations[i]));
+        }
+    }
 
-        if (!isForward(dir, f1.getColor())) {
-            return false;
+    /**
+     * @param result receives the indexes of the destinations, starting at count
+     * @return the number of destinations after adding the ones of the pawn
+     */
+    private int addPawnMoves(Board b, int source, int[] result, int count) {
+        var color = b.get(Pos.square(source)).getColor();
+        var push = PawnTables.push(color, source);
+        var doublePush = PawnTables.doublePush(color, source);
+        for (int k = 0; k < push.length; k++) {
+            if (push[k] >= 0 && isEmpty(b, push[k])) {
+                result[count++] = push[k];
+                if (doublePush[k] >= 0 && isEmpty(b, doublePush[k])) {
+                    result[count++] = doublePush[k];
+                }
+            }
         }
-        if (dir.getType() != Dir.Type.diagonal) {
-            return false;
+        var capture = PawnTables.capture(color, source);
+        var left = PawnTables.captureLeft(color, source);
+        var right = PawnTables.captureRight(color, source);
+        for (int k = 0; k < capture.length; k++) {
+            if (capture[k] < 0 || isEmpty(b, capture[k]) || b.get(Pos.square(capture[k])).getColor() == color) {
+                continue;
+            }
+            if (isEmpty(b, left[k]) || isEmpty(b, right[k])) {
+                result[count++] = capture[k];
+            }
         }
-        if (distance != 1) {
-            return false;
+        var enPassant = b.getEnPassant();
+        if (enPassant.isValid()) {
+            var pawn = b.get(b.getEnPassantPawn());
+            for (int k = 0; k < capture.length; k++) {
+                if (capture[k] == enPassant.index() && pawn.getType() == FigureType.PAWN && pawn.getColor() != color
+                        && isEmpty(b, capture[k]) && (isEmpty(b, left[k]) || isEmpty(b, right[k]))) {
+                    result[count++] = enPassant.index();
+                }
+            }
         }
-        return isDiagonalFreeToMove(b, move.p1(), dir);
+        return count;
+    }
+
+    private static boolean isEmpty(Board b, int square) {
+        return square < 0 || b.get(Pos.square(square)) == Figure.NONE;
     }
 
     boolean isSafe(Board b, Pos pos, Dir dir, int length) {
@@ -398,77 +687,43 @@ public class DreierschachEngineImpl implements DreierschachEngine {
             if (!p.isValid() || b.get(p) != Figure.NONE) {
                 return false;
             }
-            if (!getAttacks(b, f.getColor(), p).isEmpty()) {
+            if (isAttacked(b, f.getColor(), p)) {
                 return false;
             }
         }
         return true;
     }
 
-    boolean isFree(Board b, Pos pos, Dir dir, int length) {
+    /**
+     * checks the squares passed on the way from the source, the diagonal steps also need a free flank. The flanks
+     * of the step onto the destination are not checked, unless the way has no squares in between.
+     *
+     * @param direction 0 to 11, see {@link AttackTables}
+     * @param length    the number of squares between the source and the destination
+     */
+    boolean isFree(Board b, int source, int direction, int length) {
         if (length == 0) {
-            return dir.getType() != Dir.Type.diagonal || isDiagonalFreeToMove(b, pos, dir);
+            return direction < 6 || !AttackTables.isBlocked(b, direction, source);
         }
-        var p = pos;
+        var ray = AttackTables.ray(direction, source);
+        var from = source;
         for (int i = 0; i < length; i++) {
-            if (dir.getType() == Dir.Type.diagonal) {
-                if (!isDiagonalFreeToMove(b, p, dir)) {
-                    return false;
-                }
+            if (direction >= 6 && AttackTables.isBlocked(b, direction, from)) {
+                return false;
             }
-            p = Dir.add(p, dir);
-            if (!p.isValid() || b.get(p) != Figure.NONE) {
+            if (i >= ray.length || !isEmpty(b, ray[i])) {
                 return false;
             }
+            from = ray[i];
         }
         return true;
     }
 
     boolean isForward(Dir dir, Color color) {
-        var i = dir.getIndex();
-        switch (dir.getType()) {
-            case jump:
-                switch (color) {
-                    case WHITE:
-                        return i >= 0 && i <= 5;
-                    case BROWN:
-                        return i >= 4 && i <= 9;
-                    case BLACK:
-                        return i >= 8 || i <= 2;
-                }
-            case diagonal:
-                switch (color) {
-                    case WHITE:
-                        return i >= 0 && i <= 2;
-                    case BROWN:
-                        return i >= 2 && i <= 4;
-                    case BLACK:
-                        return i >= 4 || i == 0;
-                }
-            case straight:
-                switch (color) {
-                    case WHITE:
-                        return i == 1 || i == 2;
-                    case BROWN:
-                        return i == 3 || i == 4;
-                    case BLACK:
-                        return i == 5 || i == 0;
-                }
-            default:
-                return false;
-        }
+        return PawnTables.isForward(dir, color);
     }
 
     boolean isPawnBaseline(Pos pos, Color color) {
-        switch (color) {
-            case WHITE:
-                return pos.y() == 1;
-            case BROWN:
-                return pos.y() - pos.x() == 4;
-            case BLACK:
-                return pos.x() == 11;
-            default:
-                return false;
-        }
+        return PawnTables.isPawnBaseline(pos, color);
     }
 }
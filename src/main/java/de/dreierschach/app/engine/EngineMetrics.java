@@ -0,0 +1,65 @@
+package de.dreierschach.app.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the engine hot paths. They are registered at the global registry, which Spring Boot connects to the
+ * application's registry, so engines created outside of Spring (replay, tests) are measured as well.
+ */
+final class EngineMetrics {
+    static final Timer MOVE_ACCEPTED = moveTimer("accepted");
+    static final Timer MOVE_REJECTED = moveTimer("rejected");
+
+    static final Timer CHECK = Timer.builder("dreierschach.engine.check")
+            .description("Computing the check state of all players")
+            .register(Metrics.globalRegistry);
+
+    static final Timer BOARD_COPY = Timer.builder("dreierschach.board.copy")
+            .description("Copying the board to test for self-check")
+            .register(Metrics.globalRegistry);
+
+    static final Timer LEGAL_MOVES = Timer.builder("dreierschach.engine.legal-moves")
+            .description("Computing all legal moves of a position")
+            .register(Metrics.globalRegistry);
+
+    static final Counter REJECTED_ILLEGAL = rejected("illegal");
+    static final Counter REJECTED_WRONG_PLAYER = rejected("wrong-player");
+    static final Counter REJECTED_OWN_FIGURE = rejected("own-figure");
+    static final Counter REJECTED_SELF_CHECK = rejected("self-check");
+    static final Counter REJECTED_TIME = rejected("time");
+    static final Counter REJECTED_DRAWN = rejected("drawn");
+
+    static final Counter TABLEBASE_HITS = tablebase("hit");
+    static final Counter TABLEBASE_MISSES = tablebase("miss");
+
+    private EngineMetrics() {
+    }
+
+    private static Timer moveTimer(String result) {
+        return Timer.builder("dreierschach.engine.move")
+                .description("Validating and executing a move")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.99)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static Counter rejected(String reason) {
+        return Counter.builder("dreierschach.engine.rejected")
+                .description("Moves rejected before the figure specific validation or by the legal moves")
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * counted by the search and added once at its end, probing is too frequent to update a shared counter
+     */
+    private static Counter tablebase(String result) {
+        return Counter.builder("dreierschach.tablebase.probe")
+                .description("Positions of a search looked up in the endgame tables")
+                .tag("result", result)
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Pos;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * All legal moves of the player to move in one position, identified by the hash of the position. Looking up a
+ * move or the destinations of a figure does not touch the board.
+ */
+public class LegalMoves {
+    private final long hash;
+    private final BitSet legal = new BitSet(Pos.SQUARES * Pos.SQUARES);
+    private final List<List<Pos>> destinations = new ArrayList<>(Pos.SQUARES);
+    private int size;
+
+    LegalMoves(long hash) {
+        this.hash = hash;
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            destinations.add(List.of());
+        }
+    }
+
+    void add(Pos source, List<Pos> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        destinations.set(source.index(), Collections.unmodifiableList(targets));
+        for (var target : targets) {
+            legal.set(source.index() * Pos.SQUARES + target.index());
+        }
+        size += targets.size();
+    }
+
+    /**
+     * @return the hash of the position, see {@link de.dreierschach.app.model.Board#getHash()}
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public boolean isLegal(Pos source, Pos destination) {
+        return source.isValid() && destination.isValid()
+                && legal.get(source.index() * Pos.SQUARES + destination.index());
+    }
+
+    /**
+     * @return the destinations of the figure on the given position, empty if it may not move
+     */
+    public List<Pos> destinations(Pos source) {
+        return source.isValid() ? destinations.get(source.index()) : List.of();
+    }
+
+    /**
+     * @return the number of legal moves
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
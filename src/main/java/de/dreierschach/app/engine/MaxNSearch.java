@@ -0,0 +1,504 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.PackedMove;
+import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.model.PositionHistory;
+import de.dreierschach.app.tablebase.Tablebase;
+import de.dreierschach.app.tablebase.Tablebases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Max^n search for three players: every position is scored with one value per color and the player to move
+ * picks the move that is best for itself. The search deepens iteratively until the deadline and returns the
+ * result of the last completed depth.
+ * <p>
+ * Endgames found in the {@link Tablebases} are not searched deeper but scored by their result. At the root only
+ * the moves keeping the best result of the tables are searched. The tables hold no distances, so among the moves
+ * keeping a won result the search is guided by the material only.
+ * <p>
+ * With a {@link TranspositionTable} positions already searched deep enough are not searched again and the best
+ * move found before is searched first. The table also holds the continuations of the lines of an analysis.
+ * <p>
+ * A position that has occurred before, in the game or in the line searched, is scored as a draw, the same as a
+ * position drawn by the plies without progress. The positions of the line are kept in a {@link PositionHistory},
+ * so finding a cycle does not depend on the length of the game.
+ */
+public class MaxNSearch {
+    /**
+     * the score of a player that cannot move any more
+     */
+    public static final int MATE = 100_000;
+
+    private static final Color[] COLORS = Color.values();
+    // KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] VALUES = {0, 900, 300, 300, 500, 100};
+
+    private final DreierschachEngineImpl engine = new DreierschachEngineImpl();
+    private final Tablebases tablebases;
+    private final int[] values;
+    private final TranspositionTable table;
+    private BooleanSupplier stop;
+    private long nodes;
+    // the probes of the endgame tables of the running search, added to the metrics at its end
+    private long tablebaseHits;
+    private long tablebaseMisses;
+    // the positions of the game and of the line being searched
+    private PositionHistory positions;
+    // the moves of the nodes being searched: [ply][move]
+    private int[][] stacks = new int[16][];
+
+    public MaxNSearch() {
+        this(null);
+    }
+
+    /**
+     * @param tablebases the endgame tables or null
+     */
+    public MaxNSearch(Tablebases tablebases) {
+        this(tablebases, VALUES);
+    }
+
+    /**
+     * @param tablebases the endgame tables or null
+     * @param values     the values of the figures, see {@link #defaultValues()}
+     */
+    public MaxNSearch(Tablebases tablebases, int[] values) {
+        this(tablebases, values, null);
+    }
+
+    /**
+     * @param tablebases the endgame tables or null
+     * @param values     the values of the figures, see {@link #defaultValues()}
+     * @param table      the scores of positions searched before or null
+     */
+    public MaxNSearch(Tablebases tablebases, int[] values, TranspositionTable table) {
+        this.tablebases = tablebases;
+        this.values = values.clone();
+        this.table = table;
+    }
+
+    /**
+     * @return the values of the figures used by default, indexed by the ordinal of their type
+     */
+    public static int[] defaultValues() {
+        return VALUES.clone();
+    }
+
+    /**
+     * @param board    the position, it is not changed
+     * @param deadline the value of {@link System#nanoTime()} at which the search stops
+     * @param maxDepth the maximal number of plies
+     * @return the best move of the deepest completed iteration, without a move if the player to move cannot move
+     */
+    public SearchResult search(Board board, long deadline, int maxDepth) {
+        var result = analyze(board, 1, maxDepth, () -> System.nanoTime() - deadline > 0, null);
+        if (result.getLines().isEmpty()) {
+            return new SearchResult(null, evaluate(board, true, values), 0, 0);
+        }
+        var line = result.getLines().get(0);
+        return new SearchResult(line.getMoves().get(0), line.getScore(), result.getDepth(), result.getNodes());
+    }
+
+    /**
+     * searches the position with increasing depth until the maximal depth is reached or the search is stopped
+     *
+     * @param board    the position, it is not changed
+     * @param lines    the number of best moves to report, each with its expected continuation
+     * @param stop     polled during the search, the iteration running when it returns true is discarded
+     * @param listener called with every completed iteration or null
+     * @return the deepest completed iteration, without lines if the player to move cannot move
+     */
+    public Iteration analyze(Board board, int lines, int maxDepth, BooleanSupplier stop,
+                             Consumer<Iteration> listener) {
+        this.stop = stop;
+        this.nodes = 0;
+        this.tablebaseHits = 0;
+        this.tablebaseMisses = 0;
+        this.positions = PositionHistory.of(board);
+        try {
+            return deepen(board, lines, maxDepth, listener);
+        } finally {
+            EngineMetrics.TABLEBASE_HITS.increment(tablebaseHits);
+            EngineMetrics.TABLEBASE_MISSES.increment(tablebaseMisses);
+        }
+    }
+
+    private Iteration deepen(Board board, int lines, int maxDepth, Consumer<Iteration> listener) {
+        var root = new int[DreierschachEngineImpl.MAX_MOVES];
+        var count = keepBestEndgameMoves(board, root, moves(board, root, 0));
+        if (count == 0) {
+            return new Iteration(0, 0, List.of());
+        }
+        var scores = new int[count][];
+        var result = new Iteration(0, 0, List.of(new Line(List.of(PackedMove.toMove(root[0])),
+                evaluate(board, false, values))));
+        var player = board.getPlayer().ordinal();
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            try {
+                for (int i = 0; i < count; i++) {
+                    scores[i] = search(board, root[i], depth - 1, 1);
+                }
+            } catch (DeadlineReached e) {
+                break;
+            }
+            // the sort is stable: of equally scored moves the one searched first in this iteration stays first,
+            // the best moves are searched first in the next iteration
+            sortByScore(root, scores, count, player);
+            if (table != null) {
+                table.put(board.getHash(), depth, scores[0], root[0]);
+            }
+            var best = new ArrayList<Line>(Math.min(lines, count));
+            for (int i = 0; i < lines && i < count; i++) {
+                best.add(new Line(line(board, root[i], depth), scores[i]));
+            }
+            result = new Iteration(depth, nodes, best);
+            if (listener != null) {
+                listener.accept(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * searches the position after the move, unless it is drawn by a repetition or without progress
+     */
+    private int[] search(Board board, int move, int depth, int ply) {
+        var position = engine.after(board, move);
+        positions.push(position.getPositionHash(), PositionHistory.isProgress(move));
+        try {
+            if (positions.isRepeated() || positions.isNoProgress()) {
+                nodes++;
+                return new int[COLORS.length];
+            }
+            return search(position, depth, ply);
+        } finally {
+            positions.pop();
+        }
+    }
+
+    private int[] search(Board board, int depth, int ply) {
+        nodes++;
+        if (stop.getAsBoolean()) {
+            throw DeadlineReached.INSTANCE;
+        }
+        var known = probe(board);
+        if (known != null) {
+            return known;
+        }
+        if (depth == 0) {
+            return evaluate(board, false, values);
+        }
+        var entry = table == null ? null : table.get(board.getHash());
+        if (entry != null && entry.getDepth() >= depth) {
+            return entry.getScore();
+        }
+        var moves = stack(ply);
+        var count = moves(board, moves, 0);
+        if (count == 0) {
+            return evaluate(board, true, values);
+        }
+        if (entry != null) {
+            searchFirst(moves, count, entry.getMove());
+        }
+        var player = board.getPlayer().ordinal();
+        int[] best = null;
+        var bestMove = 0;
+        for (int i = 0; i < count; i++) {
+            var move = moves[i];
+            var score = search(board, move, depth - 1, ply + 1);
+            if (best == null || score[player] > best[player]) {
+                best = score;
+                bestMove = move;
+            }
+        }
+        if (table != null) {
+            table.put(board.getHash(), depth, best, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * moves the best move stored in the table to the front, if it is one of the moves
+     */
+    private static void searchFirst(int[] moves, int count, int first) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == first) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = first;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the move followed by the best moves stored in the table, up to the given number of plies
+     */
+    private List<Move> line(Board board, int first, int depth) {
+        var result = new ArrayList<Move>(depth);
+        result.add(PackedMove.toMove(first));
+        var position = engine.after(board, first);
+        var moves = new int[DreierschachEngineImpl.MAX_MOVES];
+        for (int ply = 1; ply < depth && table != null; ply++) {
+            var entry = table.get(position.getHash());
+            if (entry == null) {
+                break;
+            }
+            // the entry may belong to another position with the same slot and hash
+            if (!contains(moves, engine.generateMoves(position, moves, 0), entry.getMove())) {
+                break;
+            }
+            result.add(PackedMove.toMove(entry.getMove()));
+            position = engine.after(position, entry.getMove());
+        }
+        return result;
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the score of the result of an endgame table or null, if the position is not in a table
+     */
+    private int[] probe(Board board) {
+        if (tablebases == null) {
+            return null;
+        }
+        var result = tablebases.probe(board).orElse(null);
+        if (result == null) {
+            tablebaseMisses++;
+            return null;
+        }
+        tablebaseHits++;
+        if (result.getValue() == Tablebase.Value.ILLEGAL) {
+            return null;
+        }
+        var sign = result.getValue() == Tablebase.Value.WIN ? 1 : result.getValue() == Tablebase.Value.LOSS ? -1 : 0;
+        var score = new int[COLORS.length];
+        for (int c = 0; c < COLORS.length; c++) {
+            score[c] = c == result.getStrong().ordinal() ? sign * MATE / 2 : -sign * MATE / 4;
+        }
+        return score;
+    }
+
+    /**
+     * removes the root moves leading into endgames, which are worse for the player to move than the best one
+     *
+     * @return the number of remaining moves
+     */
+    private int keepBestEndgameMoves(Board board, int[] root, int count) {
+        if (tablebases == null) {
+            return count;
+        }
+        var player = board.getPlayer().ordinal();
+        var outcomes = new int[count];
+        var best = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            var score = probe(engine.after(board, root[i]));
+            outcomes[i] = score == null ? 0 : Integer.signum(score[player]);
+            best = Math.max(best, outcomes[i]);
+        }
+        var kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (outcomes[i] == best) {
+                root[kept++] = root[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the move stack of the ply, allocated on first use and reused by every node of the ply
+     */
+    private int[] stack(int ply) {
+        if (ply >= stacks.length) {
+            stacks = Arrays.copyOf(stacks, Math.max(ply + 1, 2 * stacks.length));
+        }
+        if (stacks[ply] == null) {
+            stacks[ply] = new int[DreierschachEngineImpl.MAX_MOVES];
+        }
+        return stacks[ply];
+    }
+
+    /**
+     * writes the legal moves, captures of the most valuable figures first
+     *
+     * @return the number of moves
+     */
+    private int moves(Board board, int[] moves, int offset) {
+        var count = engine.generateMoves(board, moves, offset);
+        // insertion sort, stable and fast for the few captures among the moves
+        for (int i = offset + 1; i < count; i++) {
+            var move = moves[i];
+            var victim = value(PackedMove.captured(move), values);
+            var j = i - 1;
+            while (j >= offset && value(PackedMove.captured(moves[j]), values) < victim) {
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            moves[j + 1] = move;
+        }
+        return count;
+    }
+
+    /**
+     * sorts the moves by the score of the player, the best first, keeping the order of equally scored moves
+     */
+    private static void sortByScore(int[] moves, int[][] scores, int count, int player) {
+        for (int i = 1; i < count; i++) {
+            var move = moves[i];
+            var score = scores[i];
+            var j = i - 1;
+            while (j >= 0 && scores[j][player] < score[player]) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * scores the material of each player against the material of its opponents
+     *
+     * @param stuck true, if the player to move cannot move
+     */
+    static int[] evaluate(Board board, boolean stuck, int[] values) {
+        var material = new int[COLORS.length];
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = board.get(Pos.square(i));
+            if (figure != Figure.NONE) {
+                material[figure.getColor().ordinal()] += values[figure.getType().ordinal()];
+            }
+        }
+        var total = material[0] + material[1] + material[2];
+        var result = new int[COLORS.length];
+        for (int c = 0; c < COLORS.length; c++) {
+            result[c] = 3 * material[c] - total;
+        }
+        if (stuck) {
+            result[board.getPlayer().ordinal()] -= MATE;
+        }
+        return result;
+    }
+
+    private static int value(Figure figure, int[] values) {
+        return figure == Figure.NONE ? 0 : values[figure.getType().ordinal()];
+    }
+
+    private static class DeadlineReached extends RuntimeException {
+        private static final DeadlineReached INSTANCE = new DeadlineReached();
+
+        DeadlineReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * a best move of an analysis and its expected continuation
+     */
+    public static class Line {
+        private final List<Move> moves;
+        private final int[] score;
+
+        public Line(List<Move> moves, int[] score) {
+            this.moves = moves;
+            this.score = score;
+        }
+
+        public List<Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return the expected score of each player, indexed by the ordinal of the color
+         */
+        public int[] getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * the best lines found by searching a position to a depth
+     */
+    public static class Iteration {
+        private final int depth;
+        private final long nodes;
+        private final List<Line> lines;
+
+        public Iteration(int depth, long nodes, List<Line> lines) {
+            this.depth = depth;
+            this.nodes = nodes;
+            this.lines = lines;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return the lines, the best first
+         */
+        public List<Line> getLines() {
+            return lines;
+        }
+    }
+
+    public static class SearchResult {
+        private final Move move;
+        private final int[] score;
+        private final int depth;
+        private final long nodes;
+
+        public SearchResult(Move move, int[] score, int depth, long nodes) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return the best move or null, if the player to move cannot move
+         */
+        public Move getMove() {
+            return move;
+        }
+
+        /**
+         * @return the expected score of each player, indexed by the ordinal of the color
+         */
+        public int[] getScore() {
+            return score;
+        }
+
+        /**
+         * @return the depth of the last completed iteration, 0 if no iteration completed
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Dir;
+import de.dreierschach.app.model.Pos;
+
+/**
+ * Precomputed pawn geometry per color: the forward directions, the squares the pawns start on, the squares on
+ * which they are promoted and the targets of pushes and captures of every square. All lookups are array accesses.
+ */
+final class PawnTables {
+    private static final int COLORS = Color.values().length;
+
+    //@formatter:off
+    // forward direction indexes per Dir.Type and color (WHITE, BROWN, BLACK)
+    private static final int[][][] FORWARD_INDEXES = {
+            /* straight */ {{1, 2}, {3, 4}, {5, 0}},
+            /* diagonal */ {{0, 1, 2}, {2, 3, 4}, {4, 5, 0}},
+            /* jump     */ {{0, 1, 2, 3, 4, 5}, {4, 5, 6, 7, 8, 9}, {8, 9, 10, 11, 0, 1, 2}}};
+    //@formatter:on
+
+    private static final boolean[][][] FORWARD = new boolean[COLORS][Dir.Type.values().length][];
+    private static final Dir[][] STRAIGHT = new Dir[COLORS][];
+    private static final Dir[][] DIAGONAL = new Dir[COLORS][];
+
+    private static final boolean[][] BASELINE = new boolean[COLORS][Pos.SQUARES];
+    private static final boolean[][] PROMOTION = new boolean[COLORS][Pos.SQUARES];
+
+    // square indexes or -1: [color][square][direction]
+    private static final int[][][] PUSH = new int[COLORS][Pos.SQUARES][];
+    private static final int[][][] DOUBLE_PUSH = new int[COLORS][Pos.SQUARES][];
+    private static final int[][][] CAPTURE = new int[COLORS][Pos.SQUARES][];
+    // the two squares next to a capture, one of them has to be empty
+    private static final int[][][] CAPTURE_LEFT = new int[COLORS][Pos.SQUARES][];
+    private static final int[][][] CAPTURE_RIGHT = new int[COLORS][Pos.SQUARES][];
+
+    static {
+        for (var color : Color.values()) {
+            var c = color.ordinal();
+            for (var type : Dir.Type.values()) {
+                var t = type.ordinal();
+                FORWARD[c][t] = new boolean[type.size()];
+                for (var i : FORWARD_INDEXES[t][c]) {
+                    FORWARD[c][t][i] = true;
+                }
+            }
+            STRAIGHT[c] = forwardDirs(color, Dir.Type.straight);
+            DIAGONAL[c] = forwardDirs(color, Dir.Type.diagonal);
+
+            for (int s = 0; s < Pos.SQUARES; s++) {
+                var pos = Pos.square(s);
+                BASELINE[c][s] = computePawnBaseline(pos, color);
+                PROMOTION[c][s] = pos.isPromotion(color);
+
+                PUSH[c][s] = new int[STRAIGHT[c].length];
+                DOUBLE_PUSH[c][s] = new int[STRAIGHT[c].length];
+                for (int k = 0; k < STRAIGHT[c].length; k++) {
+                    var single = Pos.add(pos, STRAIGHT[c][k]);
+                    var twice = Pos.add(single, STRAIGHT[c][k]);
+                    PUSH[c][s][k] = single.index();
+                    DOUBLE_PUSH[c][s][k] = BASELINE[c][s] && single.isValid() ? twice.index() : -1;
+                }
+
+                CAPTURE[c][s] = new int[DIAGONAL[c].length];
+                CAPTURE_LEFT[c][s] = new int[DIAGONAL[c].length];
+                CAPTURE_RIGHT[c][s] = new int[DIAGONAL[c].length];
+                for (int k = 0; k < DIAGONAL[c].length; k++) {
+                    var dir = DIAGONAL[c][k];
+                    var straight = Dir.get(Dir.Type.straight, dir.getIndex());
+                    CAPTURE[c][s][k] = Pos.add(pos, dir).index();
+                    CAPTURE_LEFT[c][s][k] = Pos.add(pos, straight).index();
+                    CAPTURE_RIGHT[c][s][k] = Pos.add(pos, Dir.rotateRight(straight)).index();
+                }
+            }
+        }
+    }
+
+    private PawnTables() {
+    }
+
+    static boolean isForward(Dir dir, Color color) {
+        return FORWARD[color.ordinal()][dir.getType().ordinal()][dir.getIndex()];
+    }
+
+    /**
+     * @return true, if a pawn of the given color may move two squares from the given square
+     */
+    static boolean isPawnBaseline(Pos pos, Color color) {
+        return pos.isValid() && BASELINE[color.ordinal()][pos.index()];
+    }
+
+    /**
+     * @return true, if the given square is on the baseline of an opponent of the given color
+     */
+    static boolean isPromotion(Pos pos, Color color) {
+        return pos.isValid() && PROMOTION[color.ordinal()][pos.index()];
+    }
+
+    static int[] push(Color color, int square) {
+        return PUSH[color.ordinal()][square];
+    }
+
+    static int[] doublePush(Color color, int square) {
+        return DOUBLE_PUSH[color.ordinal()][square];
+    }
+
+    static int[] capture(Color color, int square) {
+        return CAPTURE[color.ordinal()][square];
+    }
+
+    static int[] captureLeft(Color color, int square) {
+        return CAPTURE_LEFT[color.ordinal()][square];
+    }
+
+    static int[] captureRight(Color color, int square) {
+        return CAPTURE_RIGHT[color.ordinal()][square];
+    }
+
+    private static Dir[] forwardDirs(Color color, Dir.Type type) {
+        var indexes = FORWARD_INDEXES[type.ordinal()][color.ordinal()];
+        var result = new Dir[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            result[i] = Dir.get(type, indexes[i]);
+        }
+        return result;
+    }
+
+    private static boolean computePawnBaseline(Pos pos, Color color) {
+        switch (color) {
+            case WHITE:
+                return pos.y() == 1;
+            case BROWN:
+                return pos.y() - pos.x() == 4;
+            case BLACK:
+                return pos.x() == 11;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.PackedMove;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * The scores of searched positions by their hash, so a position reached by different move orders, or searched
+ * again when a nearby position is analyzed, is not searched twice. Each slot holds one position, a position
+ * replaces the one in its slot unless that one has been searched deeper.
+ * <p>
+ * The table may be shared by searches running at the same time: the entries are immutable, a search reading a
+ * slot while another one writes it sees either entry.
+ */
+public class TranspositionTable {
+    private static final Counter HITS = probes("hit");
+    private static final Counter MISSES = probes("miss");
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param size the number of entries, rounded down to a power of two
+     */
+    public TranspositionTable(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("ungültige Tabellengröße " + size);
+        }
+        entries = new Entry[Integer.highestOneBit(size)];
+        mask = entries.length - 1;
+    }
+
+    /**
+     * @return the entry of the position or null, if it has not been searched or has been replaced
+     */
+    public Entry get(long hash) {
+        var entry = entries[slot(hash)];
+        if (entry == null || entry.hash != hash) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        return entry;
+    }
+
+    /**
+     * @param depth  the number of plies searched below the position
+     * @param score  the score of each player, it must not be changed afterwards
+     * @param move   the best move, see {@link PackedMove}
+     */
+    public void put(long hash, int depth, int[] score, int move) {
+        var slot = slot(hash);
+        var old = entries[slot];
+        if (old == null || old.hash != hash || old.depth <= depth) {
+            entries[slot] = new Entry(hash, depth, score, move);
+        }
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+    private static Counter probes(String result) {
+        return Counter.builder("dreierschach.search.table")
+                .description("Lookups of positions in the transposition table")
+                .tag("result", result)
+                .register(Metrics.globalRegistry);
+    }
+
+    public static class Entry {
+        private final long hash;
+        private final int depth;
+        private final int[] score;
+        private final int move;
+
+        Entry(long hash, int depth, int[] score, int move) {
+            this.hash = hash;
+            this.depth = depth;
+            this.score = score;
+            this.move = move;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int[] getScore() {
+            return score;
+        }
+
+        /**
+         * @return the best move, see {@link PackedMove}
+         */
+        public int getMove() {
+            return move;
+        }
+    }
+}
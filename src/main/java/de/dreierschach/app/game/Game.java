@@ -0,0 +1,396 @@
+package de.dreierschach.app.game;
+
+import de.dreierschach.app.engine.DreierschachEngine;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.BoardSnapshot;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.GameClock;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.persistence.BoardCodec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A game and the mailbox of its commands. The engine, its board and the listeners of the board are touched by the
+ * commands only, which run one after the other in the order they were submitted, so neither needs any locks.
+ * Moves of the players, replies of the computer, clock ticks and reads are all submitted as commands.
+ * <p>
+ * The mailboxes of all games are processed by a shared pool: a game with queued commands runs up to
+ * {@link #BATCH_SIZE} of them at once and then yields to the other games. The listeners of the board are called
+ * on the threads of the pool, views have to pass their updates to their UI.
+ * <p>
+ * After every command that has changed the board, the game publishes a new {@link BoardSnapshot}. Readers that
+ * do not need the engine read the latest snapshot from any thread, without queueing a command.
+ * <p>
+ * An idle game created with a factory of its engine may be {@link #pageOut(Path, Duration) paged out}: its board
+ * is written to a file and the engine with the board, its listeners and its caches is dropped. The next command
+ * reads the board back and plays on with a new engine of the factory, so commands must not keep the engine they
+ * are passed. The snapshot stays, reading it does not bring the game back.
+ */
+public class Game {
+    private static Logger log = LoggerFactory.getLogger(Game.class);
+
+    private static final Timer HYDRATION = Timer.builder("dreierschach.games.hydration")
+            .description("Time to read a paged out game back")
+            .publishPercentiles(0.5, 0.99)
+            .register(Metrics.globalRegistry);
+
+    /**
+     * the most commands processed at once, before the other games get their turn
+     */
+    static final int BATCH_SIZE = 32;
+
+    private final String id;
+    // creates the engine a paged out game is read back into, null if the game is never paged out
+    private final Supplier<? extends DreierschachEngine> engines;
+    // null while the game is paged out, read and written in the mailbox only
+    private DreierschachEngine engine;
+    // the file of the board and the clock of the game while it is paged out
+    private Path page;
+    private GameClock pagedClock;
+    private volatile boolean resident = true;
+    private volatile long lastUsed = System.nanoTime();
+    private final Executor executor;
+    private final Queue<Command> mailbox = new ConcurrentLinkedQueue<>();
+    // the number of commands submitted and not yet processed, the mailbox is scheduled while it is positive
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final Timer latency;
+    private final DistributionSummary batches;
+    private final List<Meter> meters;
+    private final List<Consumer<BoardSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private volatile BoardSnapshot snapshot;
+
+    /**
+     * creates a game that is never paged out
+     *
+     * @param id       the name of the game in the metrics
+     * @param executor runs the mailbox
+     */
+    public Game(String id, DreierschachEngine engine, Executor executor) {
+        this(id, engine, null, executor);
+    }
+
+    /**
+     * creates a game that may be paged out
+     *
+     * @param id       the name of the game in the metrics
+     * @param engines  creates the engine of the game with a new game started, and again whenever the game is read
+     *                 back
+     * @param executor runs the mailbox
+     */
+    public Game(String id, Supplier<? extends DreierschachEngine> engines, Executor executor) {
+        this(id, engines.get(), engines, executor);
+    }
+
+    private Game(String id, DreierschachEngine engine, Supplier<? extends DreierschachEngine> engines,
+                 Executor executor) {
+        this.id = id;
+        this.engine = engine;
+        this.engines = engines;
+        this.executor = executor;
+        this.snapshot = BoardSnapshot.of(engine.board());
+        latency = Timer.builder("dreierschach.game.queue")
+                .description("Time the commands of a game wait in its mailbox")
+                .tag("game", id)
+                .publishPercentiles(0.5, 0.99)
+                .register(Metrics.globalRegistry);
+        batches = DistributionSummary.builder("dreierschach.game.batch")
+                .description("Commands of a game processed at once")
+                .tag("game", id)
+                .register(Metrics.globalRegistry);
+        meters = List.of(latency, batches,
+                FunctionCounter.builder("dreierschach.game.commands", processed, AtomicLong::get)
+                        .description("Commands of a game processed")
+                        .tag("game", id)
+                        .register(Metrics.globalRegistry),
+                Gauge.builder("dreierschach.game.queued", pending, AtomicInteger::get)
+                        .description("Commands waiting in the mailbox of a game")
+                        .tag("game", id)
+                        .register(Metrics.globalRegistry));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * queues a command reading or changing the game
+     *
+     * @return completes with the result of the command, or exceptionally if the command failed, once the changes
+     * of the command have been published. Stages depending on it without an executor run in the mailbox and must
+     * not wait for other commands of the game.
+     */
+    public <T> CompletableFuture<T> submit(Function<DreierschachEngine, T> command) {
+        lastUsed = System.nanoTime();
+        var result = new CompletableFuture<T>();
+        enqueue(() -> {
+            T value;
+            try {
+                value = command.apply(engine());
+            } catch (RuntimeException e) {
+                log.warn("Command of game {} failed", id, e);
+                publish();
+                result.completeExceptionally(e);
+                return;
+            }
+            publish();
+            result.complete(value);
+        });
+        return result;
+    }
+
+    /**
+     * @see #submit(Function)
+     */
+    public CompletableFuture<Void> execute(Consumer<DreierschachEngine> command) {
+        return submit(engine -> {
+            command.accept(engine);
+            return null;
+        });
+    }
+
+    /**
+     * @return completes with true, if the move has been played
+     * @see DreierschachEngine#move(Pos, Pos, FigureType)
+     */
+    public CompletableFuture<Boolean> move(Pos source, Pos destination, FigureType promotion) {
+        return submit(engine -> engine.move(source, destination, promotion));
+    }
+
+    /**
+     * lets the computer choose a move outside of the mailbox, on a copy of the position, and plays it, unless the
+     * position has changed in the meantime. The commands of the game are processed while the computer thinks.
+     *
+     * @param player chooses the move for the position and the clock of the game, it runs on the common pool
+     * @return completes with true, if a move has been played
+     */
+    public CompletableFuture<Boolean> reply(BiFunction<Board, GameClock, Optional<Move>> player) {
+        return submit(engine -> new Turn(Board.copyOf(engine.board()), engine.clock()))
+                .thenComposeAsync(turn -> player.apply(turn.position, turn.clock)
+                        .map(move -> submit(engine -> engine.board().getHash() == turn.position.getHash()
+                                && engine.move(move.p1(), move.p2(), move.promotion())))
+                        .orElse(CompletableFuture.completedFuture(false)));
+    }
+
+    /**
+     * @return the latest version of the board, published after the last command changing it
+     */
+    public BoardSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param listener called in the mailbox with every new snapshot, it must not wait for commands of the game
+     * @return removes the listener
+     */
+    public Runnable onSnapshot(Consumer<BoardSnapshot> listener) {
+        snapshotListeners.add(listener);
+        return () -> snapshotListeners.remove(listener);
+    }
+
+    /**
+     * writes the board to a file in the directory and drops the engine, unless the game has no factory of its
+     * engine, a command has been submitted within the idle time in the meantime or the board has listeners, e.g. of
+     * a view or the journal
+     *
+     * @return completes with true, if the game has been paged out
+     */
+    public CompletableFuture<Boolean> pageOut(Path dir, Duration idle) {
+        var result = new CompletableFuture<Boolean>();
+        // not a use of the game, it does not bring a paged out game back
+        enqueue(() -> {
+            if (!isPageable() || engine == null || getIdle().compareTo(idle) < 0 || engine.board().hasListeners()) {
+                result.complete(false);
+                return;
+            }
+            var file = dir.resolve(URLEncoder.encode(id, StandardCharsets.UTF_8) + ".game");
+            try {
+                Files.write(file, BoardCodec.toBytes(engine.board()));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Game {} not paged out", id, e);
+                result.complete(false);
+                return;
+            }
+            page = file;
+            pagedClock = engine.clock();
+            engine = null;
+            resident = false;
+            result.complete(true);
+        });
+        return result;
+    }
+
+    /**
+     * @return true, if the game has been created with a factory of its engine
+     */
+    public boolean isPageable() {
+        return engines != null;
+    }
+
+    /**
+     * @return false, while the game is paged out
+     */
+    public boolean isResident() {
+        return resident;
+    }
+
+    /**
+     * @return the time since the last command has been submitted
+     */
+    public Duration getIdle() {
+        return Duration.ofNanos(System.nanoTime() - lastUsed);
+    }
+
+    /**
+     * @return the number of commands waiting to be processed
+     */
+    public int getQueued() {
+        return pending.get();
+    }
+
+    /**
+     * @return the number of commands processed
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * removes the meters of the game, commands still queued are processed
+     */
+    void close() {
+        meters.forEach(Metrics.globalRegistry::remove);
+        enqueue(() -> {
+            if (page != null) {
+                try {
+                    Files.deleteIfExists(page);
+                } catch (IOException e) {
+                    log.warn("Page of game {} not removed", id, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the engine of the game, a new one of the factory with the board read back from its file, if the game
+     * has been paged out
+     */
+    private DreierschachEngine engine() {
+        if (engine == null) {
+            var start = System.nanoTime();
+            Board board;
+            try {
+                board = BoardCodec.fromBytes(Files.readAllBytes(page));
+            } catch (IOException e) {
+                throw new RuntimeException("Fehler beim Laden des Spiels " + id, e);
+            }
+            engine = engines.get().withBoard(board).withClock(pagedClock);
+            try {
+                Files.delete(page);
+            } catch (IOException e) {
+                log.warn("Page of game {} not removed", id, e);
+            }
+            page = null;
+            pagedClock = null;
+            resident = true;
+            HYDRATION.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return engine;
+    }
+
+    private void enqueue(Runnable action) {
+        mailbox.add(new Command(action, System.nanoTime()));
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * processes a batch of commands, the submitter of the first command of an empty mailbox schedules it
+     */
+    private void drain() {
+        var batch = 0;
+        int remaining;
+        do {
+            var command = mailbox.poll();
+            latency.record(System.nanoTime() - command.submitted, TimeUnit.NANOSECONDS);
+            command.action.run();
+            processed.incrementAndGet();
+            batch++;
+            remaining = pending.decrementAndGet();
+        } while (remaining > 0 && batch < BATCH_SIZE);
+        batches.record(batch);
+        if (remaining > 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void publish() {
+        if (engine == null) {
+            return;
+        }
+        var board = engine.board();
+        if (snapshot.matches(board)) {
+            return;
+        }
+        var next = snapshot.next(board);
+        snapshot = next;
+        for (var listener : snapshotListeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                // a failing listener must not stop the mailbox
+                log.warn("Snapshot listener of game {} failed", id, e);
+            }
+        }
+    }
+
+    private static class Command {
+        private final Runnable action;
+        private final long submitted;
+
+        Command(Runnable action, long submitted) {
+            this.action = action;
+            this.submitted = submitted;
+        }
+    }
+
+    private static class Turn {
+        private final Board position;
+        private final GameClock clock;
+
+        Turn(Board position, GameClock clock) {
+            this.position = position;
+            this.clock = clock;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.dreierschach.app.game;
+
+import de.dreierschach.app.engine.DreierschachEngine;
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * The games being played and the pool processing their mailboxes. The number of threads does not grow with the
+ * number of games, see {@link Game}.
+ * <p>
+ * Games without commands for the idle time are paged out to the directory of the registry and read back by their
+ * next command, so games whose players move hours apart do not keep their boards in memory. The games of the
+ * {@link #table(String) tables} are paged out once nobody watches them, the game shared by all sessions is not.
+ */
+@Component
+public class GameRegistry {
+    /**
+     * the id of the game shared by all sessions
+     */
+    public static final String MAIN = "main";
+
+    private static final Pattern TABLE = Pattern.compile("[a-z0-9-]{1,32}");
+
+    private final DreierschachEngine engine;
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService pager;
+    private final Path dir;
+    private final Duration idle;
+    private final int maxGames;
+
+    /**
+     * @param engine   the engine of the game shared by all sessions
+     * @param threads  the number of mailboxes processed at the same time
+     * @param dir      the directory of the paged out games
+     * @param idle     the time without commands after which a game is paged out
+     * @param maxGames the number of games, beyond it no more tables are opened
+     */
+    public GameRegistry(DreierschachEngine engine, @Value("${dreierschach.games.threads:2}") int threads,
+                        @Value("${dreierschach.games.dir:data/games}") Path dir,
+                        @Value("${dreierschach.games.idle:30m}") Duration idle,
+                        @Value("${dreierschach.games.max:1000}") int maxGames) {
+        this.engine = engine;
+        this.dir = dir;
+        this.idle = idle;
+        this.maxGames = maxGames;
+        // the games are not kept across restarts, neither are their pages
+        try {
+            Files.createDirectories(dir);
+            try (var files = Files.newDirectoryStream(dir, "*.game")) {
+                for (var file : files) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Leeren des Verzeichnisses " + dir, e);
+        }
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "games");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pager = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "games-pager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var interval = Math.max(1000, idle.toMillis() / 4);
+        pager.scheduleWithFixedDelay(this::pageOutIdle, interval, interval, TimeUnit.MILLISECONDS);
+        Gauge.builder("dreierschach.games.registered", games, Map::size)
+                .description("Number of games with a mailbox")
+                .baseUnit("games")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("dreierschach.games.resident", this, registry -> registry.count(true))
+                .description("Number of games with their board in memory, not the memory they use")
+                .baseUnit("games")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("dreierschach.games.paged", this, registry -> registry.count(false))
+                .description("Number of games paged out to disk")
+                .baseUnit("games")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @return the game shared by all sessions
+     */
+    public Game main() {
+        return games.computeIfAbsent(MAIN, id -> new Game(id, engine, executor));
+    }
+
+    /**
+     * @param id the name of the table, lower case letters, digits and dashes
+     * @return the game played at the table, a new one if nobody has played there yet
+     * @throws IllegalArgumentException if the name is not valid
+     * @throws IllegalStateException    if there are too many games to open another table
+     */
+    public Game table(String id) {
+        if (!TABLE.matcher(id).matches() || MAIN.equals(id)) {
+            throw new IllegalArgumentException("ungültiger Tisch " + id);
+        }
+        return games.computeIfAbsent(id, key -> {
+            if (games.size() >= maxGames) {
+                throw new IllegalStateException("zu viele Spiele");
+            }
+            return new Game(key, () -> new DreierschachEngineImpl().startGame(), executor);
+        });
+    }
+
+    public Optional<Game> get(String id) {
+        return Optional.ofNullable(games.get(id));
+    }
+
+    /**
+     * adds a game played with its own engine, which is paged out when it is idle
+     *
+     * @param engines creates the engine of the game with a new game started, and again whenever the game is read
+     *                back
+     * @throws IllegalArgumentException if a game with the id exists
+     */
+    public Game register(String id, Supplier<? extends DreierschachEngine> engines) {
+        var game = new Game(id, engines, executor);
+        if (games.putIfAbsent(id, game) != null) {
+            game.close();
+            throw new IllegalArgumentException("doppeltes Spiel " + id);
+        }
+        return game;
+    }
+
+    /**
+     * removes the game, commands still queued are processed
+     */
+    public void remove(String id) {
+        var game = games.remove(id);
+        if (game != null) {
+            game.close();
+        }
+    }
+
+    /**
+     * pages out the games idle for the idle time, see {@link Game#pageOut(Path, Duration)}
+     *
+     * @return completes with the number of games paged out
+     */
+    public CompletableFuture<Integer> pageOutIdle() {
+        var paged = games.values().stream()
+                .filter(game -> game.isPageable() && game.isResident()
+                        && game.getIdle().compareTo(idle) >= 0)
+                .map(game -> game.pageOut(dir, idle))
+                .toList();
+        return CompletableFuture.allOf(paged.toArray(CompletableFuture[]::new))
+                .thenApply(done -> (int) paged.stream().filter(CompletableFuture::join).count());
+    }
+
+    private int count(boolean resident) {
+        return (int) games.values().stream().filter(game -> game.isResident() == resident).count();
+    }
+
+    @PreDestroy
+    public void close() {
+        pager.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,39 @@
+package de.dreierschach.app.metrics;
+
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import de.dreierschach.app.engine.DreierschachEngine;
+import de.dreierschach.app.persistence.GameJournal;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gauges for the state of the application: open journal files, open Vaadin sessions and the listeners registered
+ * at the board of the engine. The meters of the engine itself are registered in the engine package, the games are
+ * counted by the {@link de.dreierschach.app.game.GameRegistry}.
+ */
+@Component
+public class GameMetrics implements VaadinServiceInitListener {
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    public GameMetrics(MeterRegistry registry, DreierschachEngine engine, GameJournal journal) {
+        Gauge.builder("dreierschach.journal.channels.open", journal, GameJournal::openFiles)
+                .description("Journal files kept open, at most one per game")
+                .register(registry);
+        Gauge.builder("dreierschach.sessions", sessions, AtomicInteger::get)
+                .description("Open Vaadin sessions")
+                .register(registry);
+        Gauge.builder("dreierschach.board.listeners", engine, e -> e.board().getListenerCount())
+                .description("Listeners registered at the board of the engine")
+                .register(registry);
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.getSource().addSessionInitListener(e -> sessions.incrementAndGet());
+        event.getSource().addSessionDestroyListener(e -> sessions.decrementAndGet());
+    }
+}
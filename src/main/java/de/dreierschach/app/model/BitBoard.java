@@ -0,0 +1,51 @@
+package de.dreierschach.app.model;
+
+/**
+ * Sets of squares as bitboards: the 126 squares fit into two longs, word 0 holds the squares with the indexes 0 to
+ * 63, word 1 the squares 64 to 125, see {@link Pos#index()}. The sets are passed as the two words, so testing and
+ * combining them does not allocate.
+ */
+public final class BitBoard {
+    public static final int WORDS = 2;
+
+    private BitBoard() {
+    }
+
+    /**
+     * @return the word holding the square
+     */
+    public static int word(int square) {
+        return square >>> 6;
+    }
+
+    /**
+     * @return the bit of the square within its word
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static boolean contains(long word0, long word1, int square) {
+        return ((square < 64 ? word0 : word1) & bit(square)) != 0;
+    }
+
+    /**
+     * @return the lowest square of the set or -1, if it is empty
+     */
+    public static int lowest(long word0, long word1) {
+        if (word0 != 0) {
+            return Long.numberOfTrailingZeros(word0);
+        }
+        return word1 != 0 ? 64 + Long.numberOfTrailingZeros(word1) : -1;
+    }
+
+    /**
+     * @return the highest square of the set or -1, if it is empty
+     */
+    public static int highest(long word0, long word1) {
+        if (word1 != 0) {
+            return 127 - Long.numberOfLeadingZeros(word1);
+        }
+        return word0 != 0 ? 63 - Long.numberOfLeadingZeros(word0) : -1;
+    }
+}
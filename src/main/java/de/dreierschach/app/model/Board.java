@@ -1,12 +1,75 @@
 package de.dreierschach.app.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-public class Board {
+// the kings positions are written for the readers of the JSON only, they are taken from the figures when reading
+@JsonIgnoreProperties(value = "kingsPositions", allowGetters = true)
+public class Board implements MoveHistory {
+    private static final Timer FIELD_FAN_OUT = fanOutTimer("field");
+    private static final Timer PLAYER_FAN_OUT = fanOutTimer("player");
+    private static final Timer MOVE_FAN_OUT = fanOutTimer("move");
+    private static final Timer CHECK_FAN_OUT = fanOutTimer("check");
+
+    // random keys for the position hash, fixed seed to make hashes comparable between runs
+    private static final long[][] FIGURE_KEYS = new long[Figure.values().length][Pos.SQUARES];
+    private static final long[] PLAYER_KEYS = new long[Color.values().length];
+    private static final long[] CASTELING_KEYS = new long[Color.values().length];
+    private static final long[] CHECK_KEYS = new long[Color.values().length];
+    private static final long[] EN_PASSANT_KEYS = new long[Pos.SQUARES];
+    private static final Color[] COLORS = Color.values();
+
+    static {
+        var random = new SplittableRandom(0x3d5c4a1b2e6f7081L);
+        for (var figure : Figure.values()) {
+            for (int i = 0; i < Pos.SQUARES; i++) {
+                FIGURE_KEYS[figure.ordinal()][i] = figure == Figure.NONE ? 0 : random.nextLong();
+            }
+        }
+        for (var color : Color.values()) {
+            PLAYER_KEYS[color.ordinal()] = random.nextLong();
+            CASTELING_KEYS[color.ordinal()] = random.nextLong();
+            CHECK_KEYS[color.ordinal()] = random.nextLong();
+        }
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        }
+    }
+
+    // squares of the rooks when casteling
+    private static final Pos A1 = Pos.of("a1");
+    private static final Pos A3 = Pos.of("a3");
+    private static final Pos A6 = Pos.of("a6");
+    private static final Pos A8 = Pos.of("a8");
+    private static final Pos F1 = Pos.of("f1");
+    private static final Pos F13 = Pos.of("f13");
+    private static final Pos H3 = Pos.of("h3");
+    private static final Pos H13 = Pos.of("h13");
+    private static final Pos K6 = Pos.of("k6");
+    private static final Pos K13 = Pos.of("k13");
+    private static final Pos M8 = Pos.of("m8");
+    private static final Pos M13 = Pos.of("m13");
+    // the squares of the rook before and after casteling: [color][king side, queen side]
+    private static final Pos[][][] CASTELING_ROOKS = {
+            {{A1, A3}, {A8, A6}},
+            {{M8, K6}, {F1, H3}},
+            {{F13, H13}, {M13, K13}}};
+
+    // the state before a move: the players in check (3 bit), the players not allowed to castle (3 bit), the en
+    // passant square and pawn (7 bit each), whether the players in check are known (1 bit)
+    private static final int DELTA_CASTELING = 3;
+    private static final int DELTA_EN_PASSANT = 6;
+    private static final int DELTA_EN_PASSANT_PAWN = 13;
+    private static final int DELTA_CHECK_KNOWN = 1 << 20;
 
     @JsonIgnore
     private final List<Consumer<FieldChangeEvent>> fieldChangeListeners;
@@ -17,12 +80,30 @@ public class Board {
     @JsonIgnore
     private final List<Consumer<CheckEvent>> checkListeners;
 
+    private String id;
     private Figure[][] figures;
     private final Set<Color> castelingForbidden;
     private final Set<Color> check;
     private Color player;
-    private final List<Move> moves;
+    // the moves leading to the position, packed, see PackedMove
+    private int[] moves;
+    // the state before each move that the move itself does not hold, to take it back
+    private int[] deltas;
+    private int moveCount;
     private final Map<Color, Pos> kingsPositions;
+    // the square passed by a pawn moving two squares and that pawn, valid for the next move only
+    private Pos enPassant = Pos.NONE;
+    private Pos enPassantPawn = Pos.NONE;
+    // hash of the figures, updated with every change of a field
+    private long figuresHash;
+    // the squares occupied by each color and each type of figure, see BitBoard
+    private final long[] colorBits = new long[COLORS.length * BitBoard.WORDS];
+    private final long[] typeBits = new long[FigureType.values().length * BitBoard.WORDS];
+    // the last snapshot taken of the board and what has changed since: a bit for each chunk of squares and the
+    // index of the first move replaced, see BoardSnapshot
+    private BoardSnapshot snapshot;
+    private long changedSquares = -1;
+    private int changedMoves;
 
     public Board() {
         this.figures = new Figure[13][13];
@@ -32,7 +113,8 @@ public class Board {
         this.playerChangeListeners = new ArrayList<>();
         this.moveListeners = new ArrayList<>();
         this.checkListeners = new ArrayList<>();
-        this.moves = new ArrayList<>();
+        this.moves = new int[64];
+        this.deltas = new int[64];
         this.kingsPositions = new HashMap<>();
         clear();
     }
@@ -45,14 +127,16 @@ public class Board {
      */
     public static Board copyOf(Board board) {
         var result = new Board();
+        result.id = board.id;
         for (int i = 0; i < 13; i++) {
             System.arraycopy(board.figures[i], 0, result.figures[i], 0, 13);
         }
         result.check.clear();
         result.check.addAll(board.check);
 
-        result.moves.clear();
-        result.moves.addAll(board.moves);
+        result.moves = Arrays.copyOf(board.moves, Math.max(board.moveCount + 16, 64));
+        result.deltas = Arrays.copyOf(board.deltas, result.moves.length);
+        result.moveCount = board.moveCount;
 
         result.player = board.player;
 
@@ -62,15 +146,83 @@ public class Board {
         result.kingsPositions.clear();
         result.kingsPositions.putAll(board.kingsPositions);
 
+        result.figuresHash = board.figuresHash;
+        System.arraycopy(board.colorBits, 0, result.colorBits, 0, board.colorBits.length);
+        System.arraycopy(board.typeBits, 0, result.typeBits, 0, board.typeBits.length);
+        result.enPassant = board.enPassant;
+        result.enPassantPawn = board.enPassantPawn;
         return result;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public Figure[][] getFigures() {
         return figures;
     }
 
     public void setFigures(Figure[][] figures) {
         this.figures = figures;
+        changedSquares = -1;
+        figuresHash = 0;
+        kingsPositions.clear();
+        Arrays.fill(colorBits, 0);
+        Arrays.fill(typeBits, 0);
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = get(Pos.square(i));
+            if (figure != null) {
+                figuresHash ^= FIGURE_KEYS[figure.ordinal()][i];
+                toggleBits(figure, i);
+                if (figure.getType() == FigureType.KING) {
+                    kingsPositions.put(figure.getColor(), Pos.square(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Zobrist hash of the position: the figures, the player, the casteling and check state and the en passant
+     * square. Equal positions have equal hashes, independent of the moves leading to them.
+     *
+     * @return the hash of the position
+     */
+    @JsonIgnore
+    public long getHash() {
+        var hash = getPositionHash();
+        for (var color : COLORS) {
+            if (check.contains(color)) {
+                hash ^= CHECK_KEYS[color.ordinal()];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * the hash of the position without the check state, which follows from the figures. It is equal for boards
+     * replayed without computing the check state, see {@link PositionHistory}.
+     *
+     * @return the hash of the figures, the player, the casteling state and the en passant square
+     */
+    @JsonIgnore
+    public long getPositionHash() {
+        var hash = figuresHash;
+        if (player != null) {
+            hash ^= PLAYER_KEYS[player.ordinal()];
+        }
+        for (var color : COLORS) {
+            if (castelingForbidden.contains(color)) {
+                hash ^= CASTELING_KEYS[color.ordinal()];
+            }
+        }
+        if (enPassant.isValid()) {
+            hash ^= EN_PASSANT_KEYS[enPassant.index()];
+        }
+        return hash;
     }
 
     public Set<Color> getCastelingForbidden() {
@@ -81,6 +233,7 @@ public class Board {
         return check;
     }
 
+    @JsonSetter("player")
     public Board withPlayer(Color player) {
         this.player = player;
         return this;
@@ -90,7 +243,7 @@ public class Board {
         return kingsPositions;
     }
 
-    @JsonIgnore
+    @JsonProperty("player")
     public Color getPlayer() {
         return player;
     }
@@ -122,6 +275,13 @@ public class Board {
         if (pos.isValid()) {
             var oldValue = figures[pos.y()][pos.x()];
             figures[pos.y()][pos.x()] = figure;
+            changedSquares |= 1L << pos.index() / BoardSnapshot.SQUARES_CHUNK;
+            if (oldValue != null) {
+                figuresHash ^= FIGURE_KEYS[oldValue.ordinal()][pos.index()];
+                toggleBits(oldValue, pos.index());
+            }
+            figuresHash ^= FIGURE_KEYS[figure.ordinal()][pos.index()];
+            toggleBits(figure, pos.index());
             if (figure.getType() == FigureType.KING) {
                 kingsPositions.put(figure.getColor(), pos);
             }
@@ -135,11 +295,69 @@ public class Board {
         return pos.isValid() ? figures[pos.y()][pos.x()] : Figure.NONE;
     }
 
+    /**
+     * @param word 0 or 1, see {@link BitBoard}
+     * @return the squares occupied by the figures of the color
+     */
+    public long colorBits(Color color, int word) {
+        return colorBits[color.ordinal() * BitBoard.WORDS + word];
+    }
+
+    /**
+     * @param word 0 or 1, see {@link BitBoard}
+     * @return the squares occupied by the figures of the type, of all colors
+     */
+    public long typeBits(FigureType type, int word) {
+        return typeBits[type.ordinal() * BitBoard.WORDS + word];
+    }
+
+    /**
+     * @param word 0 or 1, see {@link BitBoard}
+     * @return the squares occupied by any figure
+     */
+    public long occupiedBits(int word) {
+        return colorBits[word] | colorBits[BitBoard.WORDS + word] | colorBits[2 * BitBoard.WORDS + word];
+    }
+
+    private void toggleBits(Figure figure, int square) {
+        if (figure != Figure.NONE) {
+            var word = BitBoard.word(square);
+            colorBits[figure.getColor().ordinal() * BitBoard.WORDS + word] ^= BitBoard.bit(square);
+            typeBits[figure.getType().ordinal() * BitBoard.WORDS + word] ^= BitBoard.bit(square);
+        }
+    }
+
     @JsonIgnore
     public Pos getKingsPosition(Color color) {
         return kingsPositions.get(color);
     }
 
+    /**
+     * @return the square a pawn may capture en passant in the next move or {@link Pos#NONE}
+     */
+    @JsonIgnore
+    public Pos getEnPassant() {
+        return enPassant;
+    }
+
+    /**
+     * @return the pawn captured when moving to {@link #getEnPassant()}
+     */
+    @JsonIgnore
+    public Pos getEnPassantPawn() {
+        return enPassantPawn;
+    }
+
+    /**
+     * sets the en passant state, e.g. when restoring a stored board
+     */
+    @JsonIgnore
+    public Board withEnPassant(Pos square, Pos pawn) {
+        this.enPassant = square;
+        this.enPassantPawn = pawn;
+        return this;
+    }
+
     @JsonIgnore
     public void setCheck(Set<Color> players) {
         var oldValue = new HashSet<>(this.check);
@@ -156,15 +374,96 @@ public class Board {
 
     @JsonIgnore
     public Stream<Move> getMoves() {
-        return moves.stream();
+        return IntStream.range(0, moveCount).mapToObj(i -> PackedMove.toMove(moves[i]));
+    }
+
+    /**
+     * replaces the list of moves without replaying them, e.g. when restoring a stored board
+     *
+     * @param moves the moves that lead to the current position
+     * @return this board
+     */
+    @JsonIgnore
+    public Board withMoves(List<Move> moves) {
+        this.moves = new int[Math.max(moves.size() + 16, 64)];
+        this.moveCount = 0;
+        this.changedMoves = 0;
+        moves.forEach(move -> this.moves[moveCount++] = PackedMove.of(move));
+        restoreDeltas();
+        return this;
+    }
+
+    /**
+     * @param moves the packed moves that lead to the current position, see {@link PackedMove}, they are copied
+     * @see #withMoves(List)
+     */
+    public Board withPackedMoves(int[] moves, int count) {
+        this.moves = Arrays.copyOf(moves, Math.max(count + 16, 64));
+        this.moveCount = count;
+        this.changedMoves = 0;
+        restoreDeltas();
+        return this;
+    }
+
+    /**
+     * derives the state before each of the moves replaced without replaying them: casteling and en passant follow
+     * from the moves before, the check state is not known
+     */
+    private void restoreDeltas() {
+        deltas = new int[moves.length];
+        var forbidden = 0;
+        for (int i = 0; i < moveCount; i++) {
+            var enPassant = Pos.NONE;
+            var pawn = Pos.NONE;
+            if (i > 0) {
+                var previous = moves[i - 1];
+                var p1 = Pos.square(PackedMove.source(previous));
+                var p2 = Pos.square(PackedMove.destination(previous));
+                if (isDoubleStep(PackedMove.moved(previous), p1, p2)) {
+                    enPassant = Pos.of((p1.x() + p2.x()) / 2, (p1.y() + p2.y()) / 2);
+                    pawn = p2;
+                }
+            }
+            deltas[i] = delta(0, forbidden, enPassant, pawn) & ~DELTA_CHECK_KNOWN;
+            var moved = PackedMove.moved(moves[i]);
+            if (PackedMove.isDisablesCasteling(moves[i]) || disablesCasteling(moved)) {
+                forbidden |= 1 << moved.getColor().ordinal();
+            }
+        }
+    }
+
+    /**
+     * @return false, if the move has been restored from a stored list of moves and the check state before it is
+     * not known, it has to be computed again after taking the move back
+     */
+    @JsonIgnore
+    public boolean isCheckKnownBefore(int index) {
+        return (deltas[Objects.checkIndex(index, moveCount)] & DELTA_CHECK_KNOWN) != 0;
+    }
+
+    @JsonIgnore
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    @JsonIgnore
+    public Move getMove(int index) {
+        return PackedMove.toMove(getPackedMove(index));
+    }
+
+    /**
+     * @return the move with the given index, see {@link PackedMove}
+     */
+    public int getPackedMove(int index) {
+        return moves[Objects.checkIndex(index, moveCount)];
     }
 
     @JsonIgnore
     public Move getLastMove() {
-        if (moves.isEmpty()) {
+        if (moveCount == 0) {
             return null;
         }
-        return moves.get(moves.size() - 1);
+        return getMove(moveCount - 1);
     }
 
     @JsonIgnore
@@ -174,19 +473,30 @@ public class Board {
             return "";
         }
 
-        String result = figureToNotation(move.f1()) + move.p1();
+        String result = toNotation(move);
+        if (!check.isEmpty()) {
+            result += "+";
+        }
+        return result;
+    }
+
+    public String toNotation(Move move) {
+        String result = figureToNotation(move.f1().getType()) + move.p1();
         if (move.f2() != Figure.NONE) {
             result += "x";
         }
         result += move.p2();
-        if (!check.isEmpty()) {
-            result += "+";
+        if (move.promotion() != null) {
+            result += "=" + figureToNotation(move.promotion());
+        }
+        if (move.isEnPassant()) {
+            result += " e.p.";
         }
         return result;
     }
 
-    private String figureToNotation(Figure figure) {
-        switch (figure.getType()) {
+    private String figureToNotation(FigureType type) {
+        switch (type) {
             case KING:
                 return "K";
             case BISHOP:
@@ -208,103 +518,154 @@ public class Board {
     }
 
     public Board doMove(Move move) {
-        set(move.f1(), move.p2());
-        set(Figure.NONE, move.p1());
-        if (move.casteling() != Move.Casteling.NONE) {
-            switch (move.f1().getColor()) {
-                case WHITE:
-                    switch (move.casteling()) {
-                        case KING_SIDE_CASTELING:
-                            set(Figure.WHITE_ROOK, Pos.of("a3"));
-                            set(Figure.NONE, Pos.of("a1"));
-                            break;
-                        case QUEEN_SIDE_CASTELING:
-                            set(Figure.WHITE_ROOK, Pos.of("a6"));
-                            set(Figure.NONE, Pos.of("a8"));
-                    }
-                    break;
-                case BROWN:
-                    switch (move.casteling()) {
-                        case KING_SIDE_CASTELING:
-                            set(Figure.BROWN_ROOK, Pos.of("k6"));
-                            set(Figure.NONE, Pos.of("m8"));
-                            break;
-                        case QUEEN_SIDE_CASTELING:
-                            set(Figure.BROWN_ROOK, Pos.of("h3"));
-                            set(Figure.NONE, Pos.of("f1"));
-                    }
-                    break;
-                case BLACK:
-                    switch (move.casteling()) {
-                        case KING_SIDE_CASTELING:
-                            set(Figure.BLACK_ROOK, Pos.of("h13"));
-                            set(Figure.NONE, Pos.of("f13"));
-                            break;
-                        case QUEEN_SIDE_CASTELING:
-                            set(Figure.BLACK_ROOK, Pos.of("k13"));
-                            set(Figure.NONE, Pos.of("m13"));
-                    }
-                    break;
-            }
+        return doMove(PackedMove.of(move));
+    }
+
+    /**
+     * plays the move without checking it and without notifying the move listeners. Moving a king or a rook
+     * forbids the casteling of its player, the move is marked if it does so for the first time.
+     *
+     * @param move the move, see {@link PackedMove}
+     */
+    public Board doMove(int move) {
+        var f1 = PackedMove.moved(move);
+        var delta = delta(toMask(check), toMask(castelingForbidden), enPassant, enPassantPawn);
+        if (disablesCasteling(f1) && castelingForbidden.add(f1.getColor())) {
+            move = PackedMove.withDisablesCasteling(move);
+        }
+        var p1 = Pos.square(PackedMove.source(move));
+        var p2 = Pos.square(PackedMove.destination(move));
+        var promotion = PackedMove.promotion(move);
+        if (PackedMove.isEnPassant(move)) {
+            set(Figure.NONE, enPassantPawn);
+        }
+        set(promotion == null ? f1 : Figure.of(f1.getColor(), promotion), p2);
+        set(Figure.NONE, p1);
+        if (isDoubleStep(f1, p1, p2)) {
+            enPassant = Pos.of((p1.x() + p2.x()) / 2, (p1.y() + p2.y()) / 2);
+            enPassantPawn = p2;
+        } else {
+            enPassant = Pos.NONE;
+            enPassantPawn = Pos.NONE;
+        }
+        var casteling = PackedMove.casteling(move);
+        if (casteling != Move.Casteling.NONE) {
+            var squares = CASTELING_ROOKS[f1.getColor().ordinal()][casteling.ordinal() - 1];
+            set(Figure.of(f1.getColor(), FigureType.ROOK), squares[1]);
+            set(Figure.NONE, squares[0]);
+        }
+        addMove(move, delta);
+        return this;
+    }
+
+    private void addMove(int move, int delta) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * moves.length);
+            deltas = Arrays.copyOf(deltas, moves.length);
+        }
+        changedMoves = Math.min(changedMoves, moveCount);
+        deltas[moveCount] = delta;
+        moves[moveCount++] = move;
+    }
+
+    /**
+     * takes the last move back from the recorded state before it, without replaying the game. Only the changed
+     * fields are set, so the field change listeners can redraw incrementally. The move listeners are notified with
+     * an event marked as undo, the check state is restored only if it has been recorded, see
+     * {@link #isCheckKnownBefore(int)}.
+     *
+     * @return this board
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public Board undoLastMove() {
+        if (moveCount == 0) {
+            throw new IllegalStateException("kein Zug zum Zurücknehmen");
+        }
+        var move = moves[moveCount - 1];
+        var delta = deltas[moveCount - 1];
+        moveCount--;
+        changedMoves = Math.min(changedMoves, moveCount);
+        var f1 = PackedMove.moved(move);
+        var p1 = Pos.square(PackedMove.source(move));
+        var p2 = Pos.square(PackedMove.destination(move));
+        enPassant = deltaPos(delta >>> DELTA_EN_PASSANT);
+        enPassantPawn = deltaPos(delta >>> DELTA_EN_PASSANT_PAWN);
+        if (PackedMove.isEnPassant(move)) {
+            set(Figure.NONE, p2);
+            set(PackedMove.captured(move), enPassantPawn);
+        } else {
+            set(PackedMove.captured(move), p2);
+        }
+        set(f1, p1);
+        var casteling = PackedMove.casteling(move);
+        if (casteling != Move.Casteling.NONE) {
+            var rook = Figure.of(f1.getColor(), FigureType.ROOK);
+            var squares = CASTELING_ROOKS[f1.getColor().ordinal()][casteling.ordinal() - 1];
+            set(Figure.NONE, squares[1]);
+            set(rook, squares[0]);
+        }
+        castelingForbidden.clear();
+        castelingForbidden.addAll(fromMask(delta >>> DELTA_CASTELING));
+        if ((delta & DELTA_CHECK_KNOWN) != 0) {
+            setCheck(fromMask(delta));
         }
-        moves.add(move);
+        setPlayer(f1.getColor());
+        notifyMoveListeners(new MoveEvent(moveCount, PackedMove.toMove(move), true));
         return this;
     }
 
+    private static boolean disablesCasteling(Figure figure) {
+        return figure.getType() == FigureType.KING || figure.getType() == FigureType.ROOK;
+    }
+
+    /**
+     * packs the state before a move: the players in check, the players not allowed to castle and the en passant
+     * square and pawn, each as index + 1
+     */
+    private static int delta(int check, int castelingForbidden, Pos enPassant, Pos enPassantPawn) {
+        return check
+                | castelingForbidden << DELTA_CASTELING
+                | (enPassant.isValid() ? enPassant.index() + 1 : 0) << DELTA_EN_PASSANT
+                | (enPassantPawn.isValid() ? enPassantPawn.index() + 1 : 0) << DELTA_EN_PASSANT_PAWN
+                | DELTA_CHECK_KNOWN;
+    }
+
+    private static Pos deltaPos(int bits) {
+        var index = bits & 0x7f;
+        return index == 0 ? Pos.NONE : Pos.square(index - 1);
+    }
+
+    private static int toMask(Set<Color> colors) {
+        var mask = 0;
+        for (var color : colors) {
+            mask |= 1 << color.ordinal();
+        }
+        return mask;
+    }
+
+    private static Set<Color> fromMask(int mask) {
+        var result = EnumSet.noneOf(Color.class);
+        for (var color : COLORS) {
+            if ((mask & 1 << color.ordinal()) != 0) {
+                result.add(color);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDoubleStep(Figure figure, Pos p1, Pos p2) {
+        if (figure.getType() != FigureType.PAWN) {
+            return false;
+        }
+        // twice a straight direction, the diagonal captures always have an odd coordinate
+        var dx = Math.abs(p2.x() - p1.x());
+        var dy = Math.abs(p2.y() - p1.y());
+        return (dx == 2 || dx == 0) && (dy == 2 || dy == 0) && dx + dy > 0;
+    }
+
     public void notifyMoveListeners() {
-        notifyMoveListeners(new MoveEvent(moves.size(), moves.get(moves.size() - 1), false));
-    }
-
-//    public Board undoLastMove() {
-//        if (moves.size() > 0) {
-//            var move = moves.get(moves.size() - 1);
-//            set(move.f1(), move.p1());
-//            set(move.f2(), move.p2());
-//            if (move.casteling() != Move.Casteling.NONE) {
-//                switch (move.f1().getColor()) {
-//                    case WHITE:
-//                        switch (move.casteling()) {
-//                            case KING_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("a3"));
-//                                set(Figure.WHITE_ROOK, Pos.of("a1"));
-//                                break;
-//                            case QUEEN_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("a6"));
-//                                set(Figure.WHITE_ROOK, Pos.of("a8"));
-//                        }
-//                        break;
-//                    case BROWN:
-//                        switch (move.casteling()) {
-//                            case KING_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("k6"));
-//                                set(Figure.BROWN_ROOK, Pos.of("m8"));
-//                                break;
-//                            case QUEEN_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("h3"));
-//                                set(Figure.BROWN_ROOK, Pos.of("f1"));
-//                        }
-//                        break;
-//                    case BLACK:
-//                        switch (move.casteling()) {
-//                            case KING_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("h13"));
-//                                set(Figure.BLACK_ROOK, Pos.of("f13"));
-//                                break;
-//                            case QUEEN_SIDE_CASTELING:
-//                                set(Figure.NONE, Pos.of("k13"));
-//                                set(Figure.BLACK_ROOK, Pos.of("m13"));
-//                        }
-//                        break;
-//                }
-//            }
-//            if (move.isDisablesCasteling()) {
-//                enableCasteling(move.f1().getColor());
-//            }
-//            moves.remove(move);
-//            notifyMoveListeners(new MoveEvent(moves.size(), move, true));
-//        }
-//        return this;
-//    }
+        notifyMoveListeners(new MoveEvent(moveCount, getLastMove(), false));
+    }
 
     public Board disableCasteling(Color color) {
         castelingForbidden.add(color);
@@ -332,7 +693,7 @@ public class Board {
                 set(Figure.NONE, Pos.of(i, j));
             }
         }
-        Arrays.stream(Color.values()).forEach(color -> kingsPositions.put(color, Pos.of(-1, -1)));
+        Arrays.stream(Color.values()).forEach(color -> kingsPositions.put(color, Pos.NONE));
         return this;
     }
 
@@ -387,19 +748,63 @@ public class Board {
             set(Figure.BLACK_PAWN, Pos.of(11, 4 + i));
         }
 
-        moves.clear();
+        id = UUID.randomUUID().toString();
+        moveCount = 0;
+        changedMoves = 0;
+        enPassant = Pos.NONE;
+        enPassantPawn = Pos.NONE;
         this.castelingForbidden.clear();
         setCheck(Collections.emptySet());
         setPlayer(Color.WHITE);
     }
 
+    /**
+     * @return a bit for each chunk of squares changed since the snapshot has been taken, all if it is not the last
+     * one taken of the board
+     */
+    long getChangedSquares(BoardSnapshot since) {
+        return snapshot != null && snapshot == since ? changedSquares : -1;
+    }
+
+    /**
+     * @return the index of the first move replaced since the snapshot has been taken, 0 if it is not the last one
+     * taken of the board
+     */
+    int getChangedMoves(BoardSnapshot since) {
+        return snapshot != null && snapshot == since ? changedMoves : 0;
+    }
+
+    /**
+     * starts recording the changes since the given snapshot
+     */
+    void setSnapshot(BoardSnapshot snapshot) {
+        this.snapshot = snapshot;
+        changedSquares = 0;
+        changedMoves = Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true, if anyone listens to the changes of the board
+     */
+    public boolean hasListeners() {
+        return !fieldChangeListeners.isEmpty() || !playerChangeListeners.isEmpty() || !moveListeners.isEmpty()
+                || !checkListeners.isEmpty();
+    }
+
     public Board addFieldChangeListener(Consumer<FieldChangeEvent> listener) {
         this.fieldChangeListeners.add(listener);
         return this;
     }
 
+    public Board removeFieldChangeListener(Consumer<FieldChangeEvent> listener) {
+        this.fieldChangeListeners.remove(listener);
+        return this;
+    }
+
     private void notifyFieldChangeListeners(FieldChangeEvent event) {
-        fieldChangeListeners.forEach(c -> c.accept(event));
+        if (!fieldChangeListeners.isEmpty()) {
+            FIELD_FAN_OUT.record(() -> fieldChangeListeners.forEach(c -> c.accept(event)));
+        }
     }
 
     public Board addPlayerChangeListener(Consumer<PlayerChangeEvent> listener) {
@@ -407,8 +812,15 @@ public class Board {
         return this;
     }
 
+    public Board removePlayerChangeListener(Consumer<PlayerChangeEvent> listener) {
+        this.playerChangeListeners.remove(listener);
+        return this;
+    }
+
     private void notifyPlayerChangeListeners(PlayerChangeEvent event) {
-        playerChangeListeners.forEach(c -> c.accept(event));
+        if (!playerChangeListeners.isEmpty()) {
+            PLAYER_FAN_OUT.record(() -> playerChangeListeners.forEach(c -> c.accept(event)));
+        }
     }
 
     public Board addMoveListener(Consumer<MoveEvent> listener) {
@@ -416,8 +828,15 @@ public class Board {
         return this;
     }
 
+    public Board removeMoveListener(Consumer<MoveEvent> listener) {
+        this.moveListeners.remove(listener);
+        return this;
+    }
+
     private void notifyMoveListeners(MoveEvent event) {
-        moveListeners.forEach(c -> c.accept(event));
+        if (!moveListeners.isEmpty()) {
+            MOVE_FAN_OUT.record(() -> moveListeners.forEach(c -> c.accept(event)));
+        }
     }
 
     public Board addCheckListener(Consumer<CheckEvent> listener) {
@@ -425,8 +844,28 @@ public class Board {
         return this;
     }
 
+    public Board removeCheckListener(Consumer<CheckEvent> listener) {
+        this.checkListeners.remove(listener);
+        return this;
+    }
+
     private void notifyCheckListeners(CheckEvent event) {
-        checkListeners.forEach(c -> c.accept(event));
+        if (!checkListeners.isEmpty()) {
+            CHECK_FAN_OUT.record(() -> checkListeners.forEach(c -> c.accept(event)));
+        }
+    }
+
+    @JsonIgnore
+    public int getListenerCount() {
+        return fieldChangeListeners.size() + playerChangeListeners.size() + moveListeners.size()
+                + checkListeners.size();
+    }
+
+    private static Timer fanOutTimer(String event) {
+        return Timer.builder("dreierschach.board.fan-out")
+                .description("Notifying the listeners of a board")
+                .tag("event", event)
+                .register(Metrics.globalRegistry);
     }
 
     public static class FieldChangeEvent {
@@ -0,0 +1,219 @@
+package de.dreierschach.app.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable version of a {@link Board}, to be read by any thread without locks: spectators, the analysis, the
+ * export and the persistence read a game from its latest snapshot while it is being played.
+ * <p>
+ * The squares and the moves are stored in chunks. The next version shares every chunk in which nothing has
+ * changed, so a move copies one or two chunks of squares and the last chunk of moves only. The board records the
+ * changed chunks since its last snapshot, so taking the next one reads the changed chunks only. The JSON form is
+ * computed by the first reader needing it and then kept.
+ */
+public final class BoardSnapshot implements MoveHistory {
+    /**
+     * the number of squares in a chunk
+     */
+    static final int SQUARES_CHUNK = 16;
+    /**
+     * the number of moves in a chunk
+     */
+    static final int MOVES_CHUNK = 64;
+
+    private static final Figure[] FIGURES = Figure.values();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final long version;
+    private final String id;
+    private final long hash;
+    private final Color player;
+    private final Set<Color> check;
+    private final Set<Color> castelingForbidden;
+    private final Pos enPassant;
+    private final Pos enPassantPawn;
+    // the ordinals of the figures: [square / SQUARES_CHUNK][square % SQUARES_CHUNK]
+    private final byte[][] squares;
+    // the packed moves, the last chunk may be partly used: [index / MOVES_CHUNK][index % MOVES_CHUNK]
+    private final int[][] moves;
+    private final int moveCount;
+    private volatile String json;
+
+    private BoardSnapshot(Board board, BoardSnapshot previous) {
+        version = previous == null ? 0 : previous.version + 1;
+        id = board.getId();
+        hash = board.getHash();
+        player = board.getPlayer();
+        check = immutable(board.getCheck());
+        castelingForbidden = immutable(board.getCastelingForbidden());
+        enPassant = board.getEnPassant();
+        enPassantPawn = board.getEnPassantPawn();
+        // only the chunks changed since the previous version are read, the board records them
+        var changedSquares = board.getChangedSquares(previous);
+        squares = new byte[(Pos.SQUARES + SQUARES_CHUNK - 1) / SQUARES_CHUNK][];
+        for (int c = 0; c < squares.length; c++) {
+            squares[c] = previous != null && (changedSquares & 1L << c) == 0 ? previous.squares[c] : squares(c, board);
+        }
+        moveCount = board.getMoveCount();
+        var changedMoves = board.getChangedMoves(previous);
+        moves = new int[(moveCount + MOVES_CHUNK - 1) / MOVES_CHUNK][];
+        for (int c = 0; c < moves.length; c++) {
+            var chunk = previous == null || c >= previous.moves.length ? null : previous.moves[c];
+            moves[c] = chunk != null && isUnchanged(chunk, c, moveCount, changedMoves) ? chunk : moves(c, board);
+        }
+        board.setSnapshot(this);
+    }
+
+    /**
+     * @return the first version of the board
+     */
+    public static BoardSnapshot of(Board board) {
+        return new BoardSnapshot(board, null);
+    }
+
+    /**
+     * @param board the board this snapshot has been taken of, after it has changed
+     * @return the next version, sharing the unchanged chunks with this one
+     */
+    public BoardSnapshot next(Board board) {
+        return new BoardSnapshot(board, this);
+    }
+
+    /**
+     * @return true, if the board has not changed since this snapshot has been taken of it
+     */
+    public boolean matches(Board board) {
+        return hash == board.getHash() && moveCount == board.getMoveCount() && Objects.equals(id, board.getId())
+                && (moveCount == 0 || getPackedMove(moveCount - 1) == board.getPackedMove(moveCount - 1));
+    }
+
+    /**
+     * @return the number of snapshots taken of the board before this one
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @see Board#getHash()
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public Color getPlayer() {
+        return player;
+    }
+
+    public Set<Color> getCheck() {
+        return check;
+    }
+
+    public Set<Color> getCastelingForbidden() {
+        return castelingForbidden;
+    }
+
+    public Pos getEnPassant() {
+        return enPassant;
+    }
+
+    public Figure get(Pos pos) {
+        if (!pos.isValid()) {
+            return Figure.NONE;
+        }
+        var square = pos.index();
+        return FIGURES[squares[square / SQUARES_CHUNK][square % SQUARES_CHUNK]];
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the move with the given index, see {@link PackedMove}
+     */
+    public int getPackedMove(int index) {
+        Objects.checkIndex(index, moveCount);
+        return moves[index / MOVES_CHUNK][index % MOVES_CHUNK];
+    }
+
+    public Move getMove(int index) {
+        return PackedMove.toMove(getPackedMove(index));
+    }
+
+    /**
+     * @return a new board in the state of the snapshot, without listeners
+     */
+    public Board toBoard() {
+        var board = new Board();
+        board.setId(id);
+        board.withPlayer(player);
+        castelingForbidden.forEach(board::disableCasteling);
+        board.withEnPassant(enPassant, enPassantPawn);
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            board.set(get(Pos.square(i)), Pos.square(i));
+        }
+        board.setCheck(check);
+        var packed = new int[moveCount];
+        for (int c = 0; c < moves.length; c++) {
+            System.arraycopy(moves[c], 0, packed, c * MOVES_CHUNK, moves[c].length);
+        }
+        return board.withPackedMoves(packed, moveCount);
+    }
+
+    /**
+     * @return the board as written by {@link de.dreierschach.app.BoardExporter#toJson(Board)}, computed once
+     */
+    public String toJson() {
+        var result = json;
+        if (result == null) {
+            try {
+                result = MAPPER.writeValueAsString(toBoard());
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Fehler beim Erzeugen des JSON-Strings", e);
+            }
+            // computed twice at worst, by readers asking at the same time, both with the same result
+            json = result;
+        }
+        return result;
+    }
+
+    private static byte[] squares(int c, Board board) {
+        var result = new byte[Math.min(SQUARES_CHUNK, Pos.SQUARES - c * SQUARES_CHUNK)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) board.get(Pos.square(c * SQUARES_CHUNK + i)).ordinal();
+        }
+        return result;
+    }
+
+    /**
+     * @param changedMoves the index of the first move replaced since the chunk has been taken
+     * @return true, if the chunk holds the moves of the board in its range, a partly used chunk is copied
+     */
+    private static boolean isUnchanged(int[] chunk, int c, int moveCount, int changedMoves) {
+        return chunk.length == Math.min(MOVES_CHUNK, moveCount - c * MOVES_CHUNK)
+                && c * MOVES_CHUNK + chunk.length <= changedMoves;
+    }
+
+    private static int[] moves(int c, Board board) {
+        var result = new int[Math.min(MOVES_CHUNK, board.getMoveCount() - c * MOVES_CHUNK)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = board.getPackedMove(c * MOVES_CHUNK + i);
+        }
+        return result;
+    }
+
+    private static Set<Color> immutable(Set<Color> colors) {
+        return colors.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(colors));
+    }
+}
@@ -1,7 +1,5 @@
 package de.dreierschach.app.model;
 
-import java.util.Optional;
-
 public enum Figure {
     NONE(null, null),
 
@@ -28,6 +26,16 @@ public enum Figure {
     BLACK_PAWN(Color.BLACK, FigureType.PAWN);
     //@formatter:on
 
+    private static final Figure[][] BY_COLOR_AND_TYPE = new Figure[Color.values().length][FigureType.values().length];
+
+    static {
+        for (var figure : values()) {
+            if (figure != NONE) {
+                BY_COLOR_AND_TYPE[figure.color.ordinal()][figure.type.ordinal()] = figure;
+            }
+        }
+    }
+
     private final Color color;
     private final FigureType type;
 
@@ -43,4 +51,8 @@ public enum Figure {
     public FigureType getType() {
         return type;
     }
+
+    public static Figure of(Color color, FigureType type) {
+        return BY_COLOR_AND_TYPE[color.ordinal()][type.ordinal()];
+    }
 }
@@ -0,0 +1,182 @@
+package de.dreierschach.app.model;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * The clocks of the three players of a game, only the clock of the player to move runs. The time of a player is
+ * checked when it moves, so a player whose time has run out cannot move any more, even if no one has looked at
+ * the clock. The clock is read by the ticks of the user interface and changed by the engine, so all methods are
+ * synchronized.
+ * <p>
+ * A player whose time has run out is out of the game, the clock of the next player starts at the moment the time
+ * ran out and the other two play on. Once the time of two players has run out, the clock stops.
+ */
+public class GameClock {
+    private static final Color[] COLORS = Color.values();
+
+    private final TimeControl control;
+    private final LongSupplier nanoTime;
+    // the remaining time of each player when its clock has been stopped the last time
+    private final long[] remaining = new long[COLORS.length];
+    // the remaining time of the player of each move before it, to take the move back
+    private long[] before = new long[64];
+    private int moves;
+    private Color running;
+    private long since;
+    private final Set<Color> flagged = EnumSet.noneOf(Color.class);
+
+    public GameClock(TimeControl control) {
+        this(control, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the source of the time, e.g. {@link System#nanoTime()}
+     */
+    public GameClock(TimeControl control, LongSupplier nanoTime) {
+        this.control = control;
+        this.nanoTime = nanoTime;
+        reset();
+    }
+
+    public TimeControl getControl() {
+        return control;
+    }
+
+    /**
+     * sets the time of all players back to the initial time and stops the clock
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < remaining.length; i++) {
+            remaining[i] = control.getInitial().toNanos();
+        }
+        running = null;
+        flagged.clear();
+        moves = 0;
+    }
+
+    /**
+     * starts the clock of the given player, unless its time has run out or the game is over
+     */
+    public synchronized void start(Color player) {
+        if (!flagged.contains(player) && flagged.size() < COLORS.length - 1) {
+            running = player;
+            since = nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * charges the time of the move to the player, adds the increment and starts the clock of the next player
+     * whose time has not run out
+     *
+     * @return false, if the time of the player has run out or the game is over
+     */
+    public synchronized boolean moved(Color player) {
+        if (isFlagged(player) || isOver()) {
+            return false;
+        }
+        if (moves == before.length) {
+            before = Arrays.copyOf(before, 2 * before.length);
+        }
+        before[moves++] = remaining[player.ordinal()];
+        if (running == player) {
+            remaining[player.ordinal()] -= used(nanoTime.getAsLong());
+            remaining[player.ordinal()] += control.getIncrement().toNanos();
+        }
+        running = null;
+        start(next(player));
+        return true;
+    }
+
+    /**
+     * takes the last move back: the player of the move gets back the time it had before the move, without the
+     * increment, and its clock is started again. The time the next player has used since is not charged.
+     */
+    public synchronized void undo(Color player) {
+        update();
+        if (moves > 0) {
+            remaining[player.ordinal()] = before[--moves];
+        }
+        running = null;
+        start(player);
+    }
+
+    /**
+     * @return the player after the given one whose time has not run out, the given one if there is none
+     */
+    public synchronized Color next(Color player) {
+        var next = player;
+        do {
+            next = COLORS[(next.ordinal() + 1) % COLORS.length];
+        } while (next != player && flagged.contains(next));
+        return next;
+    }
+
+    /**
+     * @return the remaining time of the player, zero if it has run out
+     */
+    public synchronized Duration remaining(Color player) {
+        update();
+        var result = remaining[player.ordinal()];
+        if (player == running) {
+            result -= used(nanoTime.getAsLong());
+        }
+        return Duration.ofNanos(Math.max(result, 0));
+    }
+
+    /**
+     * @return the player whose clock is running, empty if the clock is stopped
+     */
+    public synchronized Optional<Color> getRunning() {
+        update();
+        return Optional.ofNullable(running);
+    }
+
+    /**
+     * @return the players whose time has run out
+     */
+    public synchronized Set<Color> getFlagged() {
+        update();
+        return EnumSet.copyOf(flagged);
+    }
+
+    public synchronized boolean isFlagged(Color player) {
+        update();
+        return flagged.contains(player);
+    }
+
+    /**
+     * @return true, if the time of all players but one has run out
+     */
+    public synchronized boolean isOver() {
+        update();
+        return flagged.size() >= COLORS.length - 1;
+    }
+
+    /**
+     * puts the players whose time has run out out of the game
+     */
+    private void update() {
+        // the clock of the next player starts when the time has run out, so several players may run out at once
+        while (running != null && remaining[running.ordinal()] - used(nanoTime.getAsLong()) <= 0) {
+            var ranOut = since + control.getDelay().toNanos() + remaining[running.ordinal()];
+            flagged.add(running);
+            remaining[running.ordinal()] = 0;
+            var next = next(running);
+            running = null;
+            start(next);
+            since = ranOut;
+        }
+    }
+
+    /**
+     * the time used by the running player, without the delay
+     */
+    private long used(long now) {
+        return Math.max(0, now - since - control.getDelay().toNanos());
+    }
+}
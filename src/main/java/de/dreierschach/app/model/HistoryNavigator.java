@@ -0,0 +1,175 @@
+package de.dreierschach.app.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Random-access navigation through the moves of a game. Every {@code interval} plies a compact snapshot of the
+ * figures (one byte per square) is kept, so seeking to any ply restores the nearest snapshot and replays at most
+ * {@code interval - 1} moves. The position is shown on a separate board, only the fields that differ from the
+ * previous position are set, so its field change listeners can redraw incrementally.
+ */
+public class HistoryNavigator {
+    private static final Figure[] FIGURES = Figure.values();
+
+    // the latest moves of the game, read once per seek
+    private final Supplier<? extends MoveHistory> game;
+    private final Board board;
+    private final int interval;
+    private final List<Snapshot> snapshots = new ArrayList<>();
+    private String gameId;
+    private int ply;
+    private boolean positioned;
+
+    public HistoryNavigator(Board game, int interval) {
+        this(() -> game, interval);
+    }
+
+    /**
+     * @param game supplies the latest moves of the game, e.g. its latest {@link BoardSnapshot}
+     */
+    public HistoryNavigator(Supplier<? extends MoveHistory> game, int interval) {
+        this.game = game;
+        this.interval = interval;
+        this.board = new Board();
+    }
+
+    /**
+     * @return the board showing the selected position
+     */
+    public Board board() {
+        return board;
+    }
+
+    /**
+     * @return the number of moves leading to the selected position
+     */
+    public int ply() {
+        return ply;
+    }
+
+    public int plies() {
+        return game.get().getMoveCount();
+    }
+
+    public boolean isAtEnd() {
+        return ply >= plies();
+    }
+
+    public HistoryNavigator forward() {
+        return seek(ply + 1);
+    }
+
+    public HistoryNavigator back() {
+        return seek(ply - 1);
+    }
+
+    public HistoryNavigator toStart() {
+        return seek(0);
+    }
+
+    public HistoryNavigator toEnd() {
+        return seek(plies());
+    }
+
+    /**
+     * shows the position after the given number of moves
+     *
+     * @param target the number of moves, it is limited to the moves of the game
+     * @return this navigator
+     */
+    public HistoryNavigator seek(int target) {
+        var game = this.game.get();
+        var plies = game.getMoveCount();
+        target = Math.max(0, Math.min(target, plies));
+        validate(game);
+        var index = target / interval;
+        while (snapshots.size() <= index) {
+            var last = snapshots.size() - 1;
+            restore(snapshots.get(last));
+            replay(game, last * interval, (last + 1) * interval);
+            snapshots.add(snapshot(board));
+            positioned = false;
+        }
+        if (positioned && ply <= target && target - ply <= target - index * interval) {
+            // stepping forward, the moves from the current position are fewer than from the snapshot
+            replay(game, ply, target);
+        } else {
+            restore(snapshots.get(index));
+            replay(game, index * interval, target);
+        }
+        ply = target;
+        positioned = true;
+        return this;
+    }
+
+    /**
+     * drops the snapshots after the given ply, e.g. when moves have been taken back
+     *
+     * @param fromPly the first ply that is no longer valid
+     */
+    public void invalidate(int fromPly) {
+        var keep = Math.max(1, (fromPly + interval - 1) / interval);
+        while (snapshots.size() > keep) {
+            snapshots.remove(snapshots.size() - 1);
+        }
+        if (fromPly <= ply) {
+            positioned = false;
+        }
+    }
+
+    private void validate(MoveHistory game) {
+        if (snapshots.isEmpty() || gameId == null || !gameId.equals(game.getId())) {
+            snapshots.clear();
+            var start = new Board();
+            start.setup();
+            snapshots.add(snapshot(start));
+            gameId = game.getId();
+            positioned = false;
+        }
+        invalidate(game.getMoveCount() + 1);
+    }
+
+    private void replay(MoveHistory game, int from, int to) {
+        for (int i = from; i < to; i++) {
+            board.doMove(game.getMove(i));
+            board.nextPlayer();
+        }
+    }
+
+    private void restore(Snapshot snapshot) {
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var pos = Pos.square(i);
+            var figure = FIGURES[snapshot.figures[i]];
+            if (board.get(pos) != figure) {
+                board.set(figure, pos);
+            }
+        }
+        board.setPlayer(snapshot.player);
+        board.withMoves(List.of());
+        board.withEnPassant(snapshot.enPassant, snapshot.enPassantPawn);
+    }
+
+    private static Snapshot snapshot(Board board) {
+        var figures = new byte[Pos.SQUARES];
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            figures[i] = (byte) board.get(Pos.square(i)).ordinal();
+        }
+        return new Snapshot(figures, board.getPlayer(), board.getEnPassant(), board.getEnPassantPawn());
+    }
+
+    private static class Snapshot {
+        private final byte[] figures;
+        private final Color player;
+        private final Pos enPassant;
+        private final Pos enPassantPawn;
+
+        Snapshot(byte[] figures, Color player, Pos enPassant, Pos enPassantPawn) {
+            this.figures = figures;
+            this.player = player;
+            this.enPassant = enPassant;
+            this.enPassantPawn = enPassantPawn;
+        }
+    }
+}
@@ -5,6 +5,17 @@ public class Move {
 
     public enum Casteling {NONE, KING_SIDE_CASTELING, QUEEN_SIDE_CASTELING}
 
+    // squares of the kings when casteling
+    private static final Pos A2 = Pos.of("a2");
+    private static final Pos A4 = Pos.of("a4");
+    private static final Pos A7 = Pos.of("a7");
+    private static final Pos G2 = Pos.of("g2");
+    private static final Pos G13 = Pos.of("g13");
+    private static final Pos I13 = Pos.of("i13");
+    private static final Pos J5 = Pos.of("j5");
+    private static final Pos L7 = Pos.of("l7");
+    private static final Pos L13 = Pos.of("l13");
+
     private final Pos p1;
     private final Figure f1;
     private final Pos p2;
@@ -12,18 +23,30 @@ public class Move {
     private final Check check;
     private final Casteling casteling;
     private final boolean disablesCasteling;
+    private final FigureType promotion;
+    private final boolean enPassant;
 
+    /**
+     * creates a move, a pawn reaching the baseline of an opponent is promoted to a queen
+     */
     public Move(Pos p1, Figure f1, Pos p2, Figure f2) {
         this.p1 = p1;
         this.f1 = f1;
         this.p2 = p2;
         this.f2 = f2;
         this.check = Check.NONE;
-        this.casteling = checkCasteling();
+        this.casteling = casteling(p1, f1, p2);
         this.disablesCasteling = false;
+        this.promotion = promotion(f1, p2);
+        this.enPassant = false;
     }
 
     public Move(Pos p1, Figure f1, Pos p2, Figure f2, Check check, Casteling casteling, boolean disablesCasteling) {
+        this(p1, f1, p2, f2, check, casteling, disablesCasteling, null, false);
+    }
+
+    public Move(Pos p1, Figure f1, Pos p2, Figure f2, Check check, Casteling casteling, boolean disablesCasteling,
+                FigureType promotion, boolean enPassant) {
         this.p1 = p1;
         this.f1 = f1;
         this.p2 = p2;
@@ -31,6 +54,8 @@ public class Move {
         this.check = check;
         this.casteling = casteling;
         this.disablesCasteling = disablesCasteling;
+        this.promotion = promotion;
+        this.enPassant = enPassant;
     }
 
     public Pos p1() {
@@ -57,8 +82,34 @@ public class Move {
         return casteling;
     }
 
+    /**
+     * @return the type of the figure a pawn is promoted to or null, if the move is no promotion
+     */
+    public FigureType promotion() {
+        return promotion;
+    }
+
+    /**
+     * @return true, if a pawn captures a pawn that has just moved two squares, passing the destination
+     */
+    public boolean isEnPassant() {
+        return enPassant;
+    }
+
     public Move withCheck(Check check) {
-        return new Move(p1, f1, p2, f2, check, casteling, disablesCasteling);
+        return new Move(p1, f1, p2, f2, check, casteling, disablesCasteling, promotion, enPassant);
+    }
+
+    public Move withPromotion(FigureType promotion) {
+        return new Move(p1, f1, p2, f2, check, casteling, disablesCasteling, promotion, enPassant);
+    }
+
+    /**
+     * @param pawn the captured pawn, which is not on the destination of the move
+     * @return the move as an en passant capture
+     */
+    public Move withEnPassant(Figure pawn) {
+        return new Move(p1, f1, p2, pawn, check, casteling, disablesCasteling, promotion, true);
     }
 
     public boolean isDisablesCasteling() {
@@ -66,44 +117,57 @@ public class Move {
     }
 
     public Move withDisablesCasteling() {
-        return new Move(p1, f1, p2, f2, check, casteling, true);
+        return new Move(p1, f1, p2, f2, check, casteling, true, promotion, enPassant);
+    }
+
+    /**
+     * @return the type a pawn moving to the destination is promoted to by default or null
+     */
+    static FigureType promotion(Figure f1, Pos p2) {
+        if (f1.getType() != FigureType.PAWN || !p2.isPromotion(f1.getColor())) {
+            return null;
+        }
+        return FigureType.QUEEN;
     }
 
-    private Casteling checkCasteling() {
+    /**
+     * @return the casteling, if the figure is a king moving from its start square to one of its casteling squares
+     */
+    static Casteling casteling(Pos p1, Figure f1, Pos p2) {
         if (f1.getType() != FigureType.KING) {
             return Casteling.NONE;
         }
         switch (f1.getColor()) {
             case WHITE:
-                if (!p1.equals(Pos.of("a4"))) {
+                if (!p1.equals(A4)) {
                     return Casteling.NONE;
                 }
-                if (p2.equals(Pos.of("a2"))) {
+                if (p2.equals(A2)) {
                     return Casteling.KING_SIDE_CASTELING;
                 }
-                if (p2.equals(Pos.of("a7"))) {
+                if (p2.equals(A7)) {
                     return Casteling.QUEEN_SIDE_CASTELING;
                 }
                 break;
             case BROWN:
-                if (!p1.equals(Pos.of("j5"))) {
+                if (!p1.equals(J5)) {
                     return Casteling.NONE;
                 }
-                if (p2.equals(Pos.of("l7"))) {
+                if (p2.equals(L7)) {
                     return Casteling.KING_SIDE_CASTELING;
                 }
-                if (p2.equals(Pos.of("g2"))) {
+                if (p2.equals(G2)) {
                     return Casteling.QUEEN_SIDE_CASTELING;
                 }
                 break;
             case BLACK:
-                if (!p1.equals(Pos.of("i13"))) {
+                if (!p1.equals(I13)) {
                     return Casteling.NONE;
                 }
-                if (p2.equals(Pos.of("g13"))) {
+                if (p2.equals(G13)) {
                     return Casteling.KING_SIDE_CASTELING;
                 }
-                if (p2.equals(Pos.of("l13"))) {
+                if (p2.equals(L13)) {
                     return Casteling.QUEEN_SIDE_CASTELING;
                 }
         }
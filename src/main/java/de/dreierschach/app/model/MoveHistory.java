@@ -0,0 +1,13 @@
+package de.dreierschach.app.model;
+
+/**
+ * The moves of a game, as replayed by a {@link HistoryNavigator}: the live {@link Board} or one of its
+ * {@link BoardSnapshot}s.
+ */
+public interface MoveHistory {
+    String getId();
+
+    int getMoveCount();
+
+    Move getMove(int index);
+}
@@ -0,0 +1,123 @@
+package de.dreierschach.app.model;
+
+/**
+ * A {@link Move} packed into an int, so the engine and the history of the board handle moves without allocating
+ * objects. {@link Move} objects are created from them for the user interface and the persistence only.
+ * <p>
+ * Layout (lowest bit first): source square index (7 bit), destination square index (7 bit), moved figure (5 bit),
+ * captured figure (5 bit), casteling (2 bit), special (3 bit: 0 for none, the ordinal of the promotion type + 1 or
+ * 7 for en passant, which never promotes), check (2 bit), disables casteling (1 bit).
+ */
+public final class PackedMove {
+    private static final Figure[] FIGURES = Figure.values();
+    private static final FigureType[] TYPES = FigureType.values();
+    private static final Move.Casteling[] CASTELINGS = Move.Casteling.values();
+    private static final Move.Check[] CHECKS = Move.Check.values();
+    private static final int EN_PASSANT = 7;
+
+    private static final int DESTINATION = 7;
+    private static final int MOVED = 14;
+    private static final int CAPTURED = 19;
+    private static final int CASTELING = 24;
+    private static final int SPECIAL = 26;
+    private static final int CHECK = 29;
+    private static final int DISABLES_CASTELING = 31;
+
+    private PackedMove() {
+    }
+
+    /**
+     * packs a move like {@link Move#Move(Pos, Figure, Pos, Figure)}: a pawn reaching the baseline of an opponent is
+     * promoted to a queen
+     *
+     * @param source      the index of the source square
+     * @param destination the index of the destination square
+     */
+    public static int of(int source, Figure moved, int destination, Figure captured) {
+        var p1 = Pos.square(source);
+        var p2 = Pos.square(destination);
+        var promotion = Move.promotion(moved, p2);
+        return source
+                | destination << DESTINATION
+                | moved.ordinal() << MOVED
+                | captured.ordinal() << CAPTURED
+                | Move.casteling(p1, moved, p2).ordinal() << CASTELING
+                | (promotion == null ? 0 : promotion.ordinal() + 1) << SPECIAL;
+    }
+
+    public static int of(Move move) {
+        var special = move.isEnPassant() ? EN_PASSANT : move.promotion() == null ? 0 : move.promotion().ordinal() + 1;
+        return move.p1().index()
+                | move.p2().index() << DESTINATION
+                | move.f1().ordinal() << MOVED
+                | (move.f2() == null ? Figure.NONE : move.f2()).ordinal() << CAPTURED
+                | move.casteling().ordinal() << CASTELING
+                | special << SPECIAL
+                | move.check().ordinal() << CHECK
+                | (move.isDisablesCasteling() ? 1 : 0) << DISABLES_CASTELING;
+    }
+
+    public static Move toMove(int move) {
+        return new Move(Pos.square(source(move)), moved(move), Pos.square(destination(move)), captured(move),
+                check(move), casteling(move), isDisablesCasteling(move), promotion(move), isEnPassant(move));
+    }
+
+    public static int source(int move) {
+        return move & 0x7f;
+    }
+
+    public static int destination(int move) {
+        return move >>> DESTINATION & 0x7f;
+    }
+
+    public static Figure moved(int move) {
+        return FIGURES[move >>> MOVED & 0x1f];
+    }
+
+    /**
+     * @return the captured figure, the pawn passed by an en passant capture, or {@link Figure#NONE}
+     */
+    public static Figure captured(int move) {
+        return FIGURES[move >>> CAPTURED & 0x1f];
+    }
+
+    public static Move.Casteling casteling(int move) {
+        return CASTELINGS[move >>> CASTELING & 0x3];
+    }
+
+    /**
+     * @return the type a pawn is promoted to or null
+     */
+    public static FigureType promotion(int move) {
+        var special = move >>> SPECIAL & 0x7;
+        return special == 0 || special == EN_PASSANT ? null : TYPES[special - 1];
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move >>> SPECIAL & 0x7) == EN_PASSANT;
+    }
+
+    public static Move.Check check(int move) {
+        return CHECKS[move >>> CHECK & 0x3];
+    }
+
+    public static boolean isDisablesCasteling(int move) {
+        return move >>> DISABLES_CASTELING != 0;
+    }
+
+    public static int withPromotion(int move, FigureType promotion) {
+        var special = promotion == null ? 0 : promotion.ordinal() + 1;
+        return move & ~(0x7 << SPECIAL) | special << SPECIAL;
+    }
+
+    /**
+     * @param pawn the captured pawn, which is not on the destination of the move
+     */
+    public static int withEnPassant(int move, Figure pawn) {
+        return move & ~(0x1f << CAPTURED | 0x7 << SPECIAL) | pawn.ordinal() << CAPTURED | EN_PASSANT << SPECIAL;
+    }
+
+    public static int withDisablesCasteling(int move) {
+        return move | 1 << DISABLES_CASTELING;
+    }
+}
@@ -2,46 +2,108 @@ package de.dreierschach.app.model;
 
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * A position on the board. Positions are flyweights: {@link #of(int, int)} and the arithmetic operations return
+ * canonical instances for all coordinates the engine computes, so hot paths do not allocate. Every valid square
+ * has an index between 0 and {@link #SQUARES} - 1.
+ */
 public class Pos {
+    /**
+     * the number of valid squares
+     */
+    public static final int SQUARES = 126;
+
+    // covers the squares, the directions and all sums, differences and multiples of them used by the engine
+    private static final int CACHE_OFFSET = 32;
+    private static final int CACHE_SIZE = 2 * CACHE_OFFSET;
+    private static final Pos[] CACHE = new Pos[CACHE_SIZE * CACHE_SIZE];
+    private static final Pos[] BY_INDEX = new Pos[SQUARES];
+    private static final Map<String, Pos> BY_NAME = new HashMap<>();
+
+    static {
+        for (int y = 0; y < CACHE_SIZE; y++) {
+            for (int x = 0; x < CACHE_SIZE; x++) {
+                var pos = new Pos(x - CACHE_OFFSET, y - CACHE_OFFSET);
+                CACHE[y * CACHE_SIZE + x] = pos;
+                if (pos.isValid()) {
+                    BY_INDEX[pos.index()] = pos;
+                    BY_NAME.put(pos.toString(), pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * the position outside of the board
+     */
+    public static final Pos NONE = of(-1, -1);
+
     private final int x;
     private final int y;
+    private final int index;
+    private final int hash;
+    private final boolean baseline;
+    private final Color baselineColor;
 
-    public Pos(int x, int y) {
+    protected Pos(int x, int y) {
         this.x = x;
         this.y = y;
+        this.index = indexOf(x, y);
+        this.hash = 31 * x + y;
+        this.baselineColor = index < 0 ? null
+                : y == 0 ? Color.WHITE : y - x == 5 ? Color.BROWN : x == 12 ? Color.BLACK : null;
+        this.baseline = baselineColor != null;
     }
 
     public static Pos of(int x, int y) {
-        return new Pos(x, y);
+        var cx = x + CACHE_OFFSET;
+        var cy = y + CACHE_OFFSET;
+        if (cx < 0 || cy < 0 || cx >= CACHE_SIZE || cy >= CACHE_SIZE) {
+            return new Pos(x, y);
+        }
+        return CACHE[cy * CACHE_SIZE + cx];
     }
 
     public static Pos of(String s) {
+        var pos = s == null ? null : BY_NAME.get(s);
+        if (pos != null) {
+            return pos;
+        }
         if (s == null || s.length() < 2 || s.length() > 3) {
-            return Pos.of(-1, -1);
+            return NONE;
         }
         var x = s.substring(1);
         if (!StringUtils.isNumeric(x)) {
-            return Pos.of(-1, -1);
+            return NONE;
         }
         return Pos.of(Integer.parseInt(x) - 1, s.charAt(0) - (int) 'a');
     }
 
     public static Pos of(Pos p) {
         if (p == null) {
-            return Pos.of(-1, -1);
+            return NONE;
         }
-        return new Pos(p.x(), p.y());
+        return of(p.x(), p.y());
+    }
+
+    /**
+     * @param index the index of a valid square
+     * @return the square
+     */
+    public static Pos square(int index) {
+        return BY_INDEX[index];
     }
 
     public static Pos add(Pos p1, Pos p2) {
-        return new Pos(p1.x() + p2.x(), p1.y() + p2.y());
+        return of(p1.x() + p2.x(), p1.y() + p2.y());
     }
 
     public static Pos sub(Pos p1, Pos p2) {
-        return new Pos(p1.x() - p2.x(), p1.y() - p2.y());
+        return of(p1.x() - p2.x(), p1.y() - p2.y());
     }
 
     public static Optional<Integer> divide(Pos p1, Pos p2) {
@@ -75,7 +137,7 @@ public class Pos {
     }
 
     public static Pos mult(Pos p, int n) {
-        return new Pos(p.x() * n, p.y() * n);
+        return of(p.x() * n, p.y() * n);
     }
 
     public int x() {
@@ -86,18 +148,29 @@ public class Pos {
         return y;
     }
 
+    /**
+     * @return the index of the square or -1, if the position is not on the board
+     */
+    public int index() {
+        return index;
+    }
+
     public boolean isValid() {
-        if (x() < 0 || y() < 0) {
-            return false;
-        }
-        if (y() <= 5) {
-            return x() < 8 + y();
-        }
-        return y() < 13 && x() < 13 && x() >= y() - 5;
+        return index >= 0;
     }
 
+    /**
+     * @return true, if the position is on the back row of one of the players
+     */
     public boolean isBaseline(Pos pos) {
-        return pos.y() == 0 || pos.y() - pos.x() == 5 || pos.x() == 12;
+        return pos.baseline;
+    }
+
+    /**
+     * @return true, if a pawn of the given color is promoted on this position
+     */
+    public boolean isPromotion(Color color) {
+        return baselineColor != null && baselineColor != color;
     }
 
     public String getXAsString() {
@@ -127,6 +200,22 @@ public class Pos {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return hash;
+    }
+
+    private static int indexOf(int x, int y) {
+        if (x < 0 || y < 0) {
+            return -1;
+        }
+        if (y <= 5) {
+            // rows 0 to 5 start at x = 0 and have 8 + y squares
+            return x < 8 + y ? 8 * y + y * (y - 1) / 2 + x : -1;
+        }
+        if (y >= 13 || x >= 13 || x < y - 5) {
+            return -1;
+        }
+        // rows 6 to 12 start at x = y - 5 and have 18 - y squares
+        var row = y - 6;
+        return 63 + 12 * row - row * (row - 1) / 2 + x - (y - 5);
     }
 }
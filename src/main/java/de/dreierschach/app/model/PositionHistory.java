@@ -0,0 +1,216 @@
+package de.dreierschach.app.model;
+
+import java.util.Arrays;
+
+/**
+ * The positions of a game, by their {@link Board#getPositionHash() hashes}, to find repetitions and stalled games.
+ * The hashes are kept in the order they occurred and counted in an open addressing table, so adding a position,
+ * taking it back and counting its occurrences take constant time, however long the game is.
+ * <p>
+ * The game is drawn when a position occurs for the {@link #REPETITIONS third time} or after
+ * {@link #NO_PROGRESS_PLIES} plies without a capture or a pawn move. The search pushes the positions of the line
+ * it follows and pops them on the way back, to find cycles within the line and with the game.
+ */
+public class PositionHistory {
+    /**
+     * the number of occurrences of a position that draws the game
+     */
+    public static final int REPETITIONS = 3;
+    /**
+     * the number of plies without a capture or a pawn move that draws the game, 50 moves of each player
+     */
+    public static final int NO_PROGRESS_PLIES = 150;
+
+    private long[] hashes = new long[64];
+    // the number of plies since the last capture or pawn move, for each position
+    private int[] quiet = new int[64];
+    private int size;
+    // linear probing, a count of 0 marks a free slot
+    private long[] keys = new long[128];
+    private int[] counts = new int[128];
+    private int used;
+
+    /**
+     * @param hash the hash of the first position of the game
+     */
+    public PositionHistory(long hash) {
+        push(hash, true);
+    }
+
+    /**
+     * replays the moves of the board from the starting position, to find repetitions of the positions before
+     *
+     * @return the positions of the game, only the current one, if the moves do not lead to it from the starting
+     * position
+     */
+    public static PositionHistory of(Board board) {
+        var replay = new Board();
+        replay.setup();
+        var result = new PositionHistory(replay.getPositionHash());
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            var move = board.getPackedMove(i);
+            replay.doMove(move);
+            replay.nextPlayer();
+            result.push(replay.getPositionHash(), isProgress(move));
+        }
+        if (result.last() != board.getPositionHash()) {
+            return new PositionHistory(board.getPositionHash());
+        }
+        return result;
+    }
+
+    /**
+     * @param move see {@link PackedMove}
+     * @return true, if the move captures a figure or moves a pawn, so no position before can occur again
+     */
+    public static boolean isProgress(int move) {
+        return PackedMove.captured(move) != Figure.NONE || PackedMove.moved(move).getType() == FigureType.PAWN;
+    }
+
+    /**
+     * adds the position after a move
+     *
+     * @param progress true, if the move captured a figure or moved a pawn, see {@link #isProgress(int)}
+     * @return the number of occurrences of the position, including this one
+     */
+    public int push(long hash, boolean progress) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, 2 * size);
+            quiet = Arrays.copyOf(quiet, 2 * size);
+        }
+        hashes[size] = hash;
+        quiet[size] = progress ? 0 : quiet[size - 1] + 1;
+        size++;
+        if (2 * (used + 1) > keys.length) {
+            rehash(2 * keys.length);
+        }
+        var slot = slot(hash);
+        if (counts[slot] == 0) {
+            keys[slot] = hash;
+            used++;
+        }
+        return ++counts[slot];
+    }
+
+    /**
+     * removes the last position, e.g. when the search returns from a move or a move is taken back
+     */
+    public void pop() {
+        if (size == 1) {
+            throw new IllegalStateException("die erste Stellung kann nicht entfernt werden");
+        }
+        var slot = slot(hashes[--size]);
+        if (--counts[slot] == 0) {
+            remove(slot);
+        }
+    }
+
+    /**
+     * @return the number of positions, the first position and one for each move
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the hash of the current position
+     */
+    public long last() {
+        return hashes[size - 1];
+    }
+
+    /**
+     * @return the number of occurrences of the position
+     */
+    public int count(long hash) {
+        return counts[slot(hash)];
+    }
+
+    /**
+     * @return the number of plies since the last capture or pawn move
+     */
+    public int getQuietPlies() {
+        return quiet[size - 1];
+    }
+
+    /**
+     * @return true, if the current position has occurred before
+     */
+    public boolean isRepeated() {
+        return count(last()) > 1;
+    }
+
+    /**
+     * @return true, if the game is drawn by the repetitions of the current position
+     */
+    public boolean isRepetition() {
+        return count(last()) >= REPETITIONS;
+    }
+
+    /**
+     * @return true, if the game is drawn by the number of plies without progress
+     */
+    public boolean isNoProgress() {
+        return getQuietPlies() >= NO_PROGRESS_PLIES;
+    }
+
+    public boolean isDraw() {
+        return isRepetition() || isNoProgress();
+    }
+
+    public PositionHistory copy() {
+        var result = new PositionHistory(hashes[0]);
+        result.hashes = hashes.clone();
+        result.quiet = quiet.clone();
+        result.size = size;
+        result.keys = keys.clone();
+        result.counts = counts.clone();
+        result.used = used;
+        return result;
+    }
+
+    /**
+     * @return the slot of the hash, or the free slot it would be put into
+     */
+    private int slot(long hash) {
+        var mask = keys.length - 1;
+        var slot = Long.hashCode(hash) & mask;
+        while (counts[slot] != 0 && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * frees the slot and moves the following hashes of its cluster back, so no search stops early at the gap
+     */
+    private void remove(int slot) {
+        var mask = keys.length - 1;
+        var free = slot;
+        for (int i = (slot + 1) & mask; counts[i] != 0; i = (i + 1) & mask) {
+            var home = Long.hashCode(keys[i]) & mask;
+            // the hash may move to the free slot, if that lies between its home slot and its slot
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                keys[free] = keys[i];
+                counts[free] = counts[i];
+                free = i;
+            }
+        }
+        counts[free] = 0;
+        used--;
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        var oldCounts = counts;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                var slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package de.dreierschach.app.model;
+
+import java.time.Duration;
+
+/**
+ * The time of a player for the whole game, the increment added after each of its moves and the delay at the start
+ * of each move, before its clock starts running.
+ */
+public class TimeControl {
+    private final Duration initial;
+    private final Duration increment;
+    private final Duration delay;
+
+    public TimeControl(Duration initial, Duration increment, Duration delay) {
+        this.initial = initial;
+        this.increment = increment;
+        this.delay = delay;
+    }
+
+    public Duration getInitial() {
+        return initial;
+    }
+
+    public Duration getIncrement() {
+        return increment;
+    }
+
+    public Duration getDelay() {
+        return delay;
+    }
+
+    @Override
+    public String toString() {
+        return initial.toSeconds() + "s+" + increment.toSeconds() + "s, delay " + delay.toSeconds() + "s";
+    }
+}
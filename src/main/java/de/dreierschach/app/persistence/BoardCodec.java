@@ -0,0 +1,117 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Compact binary form of a {@link Board}: one byte per valid square plus the game state and the moves in
+ * {@link MoveCodec} format. Listeners are not part of the stored form. Version 1 had no en passant state.
+ */
+public final class BoardCodec {
+    private static final byte VERSION = 2;
+
+    private static final Figure[] FIGURES = Figure.values();
+    private static final Color[] COLORS = Color.values();
+
+    private BoardCodec() {
+    }
+
+    public static byte[] toBytes(Board board) {
+        var bytes = new ByteArrayOutputStream(256 + board.getMoveCount() * MoveCodec.BYTES);
+        try (var out = new DataOutputStream(bytes)) {
+            write(board, out);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Kodieren des Spielbretts", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Board fromBytes(byte[] bytes) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Dekodieren des Spielbretts", e);
+        }
+    }
+
+    public static void write(Board board, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeUTF(board.getId() == null ? "" : board.getId());
+        out.writeByte(board.getPlayer() == null ? -1 : board.getPlayer().ordinal());
+        out.writeByte(toMask(board.getCastelingForbidden()));
+        out.writeByte(toMask(board.getCheck()));
+        out.writeByte(board.getEnPassant().index());
+        out.writeByte(board.getEnPassantPawn().index());
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            out.writeByte(board.get(Pos.square(i)).ordinal());
+        }
+        out.writeInt(board.getMoveCount());
+        for (var move : (Iterable<Move>) board.getMoves()::iterator) {
+            out.writeInt(MoveCodec.encode(move));
+        }
+    }
+
+    public static Board read(DataInput in) throws IOException {
+        var version = in.readByte();
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unbekannte Version " + version);
+        }
+        var board = new Board();
+        var id = in.readUTF();
+        board.setId(id.isEmpty() ? null : id);
+        var player = in.readByte();
+        board.withPlayer(player < 0 ? null : COLORS[player]);
+        fromMask(in.readByte()).forEach(board::disableCasteling);
+        var check = fromMask(in.readByte());
+        if (version > 1) {
+            board.withEnPassant(square(in.readByte()), square(in.readByte()));
+        }
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            board.set(FIGURES[in.readByte()], Pos.square(i));
+        }
+        board.setCheck(check);
+        var count = in.readInt();
+        var moves = new ArrayList<Move>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(MoveCodec.decode(in.readInt()));
+        }
+        board.withMoves(moves);
+        return board;
+    }
+
+    private static Pos square(int index) {
+        return index < 0 ? Pos.NONE : Pos.square(index);
+    }
+
+    private static int toMask(Set<Color> colors) {
+        var mask = 0;
+        for (var color : colors) {
+            mask |= 1 << color.ordinal();
+        }
+        return mask;
+    }
+
+    private static Set<Color> fromMask(int mask) {
+        var result = EnumSet.noneOf(Color.class);
+        for (var color : COLORS) {
+            if ((mask & 1 << color.ordinal()) != 0) {
+                result.add(color);
+            }
+        }
+        return result;
+    }
+}
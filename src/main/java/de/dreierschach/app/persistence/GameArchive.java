@@ -0,0 +1,269 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+/**
+ * Archive of finished games. The index file holds one fixed-size header per game, the data file holds the
+ * variable-length move streams in {@link MoveCodec} format. Both files are read through memory mappings, so
+ * loading game {@code n} is a constant-time lookup that does not touch the other games.
+ * <p>
+ * The files grow in chunks of twice their size, filled with zeros, and are mapped as a whole once per chunk, so
+ * archiving a game does not map the files again. The headers follow each other without gaps, the games are the
+ * headers up to the first one that does not continue the moves of the one before.
+ */
+@Component
+public class GameArchive {
+    static final String INDEX_FILE = "games.idx";
+    static final String DATA_FILE = "games.dat";
+
+    /**
+     * id (16), offset of the moves in the data file (8), number of moves (4), winner (1), reserved (3)
+     */
+    static final int HEADER_BYTES = 32;
+    // the smallest chunk the data file grows by
+    private static final long MIN_DATA_CAPACITY = 64 * 1024;
+
+    private static final Color[] COLORS = Color.values();
+
+    private final FileChannel index;
+    private final FileChannel data;
+    private final Map<UUID, Integer> numbers = new HashMap<>();
+    private MappedByteBuffer indexMap;
+    private MappedByteBuffer dataMap;
+    private int size;
+    // the end of the moves of the last game, the data file is larger
+    private long dataEnd;
+
+    public GameArchive(@Value("${dreierschach.archive.dir:data/archive}") Path dir) {
+        try {
+            Files.createDirectories(dir);
+            index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            data = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // a header without its moves or behind a gap is ignored, it is overwritten by the next game
+            var headers = (int) (index.size() / HEADER_BYTES);
+            while (size < headers) {
+                var header = readHeader(size);
+                if (header.getId().getMostSignificantBits() == 0 && header.getId().getLeastSignificantBits() == 0
+                        || header.getOffset() != dataEnd || header.end() > data.size()) {
+                    break;
+                }
+                dataEnd = header.end();
+                size++;
+            }
+            remap();
+            for (int i = 0; i < size; i++) {
+                numbers.put(header(i).getId(), i);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Öffnen des Spielarchivs " + dir, e);
+        }
+    }
+
+    /**
+     * appends a game to the archive
+     *
+     * @param board  the finished game
+     * @param winner the winner or null, if there is none
+     * @return the number of the game in the archive
+     */
+    public synchronized int archive(Board board, Color winner) {
+        var moves = board.getMoves().mapToInt(MoveCodec::encode).toArray();
+        var id = toUuid(board.getId());
+        try {
+            var offset = dataEnd;
+            var buffer = ByteBuffer.allocate(moves.length * MoveCodec.BYTES);
+            buffer.asIntBuffer().put(moves);
+            write(data, buffer, offset);
+            data.force(false);
+
+            var header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits())
+                    .putLong(offset)
+                    .putInt(moves.length)
+                    .put((byte) (winner == null ? -1 : winner.ordinal()))
+                    .rewind();
+            write(index, header, (long) size * HEADER_BYTES);
+            index.force(false);
+
+            numbers.put(id, size);
+            size++;
+            dataEnd = offset + buffer.capacity();
+            if ((long) size * HEADER_BYTES > indexMap.capacity() || dataEnd > dataMap.capacity()) {
+                remap();
+            }
+            return size - 1;
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Archivieren des Spiels " + board.getId(), e);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized OptionalInt numberOf(String id) {
+        var number = numbers.get(toUuid(id));
+        return number == null ? OptionalInt.empty() : OptionalInt.of(number);
+    }
+
+    public synchronized Header header(int number) {
+        checkNumber(number);
+        return readHeader(indexMap, number);
+    }
+
+    /**
+     * @param number the number of the game in the archive
+     * @return the moves of the game in {@link MoveCodec} format
+     */
+    public synchronized int[] moves(int number) {
+        var header = header(number);
+        var result = new int[header.getMoves()];
+        dataMap.slice((int) header.getOffset(), header.getMoves() * MoveCodec.BYTES).asIntBuffer().get(result);
+        return result;
+    }
+
+    /**
+     * replays an archived game onto a new board
+     *
+     * @param number the number of the game in the archive
+     * @param plies  the number of moves to replay, may be larger than the number of moves of the game
+     * @return the board after the replayed moves
+     */
+    public Board replay(int number, int plies) {
+        var moves = moves(number);
+        var engine = new DreierschachEngineImpl().startGame();
+        engine.board().setId(header(number).getId().toString());
+        for (int i = 0; i < Math.min(plies, moves.length); i++) {
+            var code = moves[i];
+            if (!engine.move(MoveCodec.source(code), MoveCodec.destination(code), MoveCodec.promotion(code))) {
+                throw new IllegalStateException("Archived game " + number + " contains an invalid move " + i);
+            }
+        }
+        return engine.board();
+    }
+
+    public Board replay(int number) {
+        return replay(number, Integer.MAX_VALUE);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            index.close();
+            data.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Schließen des Spielarchivs", e);
+        }
+    }
+
+    static UUID toUuid(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void checkNumber(int number) {
+        if (number < 0 || number >= size) {
+            throw new IndexOutOfBoundsException("No archived game " + number + ", size is " + size);
+        }
+    }
+
+    /**
+     * grows the files to twice what they hold and maps them, the mappings see the games written later
+     */
+    private void remap() throws IOException {
+        var dataCapacity = Math.min(Integer.MAX_VALUE, Math.max(MIN_DATA_CAPACITY, 2 * dataEnd));
+        if (dataEnd > dataCapacity) {
+            throw new IOException("Spielarchiv ist größer als 2 GB");
+        }
+        indexMap = map(index, (long) Math.max(1024, 2 * size) * HEADER_BYTES);
+        dataMap = map(data, dataCapacity);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long capacity) throws IOException {
+        if (channel.size() < capacity) {
+            write(channel, ByteBuffer.allocate(1), capacity - 1);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    private Header readHeader(int number) throws IOException {
+        var buffer = ByteBuffer.allocate(HEADER_BYTES);
+        index.read(buffer, (long) number * HEADER_BYTES);
+        return readHeader(buffer.flip(), 0);
+    }
+
+    private static Header readHeader(ByteBuffer buffer, int number) {
+        var base = number * HEADER_BYTES;
+        var winner = buffer.get(base + 28);
+        return new Header(new UUID(buffer.getLong(base), buffer.getLong(base + 8)), buffer.getLong(base + 16),
+                buffer.getInt(base + 24), winner < 0 ? null : COLORS[winner]);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * fixed-size header of an archived game
+     */
+    public static class Header {
+        private final UUID id;
+        private final long offset;
+        private final int moves;
+        private final Color winner;
+
+        public Header(UUID id, long offset, int moves, Color winner) {
+            this.id = id;
+            this.offset = offset;
+            this.moves = moves;
+            this.winner = winner;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getMoves() {
+            return moves;
+        }
+
+        public Optional<Color> getWinner() {
+            return Optional.ofNullable(winner);
+        }
+
+        long end() {
+            return offset + (long) moves * MoveCodec.BYTES;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Move;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal with one file per game. Every accepted move is stored as a fixed-size {@link MoveCodec}
+ * record, taking a move back as an {@link MoveCodec#UNDO} record. Callers only enqueue records; a single writer
+ * thread drains the queue, writes all pending records and forces every touched file once per batch (group commit).
+ * Every {@code snapshotInterval} records a snapshot of the board is written, so recovery only has to replay the
+ * records after the last snapshot.
+ */
+@Component
+public class GameJournal {
+    private static Logger log = LoggerFactory.getLogger(GameJournal.class);
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final int MAX_BATCH = 4096;
+    private static final int MAX_OPEN_FILES = 256;
+    // the longest pause between two attempts to write a failed batch
+    private static final long MAX_RETRY_DELAY = 5000;
+
+    private final Path dir;
+    private final int snapshotInterval;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Map<String, Integer> recordCounts = new ConcurrentHashMap<>();
+    private final Map<String, FileChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public GameJournal(@Value("${dreierschach.journal.dir:data/journal}") Path dir,
+                       @Value("${dreierschach.journal.snapshot-interval:50}") int snapshotInterval) {
+        this.dir = dir;
+        this.snapshotInterval = snapshotInterval;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Anlegen des Journal-Verzeichnisses " + dir, e);
+        }
+        this.writer = new Thread(this::writeLoop, "game-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * registers the journal as move listener of the given board
+     *
+     * @param board the board whose moves are recorded
+     * @return the board
+     */
+    public Board attach(Board board) {
+        return board.addMoveListener(e -> {
+            if (e.isUndoLastMove()) {
+                recordUndo(board);
+            } else {
+                record(board, e.getMove());
+            }
+        });
+    }
+
+    /**
+     * enqueues a record for a move that has just been done on the board, never blocks on disk
+     *
+     * @param board the board after the move
+     * @param move  the move
+     */
+    public void record(Board board, Move move) {
+        append(board, MoveCodec.encode(move));
+    }
+
+    /**
+     * enqueues a record for the last move that has just been taken back on the board
+     *
+     * @param board the board after taking the move back
+     */
+    public void recordUndo(Board board) {
+        append(board, MoveCodec.UNDO);
+    }
+
+    private void append(Board board, int code) {
+        var id = board.getId();
+        var count = recordCounts.merge(id, 1, Integer::sum);
+        queue.add(new Entry(Entry.Type.RECORD, id, code, 0, null));
+        if (count % snapshotInterval == 0) {
+            queue.add(new Entry(Entry.Type.SNAPSHOT, id, 0, count, BoardCodec.toBytes(board)));
+        }
+    }
+
+    /**
+     * deletes the journal of a game, e.g. after it has been archived
+     *
+     * @param id the id of the game
+     */
+    public void discard(String id) {
+        recordCounts.remove(id);
+        queue.add(new Entry(Entry.Type.DISCARD, id, 0, 0, null));
+    }
+
+    /**
+     * @return the ids of all journaled games, the most recently changed first
+     */
+    public List<String> gameIds() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+                    .sorted(Comparator.comparing(this::lastModified).reversed())
+                    .map(p -> p.getFileName().toString())
+                    .map(name -> name.substring(0, name.length() - JOURNAL_SUFFIX.length()))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Lesen des Journal-Verzeichnisses " + dir, e);
+        }
+    }
+
+    /**
+     * restores a game from its last snapshot and replays the remaining records through the engine
+     *
+     * @param id the id of the game
+     * @return the restored board or empty, if there is no journal for the game
+     */
+    public Optional<Board> recover(String id) {
+        var journalFile = dir.resolve(id + JOURNAL_SUFFIX);
+        if (!Files.exists(journalFile)) {
+            return Optional.empty();
+        }
+        try {
+            Board board;
+            int replayFrom = 0;
+            var snapshotFile = dir.resolve(id + SNAPSHOT_SUFFIX);
+            if (Files.exists(snapshotFile)) {
+                try (var in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+                    replayFrom = in.readInt();
+                    board = BoardCodec.read(in);
+                }
+            } else {
+                board = new Board();
+                board.setup();
+                board.setId(id);
+            }
+            var engine = new DreierschachEngineImpl().withBoard(board);
+            int records = replayFrom;
+            try (var channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+                var buffer = ByteBuffer.allocate(MAX_BATCH * MoveCodec.BYTES);
+                channel.position((long) replayFrom * MoveCodec.BYTES);
+                while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                    buffer.flip();
+                    if (buffer.remaining() < MoveCodec.BYTES) {
+                        break;
+                    }
+                    while (buffer.remaining() >= MoveCodec.BYTES) {
+                        var code = buffer.getInt();
+                        if (code == MoveCodec.UNDO ? !engine.undoLastMove()
+                                : !engine.move(MoveCodec.source(code), MoveCodec.destination(code),
+                                MoveCodec.promotion(code))) {
+                            log.warn("Journal of game {} contains an invalid move at record {}", id, records);
+                            recordCounts.put(id, records);
+                            return Optional.of(board);
+                        }
+                        records++;
+                    }
+                    buffer.compact();
+                }
+            }
+            recordCounts.put(id, records);
+            log.info("Recovered game {} with {} records, {} replayed", id, records, records - replayFrom);
+            return Optional.of(board);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Wiederherstellen des Spiels " + id, e);
+        }
+    }
+
+    /**
+     * @return the number of open journal files, the least recently written are closed beyond
+     * {@link #MAX_OPEN_FILES}
+     */
+    public int openFiles() {
+        synchronized (channels) {
+            return channels.size();
+        }
+    }
+
+    /**
+     * waits until all records enqueued so far are written and forced to disk, while the disk fails it waits for the
+     * writer to succeed
+     *
+     * @throws RuntimeException if the journal has been closed before the records could be written
+     */
+    public void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return true, if the records have been written within the time
+     */
+    private boolean flush(long millis) {
+        var done = new Entry(Entry.Type.FLUSH, null, 0, 0, null);
+        queue.add(done);
+        var end = System.currentTimeMillis() + Math.min(millis, Long.MAX_VALUE / 2);
+        synchronized (done) {
+            while (!done.written && !done.failed && writer.isAlive() && System.currentTimeMillis() < end) {
+                try {
+                    done.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (done.failed || !done.written && !writer.isAlive()) {
+                throw new RuntimeException("Fehler beim Schreiben des Journals");
+            }
+            return done.written;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            if (!flush(MAX_RETRY_DELAY)) {
+                log.error("Journal closed with records not written");
+            }
+        } catch (RuntimeException e) {
+            log.error("Journal closed with records not written", e);
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channels) {
+            channels.values().forEach(this::closeQuietly);
+            channels.clear();
+        }
+    }
+
+    /**
+     * writes the queued entries batch by batch. A batch that fails is written again until it succeeds, continuing
+     * where it stopped, so its records are neither lost nor written twice; the records queued in the meantime wait.
+     * Entries are only marked written once they are on disk.
+     */
+    private void writeLoop() {
+        var batch = new ArrayList<Entry>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            var pending = new Batch(batch);
+            var delay = 100L;
+            while (true) {
+                try {
+                    writeBatch(pending);
+                    break;
+                } catch (IOException e) {
+                    log.error("Failed to write journal batch of {} entries, retrying in {} ms", batch.size(), delay,
+                            e);
+                    closeChannels(pending);
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    batch.forEach(Entry::markFailed);
+                    return;
+                }
+                delay = Math.min(2 * delay, MAX_RETRY_DELAY);
+            }
+            batch.forEach(Entry::markWritten);
+            batch.clear();
+        }
+    }
+
+    /**
+     * writes what is left of the batch, each part is removed from it once it is on disk
+     */
+    private void writeBatch(Batch batch) throws IOException {
+        synchronized (channels) {
+            for (var e : batch.records.entrySet()) {
+                var buffer = e.getValue();
+                var channel = channel(e.getKey());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            for (var iterator = batch.records.keySet().iterator(); iterator.hasNext(); ) {
+                channels.get(iterator.next()).force(false);
+                iterator.remove();
+            }
+        }
+        // snapshots are written after the records they cover are durable
+        for (var iterator = batch.snapshots.values().iterator(); iterator.hasNext(); ) {
+            writeSnapshot(iterator.next());
+            iterator.remove();
+        }
+        for (var iterator = batch.discarded.iterator(); iterator.hasNext(); ) {
+            var id = iterator.next();
+            synchronized (channels) {
+                var channel = channels.remove(id);
+                if (channel != null) {
+                    closeQuietly(channel);
+                }
+            }
+            Files.deleteIfExists(dir.resolve(id + JOURNAL_SUFFIX));
+            Files.deleteIfExists(dir.resolve(id + SNAPSHOT_SUFFIX));
+            iterator.remove();
+        }
+    }
+
+    /**
+     * closes the files of the games still to be written, they are opened again by the next attempt
+     */
+    private void closeChannels(Batch batch) {
+        synchronized (channels) {
+            for (var id : batch.records.keySet()) {
+                var channel = channels.remove(id);
+                if (channel != null) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(Entry entry) throws IOException {
+        var tmp = dir.resolve(entry.id + SNAPSHOT_SUFFIX + ".tmp");
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(Integer.BYTES + entry.snapshot.length);
+            buffer.putInt(entry.records).put(entry.snapshot).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(entry.id + SNAPSHOT_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileChannel channel(String id) throws IOException {
+        var channel = channels.get(id);
+        if (channel == null) {
+            if (channels.size() >= MAX_OPEN_FILES) {
+                var eldest = channels.entrySet().iterator().next();
+                closeQuietly(eldest.getValue());
+                channels.remove(eldest.getKey());
+            }
+            channel = FileChannel.open(dir.resolve(id + JOURNAL_SUFFIX), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            channels.put(id, channel);
+        }
+        return channel;
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close journal file", e);
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Lesen von " + path, e);
+        }
+    }
+
+    /**
+     * the records of a batch by game, the last snapshot of each game and the games to delete
+     */
+    private static class Batch {
+        private final Map<String, ByteBuffer> records = new LinkedHashMap<>();
+        private final Map<String, Entry> snapshots = new HashMap<>();
+        private final List<String> discarded = new ArrayList<>();
+
+        Batch(List<Entry> batch) {
+            for (var entry : batch) {
+                switch (entry.type) {
+                    case RECORD:
+                        records.computeIfAbsent(entry.id,
+                                id -> ByteBuffer.allocate(batch.size() * MoveCodec.BYTES)).putInt(entry.code);
+                        break;
+                    case SNAPSHOT:
+                        snapshots.put(entry.id, entry);
+                        break;
+                    case DISCARD:
+                        discarded.add(entry.id);
+                        break;
+                    default:
+                }
+            }
+            records.values().forEach(ByteBuffer::flip);
+        }
+    }
+
+    private static class Entry {
+        enum Type {RECORD, SNAPSHOT, DISCARD, FLUSH}
+
+        private final Type type;
+        private final String id;
+        private final int code;
+        private final int records;
+        private final byte[] snapshot;
+        private boolean written;
+        private boolean failed;
+
+        Entry(Type type, String id, int code, int records, byte[] snapshot) {
+            this.type = type;
+            this.id = id;
+            this.code = code;
+            this.records = records;
+            this.snapshot = snapshot;
+        }
+
+        synchronized void markWritten() {
+            written = true;
+            notifyAll();
+        }
+
+        synchronized void markFailed() {
+            failed = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.game.GameRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Restores the most recently played game from the journal at startup and attaches the journal to the board of
+ * the main game, so that every following move is recorded. Both happen in the mailbox of the game.
+ */
+@Component
+public class GameRecovery implements ApplicationRunner {
+    private static Logger log = LoggerFactory.getLogger(GameRecovery.class);
+
+    private final GameRegistry games;
+    private final GameJournal journal;
+
+    public GameRecovery(GameRegistry games, GameJournal journal) {
+        this.games = games;
+        this.journal = journal;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var recovered = journal.gameIds().stream().findFirst().flatMap(journal::recover);
+        games.main().execute(engine -> {
+            recovered.ifPresentOrElse(board -> {
+                log.info("Continuing game {} after {} moves", board.getId(), board.getMoveCount());
+                engine.withBoard(board);
+            }, engine::startGame);
+            journal.attach(engine.board());
+        }).join();
+    }
+}
@@ -0,0 +1,81 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+
+/**
+ * Encodes a {@link Move} into a single int, which is the record format of the journal and the archive.
+ * <p>
+ * Layout (lowest bit first): source square (8 bit, x in the high and y in the low nibble), destination square
+ * (8 bit), moved figure (5 bit), captured figure (5 bit), casteling (2 bit), disables casteling (1 bit), special
+ * (3 bit: 0 for none, the ordinal of the promotion type + 1 or 7 for en passant, which never promotes).
+ * The check state is not stored, it is recomputed when the move is replayed.
+ */
+public final class MoveCodec {
+    public static final int BYTES = Integer.BYTES;
+    /**
+     * the record of taking back the last move, no move has this code: its casteling bits are invalid
+     */
+    public static final int UNDO = -1;
+
+    private static final Figure[] FIGURES = Figure.values();
+    private static final Move.Casteling[] CASTELINGS = Move.Casteling.values();
+    private static final FigureType[] TYPES = FigureType.values();
+    private static final int EN_PASSANT = 7;
+
+    private MoveCodec() {
+    }
+
+    public static int encode(Move move) {
+        return encodePos(move.p1())
+                | encodePos(move.p2()) << 8
+                | move.f1().ordinal() << 16
+                | figureOrNone(move.f2()).ordinal() << 21
+                | move.casteling().ordinal() << 26
+                | (move.isDisablesCasteling() ? 1 : 0) << 28
+                | encodeSpecial(move) << 29;
+    }
+
+    public static Move decode(int code) {
+        return new Move(decodePos(code), FIGURES[code >>> 16 & 0x1f], decodePos(code >>> 8),
+                FIGURES[code >>> 21 & 0x1f], Move.Check.NONE, CASTELINGS[code >>> 26 & 0x3],
+                (code >>> 28 & 0x1) == 1, promotion(code), code >>> 29 == EN_PASSANT);
+    }
+
+    /**
+     * @return the type a pawn is promoted to or null
+     */
+    public static FigureType promotion(int code) {
+        var special = code >>> 29;
+        return special == 0 || special == EN_PASSANT ? null : TYPES[special - 1];
+    }
+
+    public static Pos source(int code) {
+        return decodePos(code);
+    }
+
+    public static Pos destination(int code) {
+        return decodePos(code >>> 8);
+    }
+
+    private static int encodeSpecial(Move move) {
+        if (move.isEnPassant()) {
+            return EN_PASSANT;
+        }
+        return move.promotion() == null ? 0 : move.promotion().ordinal() + 1;
+    }
+
+    static int encodePos(Pos pos) {
+        return pos.x() << 4 | pos.y();
+    }
+
+    static Pos decodePos(int code) {
+        return Pos.of(code >>> 4 & 0xf, code & 0xf);
+    }
+
+    private static Figure figureOrNone(Figure figure) {
+        return figure == null ? Figure.NONE : figure;
+    }
+}
@@ -0,0 +1,235 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.model.Dir;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The moves and attacks of kings, queens, rooks, bishops and knights as lookups by square index, following the
+ * rules of {@link de.dreierschach.app.engine.DreierschachEngineImpl} without casteling.
+ */
+final class Geometry {
+    static final int SQUARES = Pos.SQUARES;
+
+    // rays 0 to 5 are straight, 6 to 11 diagonal
+    static final int RAYS = 12;
+
+    /**
+     * squares along a ray, [ray][square][step]
+     */
+    static final int[][][] RAY = new int[RAYS][SQUARES][];
+
+    /**
+     * the squares beside a diagonal step from a square, -1 if outside of the board, [diagonal][square]
+     */
+    static final int[][] FLANK_LEFT = new int[6][SQUARES];
+    static final int[][] FLANK_RIGHT = new int[6][SQUARES];
+
+    /**
+     * the jumps of a knight, [square][k]
+     */
+    static final int[][] JUMP = new int[SQUARES][];
+
+    // ray and distance between two squares as ray * 16 + distance, the jump as JUMP_LINE, -1 if none
+    private static final int JUMP_LINE = RAYS * 16 + 1;
+    private static final int[] LINE = new int[SQUARES * SQUARES];
+
+    static {
+        Arrays.fill(LINE, -1);
+        for (int s = 0; s < SQUARES; s++) {
+            var source = Pos.square(s);
+            for (int r = 0; r < RAYS; r++) {
+                var dir = r < 6 ? Dir.get(Dir.Type.straight, r) : Dir.get(Dir.Type.diagonal, r - 6);
+                var squares = new ArrayList<Integer>();
+                for (var p = Pos.add(source, dir); p.isValid(); p = Pos.add(p, dir)) {
+                    squares.add(p.index());
+                    LINE[s * SQUARES + p.index()] = r * 16 + squares.size();
+                }
+                RAY[r][s] = squares.stream().mapToInt(Integer::intValue).toArray();
+                if (r >= 6) {
+                    var straight = Dir.get(Dir.Type.straight, dir.getIndex());
+                    FLANK_LEFT[r - 6][s] = Pos.add(source, straight).index();
+                    FLANK_RIGHT[r - 6][s] = Pos.add(source, Dir.rotateRight(straight)).index();
+                }
+            }
+            var jumps = new ArrayList<Integer>();
+            for (int k = 0; k < Dir.Type.jump.size(); k++) {
+                var p = Pos.add(source, Dir.get(Dir.Type.jump, k));
+                if (p.isValid()) {
+                    jumps.add(p.index());
+                    LINE[s * SQUARES + p.index()] = JUMP_LINE;
+                }
+            }
+            JUMP[s] = jumps.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private Geometry() {
+    }
+
+    /**
+     * adds the destinations of a figure, which are empty or occupied by an opponent
+     *
+     * @param occupant the color ordinal + 1 of the figure on every square, 0 if empty
+     * @return the number of destinations written to result
+     */
+    static int destinations(FigureType type, int source, byte[] occupant, int[] result) {
+        var own = occupant[source];
+        var count = 0;
+        switch (type) {
+            case KNIGHT:
+                for (var destination : JUMP[source]) {
+                    if (occupant[destination] != own) {
+                        result[count++] = destination;
+                    }
+                }
+                return count;
+            case KING:
+                for (int r = 0; r < RAYS; r++) {
+                    var ray = RAY[r][source];
+                    if (ray.length > 0 && occupant[ray[0]] != own && (r < 6 || isDiagonalFree(r, source, occupant))) {
+                        result[count++] = ray[0];
+                    }
+                }
+                return count;
+            case ROOK:
+                return rays(0, 6, source, occupant, result, 0);
+            case BISHOP:
+                return rays(6, RAYS, source, occupant, result, 0);
+            case QUEEN:
+                return rays(6, RAYS, source, occupant, result, rays(0, 6, source, occupant, result, 0));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * adds the empty squares from which a figure of the type may have moved to the square destination. The flanks
+     * of diagonal steps are not checked, so the result may contain squares the figure could not have moved from.
+     *
+     * @return the number of squares written to result
+     */
+    static int origins(FigureType type, int destination, byte[] occupant, int[] result) {
+        var count = 0;
+        switch (type) {
+            case KNIGHT:
+                for (var source : JUMP[destination]) {
+                    if (occupant[source] == 0) {
+                        result[count++] = source;
+                    }
+                }
+                return count;
+            case KING:
+                for (int r = 0; r < RAYS; r++) {
+                    var ray = RAY[r][destination];
+                    if (ray.length > 0 && occupant[ray[0]] == 0) {
+                        result[count++] = ray[0];
+                    }
+                }
+                return count;
+            case ROOK:
+                return emptyRays(0, 6, destination, occupant, result, 0);
+            case BISHOP:
+                return emptyRays(6, RAYS, destination, occupant, result, 0);
+            case QUEEN:
+                return emptyRays(0, RAYS, destination, occupant, result, 0);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return true, if the figure on the square source attacks the square destination. The square destination is
+     * expected to be occupied.
+     */
+    static boolean attacks(FigureType type, int source, int destination, byte[] occupant) {
+        var line = LINE[source * SQUARES + destination];
+        if (line < 0) {
+            return false;
+        }
+        if (line == JUMP_LINE) {
+            return type == FigureType.KNIGHT;
+        }
+        var r = line / 16;
+        var distance = line % 16;
+        var straight = r < 6;
+        switch (type) {
+            case KING:
+                return distance == 1 && (straight || isDiagonalFree(r, source, occupant));
+            case ROOK:
+                if (!straight) {
+                    return false;
+                }
+                break;
+            case BISHOP:
+                if (straight) {
+                    return false;
+                }
+                break;
+            case QUEEN:
+                break;
+            default:
+                return false;
+        }
+        // the squares in between are empty and, diagonally, every step passes a free flank
+        var ray = RAY[r][source];
+        if (!straight && !isDiagonalFree(r, source, occupant)) {
+            return false;
+        }
+        for (int i = 0; i < distance - 1; i++) {
+            if (occupant[ray[i]] != 0 || !straight && !isDiagonalFree(r, ray[i], occupant)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the moves along rays: the squares in between are empty and, diagonally, the flanks of every step but the last
+     * one are checked, as in the move validation of the engine
+     */
+    private static int rays(int from, int to, int source, byte[] occupant, int[] result, int count) {
+        var own = occupant[source];
+        for (int r = from; r < to; r++) {
+            var diagonal = r >= 6;
+            if (diagonal && !isDiagonalFree(r, source, occupant)) {
+                continue;
+            }
+            var ray = RAY[r][source];
+            for (int i = 0; i < ray.length; i++) {
+                if (diagonal && i >= 2 && !isDiagonalFree(r, ray[i - 2], occupant)) {
+                    break;
+                }
+                var occupied = occupant[ray[i]];
+                if (occupied != own) {
+                    result[count++] = ray[i];
+                }
+                if (occupied != 0) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int emptyRays(int from, int to, int source, byte[] occupant, int[] result, int count) {
+        for (int r = from; r < to; r++) {
+            for (var square : RAY[r][source]) {
+                if (occupant[square] != 0) {
+                    break;
+                }
+                result[count++] = square;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isDiagonalFree(int r, int square, byte[] occupant) {
+        var left = FLANK_LEFT[r - 6][square];
+        var right = FLANK_RIGHT[r - 6][square];
+        return left < 0 || occupant[left] == 0 || right < 0 || occupant[right] == 0;
+    }
+}
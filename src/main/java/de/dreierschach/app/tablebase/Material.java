@@ -0,0 +1,213 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The figures of an endgame: the three kings and some figures of one player, the strong player. A position of
+ * the endgame is numbered by the squares of the kings of white, brown and black, the squares of the other figures
+ * in the order of their types and the player to move.
+ */
+public final class Material {
+    private static final Color[] COLORS = Color.values();
+
+    private final Color strong;
+    private final FigureType[] figures;
+
+    private Material(Color strong, FigureType[] figures) {
+        this.strong = strong;
+        this.figures = figures;
+    }
+
+    /**
+     * @param strong  the player owning the figures
+     * @param figures queens, rooks, bishops or knights
+     */
+    public static Material of(Color strong, FigureType... figures) {
+        for (var type : figures) {
+            if (type == FigureType.KING || type == FigureType.PAWN) {
+                throw new IllegalArgumentException("keine Endspielfigur " + type);
+            }
+        }
+        var sorted = figures.clone();
+        Arrays.sort(sorted);
+        return new Material(strong, sorted);
+    }
+
+    /**
+     * @param name the name, e.g. {@code WHITE-QUEEN}, see {@link #toString()}
+     */
+    public static Material parse(String name) {
+        var parts = name.split("-");
+        try {
+            var figures = new FigureType[parts.length - 1];
+            for (int i = 1; i < parts.length; i++) {
+                figures[i - 1] = FigureType.valueOf(parts[i]);
+            }
+            return of(Color.valueOf(parts[0]), figures);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ungültiges Endspiel " + name, e);
+        }
+    }
+
+    /**
+     * @param strong the player owning the figures besides the kings, if there are none
+     * @return the material of the board, empty if it is not an endgame of three kings and figures of one player
+     * without pawns
+     */
+    public static Optional<Material> of(Board board, Color strong) {
+        var kings = 0;
+        Color owner = null;
+        var figures = new ArrayList<FigureType>();
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = board.get(Pos.square(i));
+            if (figure == Figure.NONE) {
+                continue;
+            }
+            if (figure.getType() == FigureType.KING) {
+                kings++;
+                continue;
+            }
+            if (figure.getType() == FigureType.PAWN || owner != null && owner != figure.getColor()) {
+                return Optional.empty();
+            }
+            owner = figure.getColor();
+            figures.add(figure.getType());
+        }
+        if (kings != COLORS.length) {
+            return Optional.empty();
+        }
+        return Optional.of(of(owner == null ? strong : owner, figures.toArray(FigureType[]::new)));
+    }
+
+    public Color getStrong() {
+        return strong;
+    }
+
+    /**
+     * @return the figures besides the kings, ordered by type
+     */
+    public FigureType[] getFigures() {
+        return figures.clone();
+    }
+
+    /**
+     * @return the number of figures including the kings
+     */
+    public int pieces() {
+        return COLORS.length + figures.length;
+    }
+
+    /**
+     * @return the number of positions
+     */
+    public long size() {
+        var result = (long) COLORS.length;
+        for (int i = 0; i < pieces(); i++) {
+            result *= Pos.SQUARES;
+        }
+        return result;
+    }
+
+    /**
+     * @return the material after the figure with the given number has been captured
+     */
+    public Material without(int figure) {
+        var result = new FigureType[figures.length - 1];
+        for (int i = 0, j = 0; i < figures.length; i++) {
+            if (i != figure) {
+                result[j++] = figures[i];
+            }
+        }
+        return new Material(strong, result);
+    }
+
+    /**
+     * @param squares the square indexes of the kings of white, brown and black followed by the other figures
+     * @param player  the ordinal of the player to move
+     */
+    public long index(int[] squares, int player) {
+        var result = 0L;
+        for (int i = 0; i < pieces(); i++) {
+            result = result * Pos.SQUARES + squares[i];
+        }
+        return result * COLORS.length + player;
+    }
+
+    /**
+     * @return the index of the position on the board, which must be of this material, see {@link #of(Board, Color)}
+     */
+    public long index(Board board) {
+        var squares = new int[pieces()];
+        var taken = new boolean[figures.length];
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = board.get(Pos.square(i));
+            if (figure == Figure.NONE) {
+                continue;
+            }
+            if (figure.getType() == FigureType.KING) {
+                squares[figure.getColor().ordinal()] = i;
+                continue;
+            }
+            // the first free slot of the type, figures of the same type are taken in the order of their squares
+            for (int f = 0; f < figures.length; f++) {
+                if (figures[f] == figure.getType() && !taken[f]) {
+                    squares[COLORS.length + f] = i;
+                    taken[f] = true;
+                    break;
+                }
+            }
+        }
+        return index(squares, board.getPlayer().ordinal());
+    }
+
+    /**
+     * the inverse of {@link #index(int[], int)}
+     *
+     * @return the ordinal of the player to move
+     */
+    int decode(long index, int[] squares) {
+        var player = (int) (index % COLORS.length);
+        index /= COLORS.length;
+        for (int i = pieces() - 1; i >= 0; i--) {
+            squares[i] = (int) (index % Pos.SQUARES);
+            index /= Pos.SQUARES;
+        }
+        return player;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Material)) {
+            return false;
+        }
+        var material = (Material) o;
+        return strong == material.strong && Arrays.equals(figures, material.figures);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * strong.hashCode() + Arrays.hashCode(figures);
+    }
+
+    /**
+     * @return the name, e.g. {@code WHITE-QUEEN} for the king and queen of white against the kings of brown and
+     * black
+     */
+    @Override
+    public String toString() {
+        return Arrays.stream(figures).map(Enum::name)
+                .collect(Collectors.joining("-", strong.name() + (figures.length > 0 ? "-" : ""), ""));
+    }
+}
@@ -0,0 +1,126 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.FigureType;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * The result of every position of an endgame, see {@link Material}, for the strong player: it wins, if it can
+ * force that an opponent cannot move any more or loses its king, and it loses, if the opponents can force that
+ * against it. The results are packed into two bits per position and read through a memory mapping.
+ * <p>
+ * The tables are generated without casteling and en passant, so positions in which a player may still castle are
+ * not probed.
+ */
+public class Tablebase {
+    static final int MAGIC = 0x44535442;
+    static final int VERSION = 1;
+    /**
+     * magic (4), version (4), strong player (1), number of figures (1), types of the figures (6), number of
+     * positions (8), reserved (8)
+     */
+    static final int HEADER_BYTES = 32;
+    static final int MAX_FIGURES = 6;
+    static final int POSITIONS_PER_WORD = 32;
+
+    private static final Color[] COLORS = Color.values();
+    private static final FigureType[] TYPES = FigureType.values();
+    private static final Value[] VALUES = Value.values();
+
+    public enum Value {
+        /**
+         * no player can force a result
+         */
+        DRAW,
+        WIN,
+        LOSS,
+        /**
+         * the player who moved last is in check or two figures share a square
+         */
+        ILLEGAL
+    }
+
+    private final Material material;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+
+    public Tablebase(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Datei zu groß: " + file);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Keine Endspieltabelle: " + file);
+            }
+            var figures = new FigureType[map.get(9)];
+            for (int i = 0; i < figures.length; i++) {
+                figures[i] = TYPES[map.get(10 + i)];
+            }
+            material = Material.of(COLORS[map.get(8)], figures);
+            if (map.getLong(16) != material.size() || channel.size() < HEADER_BYTES + bytes(material.size())) {
+                throw new IOException("Endspieltabelle unvollständig: " + file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Öffnen der Endspieltabelle " + file, e);
+        }
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * @return the result for the strong player, empty if the board is not of the material of this table or a player
+     * may still castle
+     */
+    public Optional<Value> probe(Board board) {
+        if (board.getCastelingForbidden().size() < COLORS.length || board.getEnPassant().isValid()
+                || !Material.of(board, material.getStrong()).filter(material::equals).isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(get(material.index(board)));
+    }
+
+    /**
+     * @param index the index of the position, see {@link Material#index(int[], int)}
+     */
+    public Value get(long index) {
+        var word = map.getLong(HEADER_BYTES + (int) (index / POSITIONS_PER_WORD) * Long.BYTES);
+        return VALUES[value(word, index)];
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Schließen der Endspieltabelle", e);
+        }
+    }
+
+    /**
+     * @return the value of the position in the word holding it
+     */
+    static int value(long word, long index) {
+        return (int) (word >>> shift(index)) & 3;
+    }
+
+    static int shift(long index) {
+        return (int) (index % POSITIONS_PER_WORD) * 2;
+    }
+
+    /**
+     * @return the size of the packed values of the given number of positions
+     */
+    static long bytes(long positions) {
+        return (positions + POSITIONS_PER_WORD - 1) / POSITIONS_PER_WORD * Long.BYTES;
+    }
+}
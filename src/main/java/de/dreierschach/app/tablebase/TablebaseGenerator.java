@@ -0,0 +1,360 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.FigureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generates the tables of endgames offline by retrograde analysis. A position is decided when its player to move
+ * has no moves, when it has a move into a position won for it or when all its moves lead into positions lost for
+ * it. The first sweep evaluates all positions, every further sweep only the undecided predecessors of the
+ * positions decided in the sweep before, until no more positions are decided. Captures lead into the tables of
+ * smaller materials, which are generated first.
+ * <p>
+ * The positions are split into ranges swept in parallel by a fork/join pool. The results only change from
+ * undecided to decided, so the sweeps may read positions decided concurrently.
+ * <p>
+ * Usage: {@code TablebaseGenerator <directory> <material>...}, e.g. {@code data/tablebase WHITE-QUEEN}
+ */
+public class TablebaseGenerator {
+    private static Logger log = LoggerFactory.getLogger(TablebaseGenerator.class);
+
+    // words of the sweep bit sets per task
+    private static final int RANGE = 1 << 8;
+    private static final int KINGS = Color.values().length;
+    private static final int DRAW = Tablebase.Value.DRAW.ordinal();
+    private static final int WIN = Tablebase.Value.WIN.ordinal();
+    private static final int LOSS = Tablebase.Value.LOSS.ordinal();
+    private static final int ILLEGAL = Tablebase.Value.ILLEGAL.ordinal();
+
+    private final ForkJoinPool pool;
+    // the generated tables, packed like the files
+    private final Map<Material, AtomicLongArray> tables = new HashMap<>();
+
+    public TablebaseGenerator(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator <directory> <material>...  e.g. data/tablebase WHITE-QUEEN");
+            System.exit(1);
+        }
+        var generator = new TablebaseGenerator(Runtime.getRuntime().availableProcessors());
+        for (int i = 1; i < args.length; i++) {
+            generator.generate(Material.parse(args[i]), Paths.get(args[0]));
+        }
+        generator.pool.shutdown();
+    }
+
+    /**
+     * generates the table of the material and of all smaller materials, which are not yet generated, and writes
+     * them to the directory as {@code <material>.tb}
+     */
+    public void generate(Material material, Path dir) {
+        if (tables.containsKey(material)) {
+            return;
+        }
+        if (Tablebase.bytes(material.size()) > Integer.MAX_VALUE - Tablebase.HEADER_BYTES
+                || material.getFigures().length > Tablebase.MAX_FIGURES) {
+            throw new IllegalArgumentException("zu viele Figuren für eine Endspieltabelle " + material);
+        }
+        for (int i = 0; i < material.getFigures().length; i++) {
+            generate(material.without(i), dir);
+        }
+        var start = System.nanoTime();
+        var table = new AtomicLongArray((int) (Tablebase.bytes(material.size()) / Long.BYTES));
+        tables.put(material, table);
+        // the positions to evaluate in the current and in the next sweep, one bit per position
+        var words = (int) ((material.size() + Long.SIZE - 1) / Long.SIZE);
+        var current = new AtomicLongArray(words);
+        for (int i = 0; i < words; i++) {
+            current.set(i, -1L);
+        }
+        var sweeps = 0;
+        long decided;
+        do {
+            var next = new AtomicLongArray(words);
+            decided = pool.invoke(new Sweep(material, table, current, next, 0, words));
+            current = next;
+            sweeps++;
+            log.info("Endgame {}: sweep {} decided {} positions", material, sweeps, decided);
+        } while (decided > 0);
+        log.info("Endgame {}: {} positions in {} sweeps, {} ms", material, material.size(), sweeps,
+                (System.nanoTime() - start) / 1_000_000);
+        write(material, table, dir.resolve(material + ".tb"));
+    }
+
+    private static void write(Material material, AtomicLongArray table, Path file) {
+        var figures = material.getFigures();
+        var header = ByteBuffer.allocate(Tablebase.HEADER_BYTES)
+                .putInt(Tablebase.MAGIC)
+                .putInt(Tablebase.VERSION)
+                .put((byte) material.getStrong().ordinal())
+                .put((byte) figures.length);
+        for (int i = 0; i < Tablebase.MAX_FIGURES; i++) {
+            header.put((byte) (i < figures.length ? figures[i].ordinal() : 0));
+        }
+        header.putLong(material.size()).putLong(0).flip();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(header);
+                var buffer = ByteBuffer.allocate(1 << 16);
+                for (int i = 0; i < table.length(); i++) {
+                    buffer.putLong(table.get(i));
+                    if (!buffer.hasRemaining() || i == table.length() - 1) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Schreiben der Endspieltabelle " + file, e);
+        }
+    }
+
+    private static int valueAt(AtomicLongArray table, long index) {
+        return Tablebase.value(table.get((int) (index / Tablebase.POSITIONS_PER_WORD)), index);
+    }
+
+    private static void setValueAt(AtomicLongArray table, long index, int value) {
+        var bits = (long) value << Tablebase.shift(index);
+        table.getAndAccumulate((int) (index / Tablebase.POSITIONS_PER_WORD), bits, (word, add) -> word | add);
+    }
+
+    /**
+     * sweeps the positions of a range of words of the bit set
+     */
+    private class Sweep extends RecursiveTask<Long> {
+        private final Material material;
+        private final AtomicLongArray table;
+        private final AtomicLongArray current;
+        private final AtomicLongArray next;
+        private final int from;
+        private final int to;
+
+        Sweep(Material material, AtomicLongArray table, AtomicLongArray current, AtomicLongArray next, int from,
+              int to) {
+            this.material = material;
+            this.table = table;
+            this.current = current;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > RANGE) {
+                var middle = (from + to) >>> 1;
+                var left = new Sweep(material, table, current, next, from, middle);
+                left.fork();
+                return new Sweep(material, table, current, next, middle, to).compute() + left.join();
+            }
+            var position = new Position(material, next);
+            var size = material.size();
+            var decided = 0L;
+            for (int w = from; w < to; w++) {
+                for (var bits = current.get(w); bits != 0; bits &= bits - 1) {
+                    var index = (long) w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    if (index >= size || valueAt(table, index) != DRAW) {
+                        continue;
+                    }
+                    var value = position.evaluate(index);
+                    if (value != DRAW) {
+                        setValueAt(table, index, value);
+                        if (value != ILLEGAL) {
+                            position.markPredecessors();
+                        }
+                        decided++;
+                    }
+                }
+            }
+            return decided;
+        }
+    }
+
+    /**
+     * a position of a material with its moves, reused for the positions of one range
+     */
+    private class Position {
+        private final Material material;
+        private final int strong;
+        private final int[] colors;
+        private final FigureType[] types;
+        private final Material[] without;
+        private final AtomicLongArray table;
+        private final AtomicLongArray[] withoutTables;
+        private final int[] squares;
+        private final int[] remaining;
+        private final byte[] occupant = new byte[Geometry.SQUARES];
+        private final int[] destinations = new int[128];
+        // the positions to evaluate in the next sweep
+        private final AtomicLongArray pending;
+        private int player;
+
+        Position(Material material, AtomicLongArray pending) {
+            this.material = material;
+            this.pending = pending;
+            this.strong = material.getStrong().ordinal();
+            var pieces = material.pieces();
+            var figures = material.getFigures();
+            colors = new int[pieces];
+            types = new FigureType[pieces];
+            without = new Material[pieces];
+            withoutTables = new AtomicLongArray[pieces];
+            table = tables.get(material);
+            for (int i = 0; i < pieces; i++) {
+                colors[i] = i < KINGS ? i : strong;
+                types[i] = i < KINGS ? FigureType.KING : figures[i - KINGS];
+                without[i] = i < KINGS ? null : material.without(i - KINGS);
+                withoutTables[i] = i < KINGS ? null : tables.get(without[i]);
+            }
+            squares = new int[pieces];
+            remaining = new int[Math.max(pieces - 1, 0)];
+        }
+
+        /**
+         * @return the value of the position, {@link #DRAW} if it is not decided yet
+         */
+        int evaluate(long index) {
+            player = material.decode(index, squares);
+            Arrays.fill(occupant, (byte) 0);
+            for (int i = 0; i < squares.length; i++) {
+                if (occupant[squares[i]] != 0) {
+                    return ILLEGAL;
+                }
+                occupant[squares[i]] = (byte) (colors[i] + 1);
+            }
+            if (isCheck((player + KINGS - 1) % KINGS)) {
+                return ILLEGAL;
+            }
+            var next = (player + 1) % KINGS;
+            var moves = 0;
+            var all = true;
+            for (int i = 0; i < squares.length; i++) {
+                if (colors[i] != player) {
+                    continue;
+                }
+                var source = squares[i];
+                var count = Geometry.destinations(types[i], source, occupant, destinations);
+                for (int d = 0; d < count; d++) {
+                    var destination = destinations[d];
+                    var victim = victim(destination);
+                    occupant[source] = 0;
+                    occupant[destination] = (byte) (player + 1);
+                    squares[i] = destination;
+                    if (victim >= 0) {
+                        squares[victim] = -1;
+                    }
+                    var value = isCheck(player) ? -1 : successor(victim, next);
+                    squares[i] = source;
+                    occupant[source] = (byte) (player + 1);
+                    if (victim >= 0) {
+                        squares[victim] = destination;
+                        occupant[destination] = (byte) (colors[victim] + 1);
+                    } else {
+                        occupant[destination] = 0;
+                    }
+                    if (value < 0) {
+                        continue;
+                    }
+                    moves++;
+                    // the strong player wants a win, its opponents want its loss
+                    if (player == strong ? value == WIN : value == LOSS) {
+                        return value;
+                    }
+                    all &= player == strong ? value == LOSS : value == WIN;
+                }
+            }
+            if (moves == 0) {
+                return player == strong ? LOSS : WIN;
+            }
+            return all ? (player == strong ? LOSS : WIN) : DRAW;
+        }
+
+        /**
+         * marks the positions, from which the last player may have moved into the evaluated position, for the next
+         * sweep
+         */
+        void markPredecessors() {
+            var last = (player + KINGS - 1) % KINGS;
+            for (int i = 0; i < squares.length; i++) {
+                if (colors[i] != last) {
+                    continue;
+                }
+                var destination = squares[i];
+                var count = Geometry.origins(types[i], destination, occupant, destinations);
+                for (int s = 0; s < count; s++) {
+                    squares[i] = destinations[s];
+                    var index = material.index(squares, last);
+                    pending.getAndAccumulate((int) (index / Long.SIZE), 1L << (index % Long.SIZE),
+                            (word, bit) -> word | bit);
+                }
+                squares[i] = destination;
+            }
+        }
+
+        private int successor(int victim, int next) {
+            if (victim < 0) {
+                return valueAt(table, material.index(squares, next));
+            }
+            if (victim < KINGS) {
+                return victim == strong ? LOSS : WIN;
+            }
+            for (int i = 0, j = 0; i < squares.length; i++) {
+                if (i != victim) {
+                    remaining[j++] = squares[i];
+                }
+            }
+            return valueAt(withoutTables[victim], without[victim].index(remaining, next));
+        }
+
+        private int victim(int square) {
+            if (occupant[square] == 0) {
+                return -1;
+            }
+            for (int i = 0; i < squares.length; i++) {
+                if (squares[i] == square) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isCheck(int color) {
+            var king = squares[color];
+            for (int i = 0; i < squares.length; i++) {
+                if (colors[i] != color && squares[i] >= 0 && Geometry.attacks(types[i], squares[i], king, occupant)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
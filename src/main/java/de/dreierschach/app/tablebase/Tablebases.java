@@ -0,0 +1,96 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The endgame tables found in a directory, see {@link TablebaseGenerator}
+ */
+@Component
+public class Tablebases {
+    private static Logger log = LoggerFactory.getLogger(Tablebases.class);
+
+    private static final Color[] COLORS = Color.values();
+
+    private final Map<Material, Tablebase> tables = new HashMap<>();
+
+    public Tablebases(@Value("${dreierschach.tablebase.dir:data/tablebase}") Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (var files = Files.newDirectoryStream(dir, "*.tb")) {
+            for (var file : files) {
+                var table = new Tablebase(file);
+                tables.put(table.getMaterial(), table);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Lesen der Endspieltabellen " + dir, e);
+        }
+        log.info("Loaded {} endgame tables from {}", tables.size(), dir);
+    }
+
+    /**
+     * @return the result of the position for the strong player of the table, empty if there is no table for it
+     */
+    public Optional<Result> probe(Board board) {
+        if (tables.isEmpty()) {
+            return Optional.empty();
+        }
+        var material = Material.of(board, COLORS[0]).orElse(null);
+        if (material == null) {
+            return Optional.empty();
+        }
+        var table = tables.get(material);
+        // the strong player of a position with the kings only is any player with a table
+        for (int i = 1; table == null && material.getFigures().length == 0 && i < COLORS.length; i++) {
+            table = tables.get(Material.of(COLORS[i]));
+        }
+        if (table == null) {
+            return Optional.empty();
+        }
+        var strong = table.getMaterial().getStrong();
+        return table.probe(board).map(value -> new Result(strong, value));
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        tables.values().forEach(Tablebase::close);
+    }
+
+    public static class Result {
+        private final Color strong;
+        private final Tablebase.Value value;
+
+        public Result(Color strong, Tablebase.Value value) {
+            this.strong = strong;
+            this.value = value;
+        }
+
+        public Color getStrong() {
+            return strong;
+        }
+
+        /**
+         * @return the result for the strong player
+         */
+        public Tablebase.Value getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.dreierschach.app.thumbnail;
+
+import de.dreierschach.app.game.GameRegistry;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The current position of a game as a thumbnail, for lists of games and links to them. The position changes with
+ * every move, so browsers ask again each time, with the hash of the position as etag.
+ */
+@RestController
+public class ThumbnailController {
+    private final GameRegistry games;
+    private final Thumbnails thumbnails;
+
+    public ThumbnailController(GameRegistry games, Thumbnails thumbnails) {
+        this.games = games;
+        this.thumbnails = thumbnails;
+    }
+
+    @GetMapping("/thumbnails/{game}.png")
+    public CompletableFuture<ResponseEntity<byte[]>> thumbnail(@PathVariable String game,
+                                                               @RequestParam(defaultValue = "256") int width,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                       required = false) String ifNoneMatch) {
+        if (width < Thumbnails.MIN_WIDTH || width > Thumbnails.MAX_WIDTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        var found = games.get(game);
+        if (found.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        var snapshot = found.get().snapshot();
+        var etag = "\"" + Long.toHexString(snapshot.getHash()) + "-" + width + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+        }
+        return thumbnails.get(snapshot, width)
+                .thenApply(png -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(etag)
+                        .contentType(MediaType.IMAGE_PNG)
+                        .body(png))
+                .exceptionally(e -> ResponseEntity.status(e.getCause() instanceof IllegalStateException
+                        ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+}
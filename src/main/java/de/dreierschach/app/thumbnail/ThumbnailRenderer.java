@@ -0,0 +1,115 @@
+package de.dreierschach.app.thumbnail;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Draws positions as small PNG images, without a browser, with the squares laid out as on the board of the view.
+ * The figures are drawn as discs in the color of their player with the letter of their type, the king in check
+ * with a red ring: the images of the view are SVGs, which the JDK can not rasterize.
+ */
+public class ThumbnailRenderer {
+    private static final java.awt.Color[] COLORS_BG = {
+            new java.awt.Color(0x614f32), new java.awt.Color(0xf0f0e0), new java.awt.Color(0xb99f77)};
+    // fill, outline and letter of the figures of each player
+    private static final java.awt.Color[][] COLORS_FIGURE = {
+            {new java.awt.Color(0xf8f8f8), new java.awt.Color(0x202020), new java.awt.Color(0x202020)},
+            {new java.awt.Color(0x8b5a2b), new java.awt.Color(0x3b2410), new java.awt.Color(0xf8f8f8)},
+            {new java.awt.Color(0x202020), new java.awt.Color(0x000000), new java.awt.Color(0xf8f8f8)}};
+    private static final java.awt.Color COLOR_CHECK = new java.awt.Color(0xd02020);
+    // König, Dame, Läufer, Springer, Turm, Bauer
+    private static final String[] LETTERS = {"K", "D", "L", "S", "T", "B"};
+
+    /**
+     * @param width the width of the image, the height follows from the board
+     * @return the image as PNG
+     */
+    public byte[] render(Function<Pos, Figure> position, Set<Color> check, int width) {
+        var tileWidth = width / 13.0;
+        var tileHeight = tileWidth / Math.sqrt(3) * 2;
+        var image = new BufferedImage(width, (int) Math.ceil(tileHeight * 10), BufferedImage.TYPE_INT_ARGB);
+        var g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(1, (int) (tileWidth * 0.4))));
+            g.setStroke(new BasicStroke((float) Math.max(1, tileWidth * 0.06)));
+            for (int i = 0; i < Pos.SQUARES; i++) {
+                var pos = Pos.square(i);
+                var figure = position.apply(pos);
+                drawTile(g, pos, tileWidth, tileHeight);
+                if (figure != Figure.NONE) {
+                    drawFigure(g, pos, figure, check.contains(figure.getColor()), tileWidth, tileHeight);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        var out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Erzeugen des Bildes", e);
+        }
+        return out.toByteArray();
+    }
+
+    private void drawTile(Graphics2D g, Pos pos, double tileWidth, double tileHeight) {
+        var px = x(pos, tileWidth);
+        var py = y(pos, tileHeight);
+        var hex = new Path2D.Double();
+        hex.moveTo(px + tileWidth / 2, py);
+        hex.lineTo(px + tileWidth, py + tileHeight * .25);
+        hex.lineTo(px + tileWidth, py + tileHeight * .75);
+        hex.lineTo(px + tileWidth / 2, py + tileHeight);
+        hex.lineTo(px, py + tileHeight * .75);
+        hex.lineTo(px, py + tileHeight * .25);
+        hex.closePath();
+        g.setColor(COLORS_BG[(pos.x() + pos.y()) % 3]);
+        g.fill(hex);
+    }
+
+    private void drawFigure(Graphics2D g, Pos pos, Figure figure, boolean check, double tileWidth,
+                            double tileHeight) {
+        var colors = COLORS_FIGURE[figure.getColor().ordinal()];
+        var radius = tileWidth * 0.33;
+        var cx = x(pos, tileWidth) + tileWidth / 2;
+        var cy = y(pos, tileHeight) + tileHeight / 2;
+        var disc = new Ellipse2D.Double(cx - radius, cy - radius, 2 * radius, 2 * radius);
+        g.setColor(colors[0]);
+        g.fill(disc);
+        g.setColor(check && figure.getType() == FigureType.KING ? COLOR_CHECK : colors[1]);
+        g.draw(disc);
+        var letter = LETTERS[figure.getType().ordinal()];
+        var metrics = g.getFontMetrics();
+        g.setColor(colors[2]);
+        g.drawString(letter, (float) (cx - metrics.stringWidth(letter) / 2.0),
+                (float) (cy + (metrics.getAscent() - metrics.getDescent()) / 2.0));
+    }
+
+    /**
+     * @see de.dreierschach.app.views.dreierschach.DreierschachView the position of the squares on the board
+     */
+    private static double x(Pos pos, double tileWidth) {
+        return pos.x() * tileWidth + (5 - pos.y()) * tileWidth / 2;
+    }
+
+    private static double y(Pos pos, double tileHeight) {
+        return (12 - pos.y()) * tileHeight * 0.75;
+    }
+}
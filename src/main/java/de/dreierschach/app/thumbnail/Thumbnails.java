@@ -0,0 +1,257 @@
+package de.dreierschach.app.thumbnail;
+
+import de.dreierschach.app.model.BoardSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thumbnails of positions, cached by the hash of the position and the width. The most recently used thumbnails
+ * are kept in memory up to a number of bytes, the ones pushed out are written to a directory, if one is
+ * configured, and read from there before they are drawn again.
+ * <p>
+ * Thumbnails are drawn and read from disk by a few threads with a bounded queue, so a burst of requests does not
+ * slow down the games. Requests beyond the queue fail at once, requests for a thumbnail already being drawn
+ * wait for it.
+ */
+@Component
+public class Thumbnails {
+    private static Logger log = LoggerFactory.getLogger(Thumbnails.class);
+
+    public static final int MIN_WIDTH = 64;
+    public static final int MAX_WIDTH = 1024;
+
+    private static final Counter MEMORY = counter("memory");
+    private static final Counter DISK = counter("disk");
+    private static final Counter RENDERED = counter("rendered");
+    private static final Counter REJECTED = counter("rejected");
+
+    private final ThumbnailRenderer renderer = new ThumbnailRenderer();
+    private final long capacity;
+    private final Path dir;
+    private final long diskCapacity;
+    // in the order of their last use, guarded by itself
+    private final LinkedHashMap<Key, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private final AtomicLong diskSize = new AtomicLong();
+    private final Map<Key, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param capacity     the bytes of the thumbnails kept in memory
+     * @param dir          the directory for the thumbnails pushed out of memory, none if empty
+     * @param diskCapacity the bytes of the thumbnails kept in the directory, no more are written beyond it
+     * @param threads      the number of thumbnails drawn at the same time
+     * @param queue        the number of thumbnails waiting to be drawn
+     */
+    public Thumbnails(@Value("${dreierschach.thumbnails.cache-size:16777216}") long capacity,
+                      @Value("${dreierschach.thumbnails.dir:}") String dir,
+                      @Value("${dreierschach.thumbnails.disk-size:268435456}") long diskCapacity,
+                      @Value("${dreierschach.thumbnails.threads:2}") int threads,
+                      @Value("${dreierschach.thumbnails.queue:64}") int queue) {
+        this.capacity = capacity;
+        this.diskCapacity = diskCapacity;
+        this.dir = dir.isBlank() ? null : Path.of(dir);
+        if (this.dir != null) {
+            clear(this.dir);
+        }
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+            var thread = new Thread(runnable, "thumbnails");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("dreierschach.thumbnails.size", this, Thumbnails::getSize)
+                .description("Bytes of the thumbnails in memory")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("dreierschach.thumbnails.disk", diskSize, AtomicLong::get)
+                .description("Bytes of the thumbnails on disk")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @param width between {@link #MIN_WIDTH} and {@link #MAX_WIDTH}
+     * @return completes with the position as PNG, or exceptionally with an {@link IllegalStateException} if too
+     * many thumbnails are waiting to be drawn
+     * @throws IllegalArgumentException if the width is out of range
+     */
+    public CompletableFuture<byte[]> get(BoardSnapshot snapshot, int width) {
+        if (width < MIN_WIDTH || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("ungültige Breite " + width);
+        }
+        var key = new Key(snapshot.getHash(), width);
+        byte[] cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            MEMORY.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        var result = new CompletableFuture<byte[]>();
+        var running = loading.putIfAbsent(key, result);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    var thumbnail = load(key, snapshot);
+                    put(key, thumbnail);
+                    result.complete(thumbnail);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    loading.remove(key, result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            loading.remove(key, result);
+            result.completeExceptionally(new IllegalStateException("zu viele Bilder in Arbeit", e));
+        }
+        return result;
+    }
+
+    /**
+     * @return the bytes of the thumbnails in memory
+     */
+    public long getSize() {
+        synchronized (cache) {
+            return size;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private byte[] load(Key key, BoardSnapshot snapshot) {
+        if (dir != null) {
+            var file = file(key);
+            try {
+                if (Files.exists(file)) {
+                    var thumbnail = Files.readAllBytes(file);
+                    Files.delete(file);
+                    diskSize.addAndGet(-thumbnail.length);
+                    DISK.increment();
+                    return thumbnail;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Fehler beim Lesen des Bildes " + file, e);
+            }
+        }
+        RENDERED.increment();
+        return renderer.render(snapshot::get, snapshot.getCheck(), key.width);
+    }
+
+    /**
+     * adds the thumbnail and pushes the least recently used ones out of memory, to disk if there is room
+     */
+    private void put(Key key, byte[] thumbnail) {
+        List<Map.Entry<Key, byte[]>> evicted = new ArrayList<>();
+        synchronized (cache) {
+            var previous = cache.put(key, thumbnail);
+            size += thumbnail.length - (previous == null ? 0 : previous.length);
+            var iterator = cache.entrySet().iterator();
+            while (size > capacity && iterator.hasNext()) {
+                var eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    break;
+                }
+                iterator.remove();
+                size -= eldest.getValue().length;
+                evicted.add(eldest);
+            }
+        }
+        if (dir != null) {
+            for (var entry : evicted) {
+                spill(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void spill(Key key, byte[] thumbnail) {
+        var file = file(key);
+        if (diskSize.addAndGet(thumbnail.length) > diskCapacity || Files.exists(file)) {
+            diskSize.addAndGet(-thumbnail.length);
+            return;
+        }
+        try {
+            Files.write(file, thumbnail);
+        } catch (IOException e) {
+            // the thumbnail is drawn again when it is needed
+            diskSize.addAndGet(-thumbnail.length);
+            log.warn("Thumbnail {} not written", file, e);
+        }
+    }
+
+    private Path file(Key key) {
+        return dir.resolve(Long.toHexString(key.hash) + "-" + key.width + ".png");
+    }
+
+    /**
+     * removes the thumbnails of the last run, they may have been drawn differently
+     */
+    private static void clear(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            try (var files = Files.newDirectoryStream(dir, "*.png")) {
+                for (var file : files) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Leeren des Verzeichnisses " + dir, e);
+        }
+    }
+
+    private static Counter counter(String result) {
+        return Counter.builder("dreierschach.thumbnails.requests").tag("result", result)
+                .description("Thumbnails requested, by where they came from")
+                .register(Metrics.globalRegistry);
+    }
+
+    private static class Key {
+        private final long hash;
+        private final int width;
+
+        Key(long hash, int width) {
+            this.hash = hash;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && hash == key.hash && width == key.width;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + width;
+        }
+    }
+}
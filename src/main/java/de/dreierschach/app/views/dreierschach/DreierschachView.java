@@ -1,81 +1,187 @@
 package de.dreierschach.app.views.dreierschach;
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Key;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.Unit;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.html.NativeLabel;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.dom.DisabledUpdateMode;
 import com.vaadin.flow.dom.DomEvent;
+import com.vaadin.flow.dom.Element;
+import com.vaadin.flow.router.BeforeEvent;
+import com.vaadin.flow.router.HasUrlParameter;
+import com.vaadin.flow.router.NotFoundException;
+import com.vaadin.flow.router.OptionalParameter;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
+import com.vaadin.flow.server.Command;
 import de.dreierschach.app.BoardExporter;
+import de.dreierschach.app.ai.Analyzer;
+import de.dreierschach.app.ai.ComputerPlayer;
+import de.dreierschach.app.clock.GameClocks;
 import de.dreierschach.app.engine.DreierschachEngine;
+import de.dreierschach.app.engine.MaxNSearch;
+import de.dreierschach.app.game.Game;
+import de.dreierschach.app.game.GameRegistry;
 import de.dreierschach.app.model.*;
+import de.dreierschach.app.persistence.GameArchive;
+import de.dreierschach.app.persistence.GameJournal;
 import de.dreierschach.app.views.MainLayout;
+import elemental.json.Json;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.vaadin.pekkam.Canvas;
 import org.vaadin.pekkam.CanvasRenderingContext2D;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
 @PageTitle("Dreierschach")
+@JsModule("./dreierschach-board.js")
 @Route(value = "main", layout = MainLayout.class)
 @RouteAlias(value = "", layout = MainLayout.class)
-public class DreierschachView extends HorizontalLayout {
+public class DreierschachView extends HorizontalLayout implements HasUrlParameter<String> {
 
     private static final String[] COLORS_BG = {"#614f32", "#f0f0e0", "#b99f77"};
+    private static final int ANALYSIS_LINES = 3;
+    private static final Duration ANALYSIS_INTERVAL = Duration.ofMillis(300);
+    private static final FigureType[] PROMOTIONS = {FigureType.QUEEN, FigureType.ROOK, FigureType.BISHOP,
+            FigureType.KNIGHT};
 
     private final BoardExporter boardExporter;
+    private final GameArchive gameArchive;
+    private final GameJournal gameJournal;
+    private final ComputerPlayer computerPlayer;
+    private final GameClocks gameClocks;
+    private final Analyzer analyzer;
+    private final PieceSprites pieceSprites;
     private Canvas canvas;
 
     private final HorizontalLayout content;
     private final TextArea protocol;
+    private final TextArea analysisLines;
     private final NativeLabel player;
+    private final NativeLabel[] clocks = new NativeLabel[Color.values().length];
+    // the texts of the clocks last sent to the browser, written by the ticks only
+    private final String[] clockTexts = new String[Color.values().length];
+    private Runnable removeTick;
+    private Runnable removeSnapshotListener;
+    // removes the listeners of the board of the game, set and run in the mailbox of the game only, a new one for
+    // every game the view shows
+    private AtomicReference<Runnable> removeBoardListeners;
     private final HorizontalLayout check;
     private final Button zoomInButton;
     private final Button zoomOutButton;
     private final Button exportButton;
+    private final Button newGameButton;
+    private final Button computerButton;
+    private final Button undoButton;
+    private final Button analyzeButton;
+    private final IntegerField historyField;
 
     private double width = 1024;
     private int height;
     private double tileWidth;
     private double tileHeight;
 
-    private final Board board;
-
-    private final DreierschachEngine engine;
-
-    private Pos from = null;
-
-    public DreierschachView(DreierschachEngine engine, BoardExporter boardExporter) {
-        this.engine = engine;
+    private final HistoryNavigator history;
+
+    private final GameRegistry games;
+    // the game of the table in the url, the main game without one
+    private Game game;
+    // the UI the view is attached to, the events of the board are passed to it
+    private volatile UI ui;
+
+    // the legal moves of the game sent to the browser, which selects the moves, see #legalMoves(DreierschachEngine)
+    private int[] legalMoves = new int[0];
+    private boolean browsing = false;
+    // read by the listeners of the board as well
+    private volatile Analyzer.Analysis analysis;
+    // counts the started analyses, so lines of a replaced analysis still on their way are not shown
+    private int analysisGeneration;
+
+    public DreierschachView(GameRegistry games, BoardExporter boardExporter, GameArchive gameArchive,
+                            GameJournal gameJournal, ComputerPlayer computerPlayer, GameClocks gameClocks,
+                            Analyzer analyzer, PieceSprites pieceSprites) {
+        this.games = games;
+        this.game = games.main();
+        this.computerPlayer = computerPlayer;
+        this.gameClocks = gameClocks;
+        this.analyzer = analyzer;
+        this.pieceSprites = pieceSprites;
         this.boardExporter = boardExporter;
-        board = this.engine.board();
+        this.gameArchive = gameArchive;
+        this.gameJournal = gameJournal;
+        history = new HistoryNavigator(() -> game.snapshot(), 10);
 
         setMargin(true);
 
         content = new HorizontalLayout();
         updateContent(1000);
 
-        board.addFieldChangeListener(e -> drawFigure(e.getNewValue(), e.getPos().x(), e.getPos().y(), false));
-        board.addMoveListener(this::addProtocol);
-        board.addCheckListener(this::onCheckChanged);
-        board.addPlayerChangeListener(this::onPlayerChanged);
+        history.board().addFieldChangeListener(e -> {
+            if (browsing) {
+                drawFigure(e.getNewValue(), e.getPos().x(), e.getPos().y());
+            }
+        });
 
         protocol = new TextArea();
         protocol.setReadOnly(true);
         protocol.setWidth(30, Unit.EM);
         protocol.setHeight(100, Unit.PERCENTAGE);
 
+        analysisLines = new TextArea();
+        analysisLines.setReadOnly(true);
+        analysisLines.setWidth(30, Unit.EM);
+        analysisLines.setVisible(false);
+
         player = new NativeLabel();
         check = new HorizontalLayout();
 
-        var state = new HorizontalLayout(new VerticalLayout(player), check);
+        var clockPanel = new VerticalLayout();
+        clockPanel.setPadding(false);
+        clockPanel.setSpacing(false);
+        for (var color : Color.values()) {
+            clocks[color.ordinal()] = new NativeLabel();
+            clocks[color.ordinal()].setClassName(color.name().toLowerCase());
+            clockPanel.add(clocks[color.ordinal()]);
+        }
+        var state = new HorizontalLayout(new VerticalLayout(player, clockPanel), check);
+
+        historyField = new IntegerField();
+        historyField.setMin(0);
+        historyField.setValue(0);
+        historyField.setWidth(6, Unit.EM);
+        historyField.addValueChangeListener(event -> {
+            if (event.isFromClient() && event.getValue() != null) {
+                showHistory(event.getValue());
+            }
+        });
+        var historyPanel = new HorizontalLayout(
+                historyButton(VaadinIcon.ANGLE_DOUBLE_LEFT, () -> 0),
+                historyButton(VaadinIcon.ANGLE_LEFT, () -> history.ply() - 1),
+                historyField,
+                historyButton(VaadinIcon.ANGLE_RIGHT, () -> history.ply() + 1),
+                historyButton(VaadinIcon.ANGLE_DOUBLE_RIGHT, () -> game.snapshot().getMoveCount()));
+        historyPanel.setAlignItems(Alignment.CENTER);
 
         zoomInButton = new Button(VaadinIcon.PLUS.create());
         zoomInButton.addClickShortcut(Key.KEY_Q);
@@ -86,8 +192,44 @@ public class DreierschachView extends HorizontalLayout {
         zoomOutButton.getElement().setProperty("title", "[a]");
         zoomOutButton.getStyle().set("--lumo-button-size", "var(--lumo-size-xs)");
         exportButton = new Button("Export");
-        exportButton.addClickListener(event -> System.out.println(boardExporter.toJson(board)));
-        var zoomPanel = new VerticalLayout(zoomInButton, zoomOutButton, exportButton);
+        exportButton.addClickListener(event -> System.out.println(boardExporter.toJson(game.snapshot())));
+        newGameButton = new Button("New");
+        newGameButton.addClickListener(event -> {
+            browsing = false;
+            protocol.clear();
+            historyField.setValue(0);
+            game.execute(engine -> {
+                if (engine.board().getMoveCount() > 0) {
+                    archive(engine);
+                    gameJournal.discard(engine.board().getId());
+                }
+                engine.startGame();
+            });
+        });
+        computerButton = new Button("Computer");
+        computerButton.addClickListener(event -> {
+            if (!browsing) {
+                game.reply(computerPlayer::chooseMove);
+            }
+        });
+        undoButton = new Button("Undo");
+        undoButton.addClickListener(event -> {
+            if (!browsing) {
+                game.submit(DreierschachEngine::undoLastMove);
+            }
+        });
+        analyzeButton = new Button("Analyze");
+        analyzeButton.addClickListener(event -> {
+            if (analysis == null) {
+                analysisLines.setVisible(true);
+                startAnalysis(shownPosition());
+            } else {
+                stopAnalysis();
+                analysisLines.setVisible(false);
+            }
+        });
+        var zoomPanel = new VerticalLayout(zoomInButton, zoomOutButton, exportButton, newGameButton, computerButton,
+                undoButton, analyzeButton);
         zoomPanel.setSizeUndefined();
         zoomInButton.addClickListener(event -> {
             if (this.width <= 2500) {
@@ -102,13 +244,301 @@ public class DreierschachView extends HorizontalLayout {
 
         var right = new VerticalLayout();
         right.setHeight(100, Unit.PERCENTAGE);
-        right.add(state);
+        right.add(state, historyPanel, analysisLines);
         right.addAndExpand(protocol);
         setWidth(100, Unit.PERCENTAGE);
         add(zoomPanel);
         add(content);
         add(right);
-        engine.startGame();
+    }
+
+    /**
+     * shows the running game, e.g. after it has been recovered from the journal, the changes after it are passed
+     * by the listeners of the board
+     *
+     * @param draw the reason the game is drawn or null
+     */
+    private void showGame(Board position, String draw) {
+        onPlayerChanged(new Board.PlayerChangeEvent(null, position.getPlayer()));
+        onDraw(draw);
+        onCheckChanged(new Board.CheckEvent(Set.of(), position.getCheck()));
+        initProtocol(position);
+        historyField.setValue(position.getMoveCount());
+        drawBoard(position::get);
+    }
+
+    /**
+     * @return the reason the game is drawn or null, if it is not drawn
+     */
+    private static String drawText(PositionHistory positions) {
+        if (positions.isRepetition()) {
+            return "Draw by threefold repetition.";
+        }
+        if (positions.isNoProgress()) {
+            return "Draw, " + PositionHistory.NO_PROGRESS_PLIES + " plies without capture or pawn move.";
+        }
+        return null;
+    }
+
+    /**
+     * @return the position shown, the one of the game or the one selected in the history, it must not be changed
+     */
+    private Board shownPosition() {
+        return browsing ? history.board() : game.snapshot().toBoard();
+    }
+
+    /**
+     * runs the command in the UI the view is attached to, it is dropped if the view is not attached
+     */
+    private void access(Command command) {
+        var ui = this.ui;
+        if (ui != null) {
+            try {
+                ui.access(command);
+            } catch (UIDetachedException e) {
+                // the view has been closed in the meantime
+            }
+        }
+    }
+
+    /**
+     * shows the game of the table in the url, {@code main/<table>}, or the main game without one
+     */
+    @Override
+    public void setParameter(BeforeEvent event, @OptionalParameter String table) {
+        Game next;
+        try {
+            next = table == null ? games.main() : games.table(table);
+        } catch (IllegalArgumentException e) {
+            event.rerouteToError(NotFoundException.class);
+            return;
+        } catch (IllegalStateException e) {
+            event.rerouteToError(e, "Too many tables, try again later");
+            return;
+        }
+        if (next == game) {
+            return;
+        }
+        if (ui == null) {
+            game = next;
+            return;
+        }
+        // the view is kept when the browser moves from one table to another
+        leave();
+        game = next;
+        join();
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        ui = attachEvent.getUI();
+        join();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        leave();
+        ui = null;
+        super.onDetach(detachEvent);
+    }
+
+    /**
+     * shows the game and follows its changes
+     */
+    private void join() {
+        var game = this.game;
+        var removeBoardListeners = new AtomicReference<Runnable>();
+        this.removeBoardListeners = removeBoardListeners;
+        // the listeners are added in the mailbox together with reading the position they start from
+        game.submit(engine -> {
+            var board = engine.board();
+            var clock = engine.clock();
+            if (clock == null) {
+                engine.withClock(gameClocks.newClock());
+            }
+            if (board.getPlayer() == null) {
+                engine.startGame();
+            } else if (clock == null) {
+                engine.clock().start(board.getPlayer());
+            }
+            Consumer<Board.FieldChangeEvent> fieldListener = e -> access(() -> {
+                if (!browsing) {
+                    drawFigure(e.getNewValue(), e.getPos().x(), e.getPos().y());
+                }
+            });
+            Consumer<Board.MoveEvent> moveListener = e -> {
+                if (e.isUndoLastMove()) {
+                    access(() -> removeProtocol(e));
+                    return;
+                }
+                var notation = board.getLastMoveAsString();
+                var draw = drawText(engine.positions());
+                access(() -> {
+                    addProtocol(e, notation);
+                    onDraw(draw);
+                });
+            };
+            Consumer<Board.CheckEvent> checkListener = e -> access(() -> onCheckChanged(e));
+            Consumer<Board.PlayerChangeEvent> playerListener = e -> access(() -> onPlayerChanged(e));
+            board.addFieldChangeListener(fieldListener);
+            board.addMoveListener(moveListener);
+            board.addCheckListener(checkListener);
+            board.addPlayerChangeListener(playerListener);
+            removeBoardListeners.set(() -> board.removeFieldChangeListener(fieldListener)
+                    .removeMoveListener(moveListener)
+                    .removeCheckListener(checkListener)
+                    .removePlayerChangeListener(playerListener));
+            return Pair.of(Board.copyOf(board), drawText(engine.positions()));
+        }).thenAccept(start -> access(() -> showGame(start.getLeft(), start.getRight())));
+        removeSnapshotListener = game.onSnapshot(snapshot -> {
+            // queued behind the command that changed the position, no waiting in the mailbox
+            game.submit(DreierschachView::legalMoves).thenAccept(moves -> access(() -> showLegalMoves(moves)));
+            if (analysis != null) {
+                access(() -> analyzeGame(snapshot));
+            }
+        });
+        game.submit(DreierschachView::legalMoves).thenAccept(moves -> access(() -> showLegalMoves(moves)));
+        // the texts are computed in the mailbox of the game, the session is only locked if one has changed. The
+        // turn of a player whose time has run out is passed, which publishes the position to the next player
+        removeTick = gameClocks.onTick(() -> game.submit(engine -> {
+            engine.passFlaggedPlayer();
+            return clockTexts(engine.clock());
+        }).thenAccept(texts -> {
+            for (int i = 0; i < texts.length; i++) {
+                if (!texts[i].equals(clockTexts[i])) {
+                    System.arraycopy(texts, 0, clockTexts, 0, texts.length);
+                    access(() -> {
+                        for (int j = 0; j < texts.length; j++) {
+                            clocks[j].setText(texts[j]);
+                        }
+                    });
+                    return;
+                }
+            }
+        }));
+    }
+
+    /**
+     * stops following the changes of the game, so it can be paged out once nobody watches it
+     */
+    private void leave() {
+        stopAnalysis();
+        if (removeTick != null) {
+            removeTick.run();
+            removeTick = null;
+        }
+        removeSnapshotListener.run();
+        var removeBoardListeners = this.removeBoardListeners;
+        game.execute(engine -> {
+            var remove = removeBoardListeners.getAndSet(null);
+            if (remove != null) {
+                remove.run();
+            }
+        });
+    }
+
+    /**
+     * analyzes the position and replaces a running analysis
+     */
+    private void startAnalysis(Board position) {
+        stopAnalysis();
+        var ui = UI.getCurrent();
+        var generation = ++analysisGeneration;
+        analysisLines.setValue("");
+        try {
+            analysis = analyzer.analyze(position, ANALYSIS_LINES, ANALYSIS_INTERVAL, iteration -> {
+                var text = analysisText(position, iteration);
+                ui.access(() -> {
+                    if (generation == analysisGeneration) {
+                        analysisLines.setValue(text);
+                    }
+                });
+            });
+        } catch (IllegalStateException e) {
+            // the analysis is stopped, the button starts it again
+            analysisLines.setValue("Too many analyses running, try again later");
+        }
+    }
+
+    private void stopAnalysis() {
+        if (analysis != null) {
+            analysis.cancel();
+            analysis = null;
+            analysisGeneration++;
+        }
+    }
+
+    /**
+     * @param board a board to write the moves with, the position analyzed may have been changed already
+     */
+    private static String analysisText(Board board, MaxNSearch.Iteration iteration) {
+        var result = new StringBuilder("depth " + iteration.getDepth() + ", " + iteration.getNodes() + " nodes");
+        for (var line : iteration.getLines()) {
+            result.append("\n");
+            for (var color : Color.values()) {
+                result.append(String.format("%+d ", line.getScore()[color.ordinal()]));
+            }
+            result.append(":");
+            line.getMoves().forEach(move -> result.append(" ").append(board.toNotation(move)));
+        }
+        return result.toString();
+    }
+
+    private static String[] clockTexts(GameClock clock) {
+        var colors = Color.values();
+        var result = new String[colors.length];
+        var running = clock.getRunning().orElse(null);
+        var flagged = clock.getFlagged();
+        for (var color : colors) {
+            var remaining = clock.remaining(color);
+            result[color.ordinal()] = (color == running ? "\u25B6 " : "") + color.name() + " "
+                    + format(remaining) + (flagged.contains(color) ? " - time is up" : "");
+        }
+        return result;
+    }
+
+    private static String format(Duration duration) {
+        return duration.toHours() > 0
+                ? String.format("%d:%02d:%02d", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart())
+                : String.format("%d:%02d", duration.toMinutes(), duration.toSecondsPart());
+    }
+
+    private Button historyButton(VaadinIcon icon, IntSupplier ply) {
+        var button = new Button(icon.create(), event -> showHistory(ply.getAsInt()));
+        button.getStyle().set("--lumo-button-size", "var(--lumo-size-xs)");
+        return button;
+    }
+
+    /**
+     * shows the position after the given number of moves, moves can only be made at the latest position
+     *
+     * @param ply the number of moves
+     */
+    private void showHistory(int ply) {
+        var snapshot = game.snapshot();
+        if (ply >= snapshot.getMoveCount()) {
+            if (browsing) {
+                browsing = false;
+                drawBoard(snapshot::get);
+                showLegalMoves(legalMoves);
+                if (analysis != null) {
+                    startAnalysis(shownPosition());
+                }
+            }
+            historyField.setValue(snapshot.getMoveCount());
+            return;
+        }
+        history.seek(ply);
+        if (!browsing) {
+            browsing = true;
+            history.board().refresh();
+            showLegalMoves(legalMoves);
+        }
+        historyField.setValue(history.ply());
+        if (analysis != null) {
+            startAnalysis(shownPosition());
+        }
     }
 
     private void updateContent(double width) {
@@ -124,39 +554,127 @@ public class DreierschachView extends HorizontalLayout {
         this.height = (int) height;
 
         canvas = new Canvas((int) width, this.height);
-        canvas.getElement().addEventListener("click", this::onDomEvent).addEventData("event.offsetX")
-                .addEventData("event.offsetY").setDisabledUpdateMode(DisabledUpdateMode.ALWAYS);
+        canvas.getElement().addEventListener("board-move", this::onMove)
+                .addEventData("event.detail.fromX").addEventData("event.detail.fromY")
+                .addEventData("event.detail.toX").addEventData("event.detail.toY")
+                .setDisabledUpdateMode(DisabledUpdateMode.ALWAYS);
         canvas.setSizeUndefined();
-        content.add(canvas);
-        board.refresh();
-        if (from != null) {
-            drawFigure(board.get(from), from.x(), from.y(), true);
+        // the browser marks the selection on a canvas of its own, clicks pass through it to the board
+        var overlay = new Element("canvas");
+        overlay.setAttribute("width", String.valueOf((int) width));
+        overlay.setAttribute("height", String.valueOf(this.height));
+        overlay.getStyle().set("position", "absolute").set("left", "0").set("top", "0")
+                .set("pointer-events", "none");
+        var layers = new Div(canvas);
+        layers.getElement().appendChild(overlay);
+        layers.getStyle().set("position", "relative");
+        content.add(layers);
+        canvas.getElement().executeJs("window.dreierschachBoard.init(this, $0, $1, $2, $3, $4, $5)", overlay,
+                tileWidth, tileHeight, pieceSprites.getUrl(), PieceSprites.ROWS, PieceSprites.COLUMNS);
+        if (browsing) {
+            history.board().refresh();
+        } else {
+            drawBoard(game.snapshot()::get);
         }
+        showLegalMoves(legalMoves);
+    }
 
+    /**
+     * archives the game if it has a result, a drawn game or a game the player to move has lost. Games given up
+     * unfinished are not archived, the opening book and the self play learn from finished games only.
+     */
+    private void archive(DreierschachEngine engine) {
+        var board = engine.board();
+        if (engine.positions().isDraw()) {
+            gameArchive.archive(board, null);
+        } else if (engine.legalMoves().size() == 0) {
+            var colors = Color.values();
+            gameArchive.archive(board, colors[(board.getPlayer().ordinal() + colors.length - 1) % colors.length]);
+        }
     }
 
-    private void onDomEvent(DomEvent event) {
-        var offsetX = (int) event.getEventData().getNumber("event.offsetX");
-        var offsetY = (int) event.getEventData().getNumber("event.offsetY");
-        int y = 12 - (int) ((offsetY - tileHeight * 0.125) / (tileHeight * 0.75));
-        int x = (int) ((offsetX + (y - 5) * tileWidth / 2) / tileWidth);
-        var pos = Pos.of(x, y);
-        if (pos.isValid()) {
-            if (from == null) {
-                if (board.get(pos) != Figure.NONE && board.get(pos).getColor() == board.getPlayer()) {
-                    drawFigure(board.get(pos), pos.x(), pos.y(), true);
-                    from = pos;
-                }
-                return;
+    /**
+     * plays a move selected in the browser, the position may have changed since it has been sent. A pawn reaching
+     * the last row is promoted to the figure the player chooses.
+     */
+    private void onMove(DomEvent event) {
+        var data = event.getEventData();
+        var source = Pos.of((int) data.getNumber("event.detail.fromX"), (int) data.getNumber("event.detail.fromY"));
+        var destination = Pos.of((int) data.getNumber("event.detail.toX"), (int) data.getNumber("event.detail.toY"));
+        if (browsing) {
+            return;
+        }
+        var figure = game.snapshot().get(source);
+        if (figure.getType() == FigureType.PAWN && destination.isPromotion(figure.getColor())) {
+            choosePromotion(figure.getColor(), promotion -> game.move(source, destination, promotion));
+        } else {
+            game.move(source, destination, null);
+        }
+    }
+
+    /**
+     * asks the player for the figure a pawn is promoted to, the move is not played if the dialog is closed
+     */
+    private void choosePromotion(Color color, Consumer<FigureType> choice) {
+        var dialog = new Dialog();
+        dialog.setHeaderTitle("Promote to");
+        var figures = new HorizontalLayout();
+        for (var type : PROMOTIONS) {
+            var name = StringUtils.capitalize(type.name().toLowerCase());
+            var image = new Image(getImage(Figure.of(color, type)), name);
+            image.setHeight(3, Unit.EM);
+            var button = new Button(image, event -> {
+                dialog.close();
+                choice.accept(type);
+            });
+            button.getElement().setProperty("title", name);
+            button.setHeight(4, Unit.EM);
+            figures.add(button);
+        }
+        dialog.add(figures);
+        dialog.open();
+    }
+
+    /**
+     * @return the legal moves of the player to move, five numbers per move: x and y of the source and of the
+     * destination and 1 for a capture, no moves once the game is drawn
+     */
+    private static int[] legalMoves(DreierschachEngine engine) {
+        if (engine.positions().isDraw()) {
+            return new int[0];
+        }
+        var board = engine.board();
+        var legalMoves = engine.legalMoves();
+        var result = new int[5 * legalMoves.size()];
+        var i = 0;
+        for (int square = 0; square < Pos.SQUARES; square++) {
+            var source = Pos.square(square);
+            for (var destination : legalMoves.destinations(source)) {
+                result[i++] = source.x();
+                result[i++] = source.y();
+                result[i++] = destination.x();
+                result[i++] = destination.y();
+                result[i++] = board.get(destination) == Figure.NONE ? 0 : 1;
             }
-            if (!engine.move(from, pos)) {
-                drawFigure(board.get(from), from.x(), from.y(), false);
+        }
+        return Arrays.copyOf(result, i);
+    }
+
+    /**
+     * sends the legal moves to the browser, none while the history is shown, the selection is cleared
+     */
+    private void showLegalMoves(int[] moves) {
+        legalMoves = moves;
+        var json = Json.createArray();
+        if (!browsing) {
+            for (int i = 0; i < moves.length; i++) {
+                json.set(i, moves[i]);
             }
-            from = null;
         }
+        canvas.getElement().executeJs("window.dreierschachBoard.setMoves(this, $0)", json);
     }
 
-    private void drawTile(int x, int y, boolean marked) {
+    private void drawTile(int x, int y) {
         CanvasRenderingContext2D ctx = canvas.getContext();
 
         int bg = (x + y) % 3;
@@ -165,8 +683,8 @@ public class DreierschachView extends HorizontalLayout {
         var px = pos.getLeft();
         var py = pos.getRight();
 
-        ctx.setFillStyle(marked ? "green" : COLORS_BG[bg]);
-        ctx.setStrokeStyle(marked ? "green" : COLORS_BG[bg]);
+        ctx.setFillStyle(COLORS_BG[bg]);
+        ctx.setStrokeStyle(COLORS_BG[bg]);
         ctx.setLineWidth(0);
         ctx.beginPath();
         ctx.moveTo(px + tileWidth / 2, py);
@@ -181,28 +699,22 @@ public class DreierschachView extends HorizontalLayout {
         ctx.stroke();
     }
 
-    private void drawFigure(Figure figure, int x, int y, boolean marked) {
-        drawTile(x, y, marked);
-        if (figure == Figure.NONE) {
-            return;
-        }
+    /**
+     * draws the square and copies the figure from the sprite sheet, an empty square is passed as well, so the
+     * browser does not draw a figure that has left the square before the sheet was loaded
+     */
+    private void drawFigure(Figure figure, int x, int y) {
+        drawTile(x, y);
         var pos = position(x, y);
         var px = pos.getLeft() + tileWidth * 0.15;
         var py = pos.getRight() + tileHeight * 0.15;
-        String img = getImage(figure);
-        CanvasRenderingContext2D ctx = canvas.getContext();
-        ctx.drawImage(img, px, py, tileWidth * 0.7, tileHeight * 0.7);
+        canvas.getElement().executeJs("window.dreierschachBoard.drawPiece(this, $0, $1, $2, $3, $4)",
+                PieceSprites.index(figure), px, py, tileWidth * 0.7, tileHeight * 0.7);
     }
 
     public String getImage(Figure figure) {
-        if (figure == Figure.NONE) {
-            return "";
-        }
-        return getImage(figure.getColor(), figure.getType());
-    }
-
-    public String getImage(Color color, FigureType type) {
-        return "images/" + color.name().toLowerCase() + "_" + type.name().toLowerCase() + ".svg";
+        return "images/" + figure.getColor().name().toLowerCase() + "_" + figure.getType().name().toLowerCase()
+                + ".svg";
     }
 
     public String getImageCheck(Color color) {
@@ -213,7 +725,20 @@ public class DreierschachView extends HorizontalLayout {
         return Pair.of(x * tileWidth + (5 - y) * tileWidth / 2, (12 - y) * tileHeight * 0.75);
     }
 
-    private void addProtocol(Board.MoveEvent event) {
+    /**
+     * draws every square of a position
+     */
+    private void drawBoard(Function<Pos, Figure> position) {
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var pos = Pos.square(i);
+            drawFigure(position.apply(pos), pos.x(), pos.y());
+        }
+    }
+
+    /**
+     * @param notation the move in the notation of the board, written when the move was played
+     */
+    private void addProtocol(Board.MoveEvent event, String notation) {
         String value = protocol.getValue();
         var f1 = event.getMove().f1();
         var c = f1.getColor();
@@ -225,8 +750,42 @@ public class DreierschachView extends HorizontalLayout {
         } else {
             value += ", ";
         }
-        value += board.getLastMoveAsString();
+        value += notation;
         protocol.setValue(value);
+        if (!browsing) {
+            historyField.setValue(event.getMoveCount());
+        }
+    }
+
+    /**
+     * removes the move taken back from the protocol, the fields have already been redrawn one by one
+     */
+    private void removeProtocol(Board.MoveEvent event) {
+        var value = protocol.getValue();
+        var end = event.getMove().f1().getColor() == Color.WHITE ? value.lastIndexOf("\n") : value.lastIndexOf(", ");
+        protocol.setValue(end < 0 ? "" : value.substring(0, end));
+        history.invalidate(event.getMoveCount() + 1);
+        if (!browsing) {
+            historyField.setValue(event.getMoveCount());
+        }
+    }
+
+    private void initProtocol(Board board) {
+        var value = new StringBuilder();
+        var moveCount = 0;
+        for (var move : (Iterable<Move>) board.getMoves()::iterator) {
+            moveCount++;
+            if (move.f1().getColor() == Color.WHITE) {
+                if (value.length() > 0) {
+                    value.append("\n");
+                }
+                value.append(moveCount).append(": ");
+            } else {
+                value.append(", ");
+            }
+            value.append(board.toNotation(move));
+        }
+        protocol.setValue(value.toString());
     }
 
     private void onCheckChanged(Board.CheckEvent event) {
@@ -240,4 +799,19 @@ public class DreierschachView extends HorizontalLayout {
         player.setText("It's " + event.getNewValue().name() + "s move.");
         player.setClassName(event.getNewValue().name().toLowerCase());
     }
+
+    private void onDraw(String text) {
+        if (text != null) {
+            player.setText(text);
+        }
+    }
+
+    /**
+     * analyzes the position of the game after a move, unless the analysis has been stopped or the history is shown
+     */
+    private void analyzeGame(BoardSnapshot snapshot) {
+        if (analysis != null && !browsing) {
+            startAnalysis(snapshot.toBoard());
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package de.dreierschach.app.views.dreierschach;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The images of all figures in one sprite sheet: a row for each color, a column for each type of figure and a last
+ * one for the king in check. The sheet is built once from the images of the figures and served under a name
+ * holding a hash of its content, so browsers keep it for good and load a changed sheet under its new name.
+ * <p>
+ * The board component rasterizes the sheet once for each size of the squares and copies the figures from it, see
+ * dreierschach-board.js.
+ */
+@RestController
+public class PieceSprites {
+    /**
+     * the columns of the sheet, the types of the figures and the king in check
+     */
+    static final int COLUMNS = FigureType.values().length + 1;
+    /**
+     * the rows of the sheet, the colors
+     */
+    static final int ROWS = Color.values().length;
+    /**
+     * the width and the height of a figure in the sheet, the figures are stretched to the squares
+     */
+    static final int CELL = 100;
+
+    private static final String IMAGES = "/META-INF/resources/images/";
+
+    private final byte[] sheet;
+    private final String name;
+
+    public PieceSprites() {
+        sheet = build();
+        name = "pieces-" + hash(sheet) + ".svg";
+    }
+
+    /**
+     * @return the url of the sheet, relative to the application
+     */
+    public String getUrl() {
+        return "sprites/" + name;
+    }
+
+    /**
+     * @return the index of the figure in the sheet, row by row, or -1 for no figure
+     */
+    public static int index(Figure figure) {
+        if (figure == Figure.NONE) {
+            return -1;
+        }
+        return figure.getColor().ordinal() * COLUMNS + figure.getType().ordinal();
+    }
+
+    /**
+     * @return the index of the king in check in the sheet
+     */
+    public static int indexCheck(Color color) {
+        return color.ordinal() * COLUMNS + COLUMNS - 1;
+    }
+
+    @GetMapping("/sprites/{name}")
+    public ResponseEntity<byte[]> sheet(@PathVariable String name) {
+        if (!this.name.equals(name)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .contentType(MediaType.valueOf("image/svg+xml"))
+                .body(sheet);
+    }
+
+    byte[] getSheet() {
+        return sheet;
+    }
+
+    /**
+     * embeds the images of the figures as data urls, so their ids can not clash and the sheet is loaded at once
+     */
+    private static byte[] build() {
+        var svg = new StringBuilder();
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(COLUMNS * CELL)
+                .append("\" height=\"").append(ROWS * CELL).append("\">\n");
+        for (var color : Color.values()) {
+            for (var type : FigureType.values()) {
+                image(svg, index(Figure.of(color, type)), color.name().toLowerCase() + "_"
+                        + type.name().toLowerCase() + ".svg");
+            }
+            image(svg, indexCheck(color), color.name().toLowerCase() + "_king_check.svg");
+        }
+        svg.append("</svg>\n");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void image(StringBuilder svg, int index, String file) {
+        svg.append("<image x=\"").append(index % COLUMNS * CELL).append("\" y=\"").append(index / COLUMNS * CELL)
+                .append("\" width=\"").append(CELL).append("\" height=\"").append(CELL)
+                .append("\" preserveAspectRatio=\"none\" href=\"data:image/svg+xml;base64,")
+                .append(Base64.getEncoder().encodeToString(read(file))).append("\"/>\n");
+    }
+
+    private static byte[] read(String file) {
+        try (var in = PieceSprites.class.getResourceAsStream(IMAGES + file)) {
+            if (in == null) {
+                throw new IllegalStateException("Bild nicht gefunden: " + file);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("Fehler beim Lesen des Bildes " + file, e);
+        }
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Fehler beim Berechnen des Hashwerts", e);
+        }
+    }
+}
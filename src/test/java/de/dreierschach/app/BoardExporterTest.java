@@ -0,0 +1,73 @@
+package de.dreierschach.app;
+
+import de.dreierschach.app.engine.OpeningMoves;
+import de.dreierschach.app.model.Board;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoardExporterTest {
+    private final BoardExporter exporter = new BoardExporter();
+
+    @Test
+    void exportAndImportGamesTest() {
+        var out = new ByteArrayOutputStream();
+        exporter.exportGames(IntStream.range(0, 20).mapToObj(i -> OpeningMoves.play(i % 3 + 1)), out);
+
+        var imported = new ConcurrentHashMap<String, Board>();
+        var result = exporter.importGames(new ByteArrayInputStream(out.toByteArray()),
+                game -> imported.put(game.getBoard().getId(), game.getBoard()));
+
+        assertEquals(20, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertEquals(20, imported.size());
+        assertTrue(imported.values().stream().allMatch(b -> b.getMoveCount() >= 1 && b.getMoveCount() <= 3));
+    }
+
+    /**
+     * a position written with toJson can be read again, e.g. to analyze it
+     */
+    @Test
+    void positionTest() {
+        var board = OpeningMoves.play(2);
+        var copy = exporter.toBoard(exporter.toJson(board));
+        assertEquals(board.getHash(), copy.getHash());
+        assertEquals(board.getPlayer(), copy.getPlayer());
+        assertEquals(board.getKingsPositions(), copy.getKingsPositions());
+    }
+
+    @Test
+    void importRejectsInvalidGamesTest() {
+        var json = "[{\"id\":\"valid\",\"winner\":null,\"moves\":[\"b1-c1\"]},"
+                + "{\"id\":\"invalid\",\"unknown\":{\"a\":1},\"moves\":[\"b1-e1\",\"e1-e2\"]}]";
+        var imported = new ConcurrentHashMap<String, Board>();
+        var result = exporter.importGames(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                game -> imported.put(game.getBoard().getId(), game.getBoard()));
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(1, imported.get("valid").getMoveCount());
+        assertTrue(result.getErrors().get(0).startsWith("invalid"));
+    }
+
+    @Test
+    void importRejectsMovesNotStringsTest() {
+        var json = "[{\"id\":\"invalid\",\"moves\":[\"b1-c1\",{\"from\":\"e1\"},\"e1-e2\"],\"winner\":null},"
+                + "{\"id\":\"valid\",\"winner\":null,\"moves\":[\"b1-c1\"]}]";
+        var imported = new ConcurrentHashMap<String, Board>();
+        var result = exporter.importGames(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                game -> imported.put(game.getBoard().getId(), game.getBoard()));
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(1, imported.get("valid").getMoveCount());
+        assertEquals("invalid: ungültiger Zug {", result.getErrors().get(0));
+    }
+}
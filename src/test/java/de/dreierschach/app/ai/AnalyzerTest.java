@@ -0,0 +1,78 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.BoardExporter;
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.engine.MaxNSearch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalyzerTest {
+
+    @Test
+    void analyzeTest() throws InterruptedException {
+        var boardExporter = new BoardExporter();
+        var analyzer = new Analyzer(boardExporter, 1 << 16, 1, 1, 64, Duration.ofMinutes(1));
+        var board = new DreierschachEngineImpl().startGame().board();
+        List<MaxNSearch.Iteration> iterations = new CopyOnWriteArrayList<>();
+        var analysis = analyzer.analyze(boardExporter.toJson(board), 2, Duration.ofMillis(200), iterations::add);
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (iterations.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        analysis.cancel();
+        assertTrue(analysis.isCancelled());
+        assertTrue(iterations.size() >= 2);
+        for (int i = 1; i < iterations.size(); i++) {
+            assertTrue(iterations.get(i).getDepth() > iterations.get(i - 1).getDepth());
+        }
+        assertEquals(2, iterations.get(0).getLines().size());
+
+        while (!analysis.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(analysis.isDone());
+        var reported = iterations.size();
+        Thread.sleep(50);
+        assertEquals(reported, iterations.size());
+        analyzer.close();
+    }
+
+    /**
+     * an analysis stops at its depth or time, analyses beyond the queue are rejected
+     */
+    @Test
+    void budgetTest() throws InterruptedException {
+        var board = new DreierschachEngineImpl().startGame().board();
+        var analyzer = new Analyzer(new BoardExporter(), 1 << 16, 1, 1, 2, Duration.ofMinutes(1));
+        List<MaxNSearch.Iteration> iterations = new CopyOnWriteArrayList<>();
+        var analysis = analyzer.analyze(board, 1, Duration.ZERO, iterations::add);
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!analysis.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(analysis.isDone());
+        assertEquals(2, iterations.get(iterations.size() - 1).getDepth());
+        analyzer.close();
+
+        analyzer = new Analyzer(new BoardExporter(), 1 << 16, 1, 1, 64, Duration.ofMillis(200));
+        var running = analyzer.analyze(board, 1, Duration.ZERO, iteration -> {
+        });
+        var waiting = analyzer.analyze(board, 1, Duration.ZERO, iteration -> {
+        });
+        var full = analyzer;
+        assertThrows(IllegalStateException.class, () -> full.analyze(board, 1, Duration.ZERO, iteration -> {
+        }));
+        while (!waiting.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(running.isDone());
+        assertTrue(waiting.isDone());
+        analyzer.close();
+    }
+}
@@ -0,0 +1,93 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.persistence.GameArchive;
+import de.dreierschach.app.persistence.MoveCodec;
+import de.dreierschach.app.tablebase.Tablebases;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void buildAndProbeTest() {
+        var archive = new GameArchive(dir.resolve("archive"));
+        archive.archive(play("b1", "c1", "e1", "e2", "e12", "e11"), Color.WHITE);
+        archive.archive(play("b1", "c1", "f2", "f3"), null);
+        archive.archive(play("b2", "c2", "e1", "e2"), null);
+        var file = dir.resolve("book/book.bin");
+        OpeningBook.build(archive, 2, file);
+        archive.close();
+
+        var book = new OpeningBook(file);
+        // start position: b1-c1 twice, once by the winner, b2-c2 once
+        var start = new DreierschachEngineImpl().startGame().board();
+        var entries = book.probe(start.getHash());
+        assertEquals(List.of("b1-c1:4", "b2-c2:1"), entries.stream()
+                .map(e -> MoveCodec.source(e.getMove()) + "-" + MoveCodec.destination(e.getMove()) + ":"
+                        + e.getWeight())
+                .collect(Collectors.toList()));
+        // after b1-c1 both brown moves, the third ply is beyond the book
+        var afterB1 = play("b1", "c1");
+        assertEquals(2, book.probe(afterB1.getHash()).size());
+        assertTrue(book.probe(play("b1", "c1", "e1", "e2").getHash()).isEmpty());
+        assertEquals(5, book.size());
+
+        var player = new ComputerPlayer(book, new Tablebases(dir.resolve("tablebase")), Duration.ofMillis(200));
+        for (int i = 0; i < 10; i++) {
+            var move = player.bookMove(start).orElseThrow();
+            assertTrue(List.of("b1", "b2").contains(move.p1().toString()));
+        }
+        book.close();
+    }
+
+    @Test
+    void backgroundBuildTest() throws InterruptedException {
+        var archive = new GameArchive(dir.resolve("archive"));
+        archive.archive(play("b1", "c1", "e1", "e2", "e12", "e11"), Color.WHITE);
+        var file = dir.resolve("book/book.bin");
+        // the book is built after the constructor has returned
+        var book = new OpeningBook(file, archive, 2);
+        for (int i = 0; i < 100 && book.size() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, book.size());
+        assertTrue(Files.exists(file));
+        assertEquals(1, book.probe(new DreierschachEngineImpl().startGame().board().getHash()).size());
+        book.close();
+        archive.close();
+    }
+
+    @Test
+    void searchOutOfBookTest() {
+        var book = new OpeningBook(dir.resolve("empty.bin"));
+        assertEquals(0, book.size());
+        var player = new ComputerPlayer(book, new Tablebases(dir.resolve("tablebase")), Duration.ofMillis(200));
+        var board = play("b1", "c1", "e1", "e2");
+        var move = player.chooseMove(board).orElseThrow();
+        var engine = new DreierschachEngineImpl().withBoard(board);
+        assertTrue(engine.legalMoves().isLegal(move.p1(), move.p2()));
+        book.close();
+    }
+
+    private static Board play(String... squares) {
+        var engine = new DreierschachEngineImpl().startGame();
+        for (int i = 0; i < squares.length; i += 2) {
+            assertTrue(engine.move(Pos.of(squares[i]), Pos.of(squares[i + 1])));
+        }
+        return engine.board();
+    }
+}
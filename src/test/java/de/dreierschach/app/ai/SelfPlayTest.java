@@ -0,0 +1,57 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.persistence.GameArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelfPlayTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void parseVariantTest() {
+        var variant = EngineVariant.parse("rich:depth=3,budget=250ms,queen=1000");
+        assertEquals("rich", variant.getName());
+        assertEquals(3, variant.getMaxDepth());
+        assertEquals(Duration.ofMillis(250), variant.getBudget());
+        assertEquals("base", EngineVariant.parse("base").getName());
+        assertThrows(IllegalArgumentException.class, () -> EngineVariant.parse("bad:king"));
+        assertThrows(IllegalArgumentException.class, () -> EngineVariant.parse("bad:castle=3"));
+    }
+
+    @Test
+    void playRoundTest() {
+        var archive = new GameArchive(dir);
+        var variants = List.of(EngineVariant.parse("a:depth=1"), EngineVariant.parse("b:depth=1,pawn=150"),
+                EngineVariant.parse("c:depth=1,queen=1200"));
+        var standings = new SelfPlay(archive, null, 2, 9).play(variants, 1);
+
+        // every variant played on every seat, the games reached the maximal number of plies
+        assertEquals(6, archive.size());
+        for (int i = 0; i < archive.size(); i++) {
+            assertEquals(9, archive.header(i).getMoves());
+            assertTrue(archive.header(i).getWinner().isEmpty());
+        }
+        var moves = 0;
+        for (var variant : variants) {
+            var result = standings.get(variant);
+            assertEquals(6, result.getGames());
+            assertEquals(6, result.getDraws());
+            assertEquals(2.0, result.getScore(), 1e-9);
+            assertTrue(result.percentile(0.5) <= result.percentile(0.99));
+            moves += result.getMoves();
+        }
+        assertEquals(54, moves);
+        assertTrue(standings.toString().contains("p99 ms"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SelfPlay(archive, null, 1, 9).play(variants.subList(0, 2), 1));
+        archive.close();
+    }
+}
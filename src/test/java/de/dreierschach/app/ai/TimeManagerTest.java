@@ -0,0 +1,34 @@
+package de.dreierschach.app.ai;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.GameClock;
+import de.dreierschach.app.model.TimeControl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeManagerTest {
+
+    @Test
+    void budgetTest() {
+        var now = new long[1];
+        var clock = new GameClock(new TimeControl(Duration.ofMinutes(10), Duration.ofSeconds(4), Duration.ZERO),
+                () -> now[0]);
+        var timeManager = new TimeManager(Duration.ofMinutes(1));
+        // (600s - 0.1s) / 60 + 3s
+        assertEquals(Duration.ofMillis(599_900).dividedBy(60).plusSeconds(3),
+                timeManager.budget(clock, Color.WHITE, 0));
+        assertEquals(Duration.ofSeconds(2), new TimeManager(Duration.ofSeconds(2)).budget(clock, Color.WHITE, 0));
+
+        // late in the game, with little time left, a third of the remaining time at most
+        clock.start(Color.WHITE);
+        now[0] = Duration.ofSeconds(597).toNanos();
+        var budget = timeManager.budget(clock, Color.WHITE, 300);
+        assertEquals(Duration.ofMillis(2_900).dividedBy(3), budget);
+
+        now[0] = Duration.ofSeconds(600).toNanos();
+        assertEquals(TimeManager.MIN_BUDGET, timeManager.budget(clock, Color.WHITE, 300));
+    }
+}
@@ -0,0 +1,96 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Dir;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The attacks found by scanning the board square by square, the way the engine found them before the attack
+ * tables. The tests compare the tables against them.
+ */
+class AttackScans {
+    private AttackScans() {
+    }
+
+    static List<Pos> getAttacks(DreierschachEngineImpl engine, Board b, Color player, Pos pos) {
+        var result = new ArrayList<Pos>();
+        if (!pos.isValid()) {
+            return result;
+        }
+        result.addAll(getAttacksStraight(engine, b, player, pos));
+        result.addAll(getAttacksDiagonal(engine, b, player, pos));
+        result.addAll(getAttacksJump(engine, b, player, pos));
+        return result;
+    }
+
+    static List<Pos> getAttacksStraight(DreierschachEngineImpl engine, Board b, Color player, Pos pos) {
+        //@formatter:off
+        return scan(engine, b, pos, Dir.Type.straight).stream()
+                .filter(p -> b.get(p).getColor() != player)
+                .filter(p -> List.of(FigureType.ROOK, FigureType.KING,  FigureType.QUEEN).contains(b.get(p).getType()))
+                .filter(p -> engine.isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE)))
+                .collect(Collectors.toList());
+        //@formatter:on
+    }
+
+    static List<Pos> getAttacksDiagonal(DreierschachEngineImpl engine, Board b, Color player, Pos pos) {
+        //@formatter:off
+        return scan(engine, b, pos, Dir.Type.diagonal).stream()
+                .filter(p -> b.get(p).getColor() != player)
+                .filter(p -> List.of(FigureType.BISHOP, FigureType.KING,  FigureType.QUEEN, FigureType.PAWN)
+                        .contains(b.get(p).getType()))
+                .filter(p -> engine.isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE)))
+                .collect(Collectors.toList());
+        //@formatter:on
+    }
+
+    static List<Pos> getAttacksJump(DreierschachEngineImpl engine, Board b, Color player, Pos pos) {
+        return scan(engine, b, pos, Dir.Type.jump).stream().filter(p -> b.get(p).getColor() != player)
+                .filter(p -> b.get(p).getType() == FigureType.KNIGHT)
+                .filter(p -> engine.isValidAttack(b, new Move(p, b.get(p), pos, Figure.NONE)))
+                .collect(Collectors.toList());
+    }
+
+    static List<Pos> scan(DreierschachEngineImpl engine, Board b, Pos pos, Dir.Type type) {
+        var result = new ArrayList<Pos>();
+        for (int i = 0; i < type.size(); i++) {
+            var dir = Dir.get(type, i);
+            var p = pos;
+            switch (type) {
+                case straight:
+                    do {
+                        p = Pos.add(p, dir);
+                    } while (p.isValid() && b.get(p) == Figure.NONE);
+                    if (p.isValid()) {
+                        result.add(p);
+                    }
+                    break;
+                case diagonal:
+                    if (engine.isDiagonalFreeToMove(b, p, dir)) {
+                        do {
+                            p = Pos.add(p, dir);
+                        } while (p.isValid() && b.get(p) == Figure.NONE && engine.isDiagonalFreeToMove(b, p, dir));
+                        if (p.isValid() && b.get(p) != Figure.NONE) {
+                            result.add(p);
+                        }
+                    }
+                    break;
+                case jump:
+                    p = Pos.add(p, dir);
+                    if (p.isValid() && b.get(p) != Figure.NONE) {
+                        result.add(p);
+                    }
+                default:
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttackTablesTest {
+    private final DreierschachEngineImpl engine = new DreierschachEngineImpl();
+
+    /**
+     * the bitboards of the board follow the figures
+     */
+    @Test
+    void occupancyTest() {
+        var board = new DreierschachEngineImpl().startGame().board();
+        assertTrue(engine.withBoard(board).move(Pos.of("b1"), Pos.of("c1")));
+        for (var board2 : new Board[]{board, Board.copyOf(board)}) {
+            for (int i = 0; i < Pos.SQUARES; i++) {
+                var figure = board2.get(Pos.square(i));
+                var word = BitBoard.word(i);
+                for (var color : Color.values()) {
+                    assertEquals(figure.getColor() == color, (board2.colorBits(color, word) & BitBoard.bit(i)) != 0);
+                }
+                for (var type : FigureType.values()) {
+                    assertEquals(figure.getType() == type, (board2.typeBits(type, word) & BitBoard.bit(i)) != 0);
+                }
+                assertEquals(figure != Figure.NONE,
+                        BitBoard.contains(board2.occupiedBits(0), board2.occupiedBits(1), i));
+            }
+        }
+    }
+
+    /**
+     * the mask tests give the same results as scanning the board square by square
+     */
+    @Test
+    void attacksTest() {
+        var random = new Random(5);
+        var figures = Figure.values();
+        for (int n = 0; n < 200; n++) {
+            var board = new Board();
+            var count = 4 + random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                board.set(figures[1 + random.nextInt(figures.length - 1)], Pos.square(random.nextInt(Pos.SQUARES)));
+            }
+            for (int i = 0; i < Pos.SQUARES; i++) {
+                var pos = Pos.square(i);
+                for (var color : Color.values()) {
+                    assertEquals(!AttackScans.getAttacks(engine, board, color, pos).isEmpty(),
+                            engine.isAttacked(board, color, pos), color + " " + pos + "\n" + board);
+                }
+                for (int d = 0; d < Dir.Type.diagonal.size(); d++) {
+                    var straight = Dir.get(Dir.Type.straight, d);
+                    var free = board.get(Pos.add(pos, straight)) == Figure.NONE
+                            || board.get(Pos.add(pos, Dir.rotateRight(straight))) == Figure.NONE;
+                    assertEquals(free, engine.isDiagonalFreeToMove(board, pos, Dir.get(Dir.Type.diagonal, d)));
+                }
+            }
+        }
+    }
+}
@@ -7,12 +7,15 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.stream.Stream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class DreierschachEngineTest {
     private DreierschachEngineImpl engine;
@@ -55,10 +58,152 @@ public class DreierschachEngineTest {
     @MethodSource("provideGetAttacksJumpTestdata")
     void getAttacksJumpTest(List<Pos> attackers, Figure figure, Pos dest, List<Pos> expected) {
         attackers.forEach(p -> board.set(figure, p));
-        var attacks = engine.getAttacksJump(board, Color.BLACK, dest);
+        var attacks = AttackScans.getAttacksJump(engine, board, Color.BLACK, dest);
         assertEquals(new HashSet<>(expected), new HashSet<>(attacks));
     }
 
+    private static Stream<Arguments> providePromotionTestdata() {
+        //@formatter:off
+        return Stream.of(
+                Arguments.of(Color.WHITE, Figure.WHITE_PAWN, "e1", "f1", null, Figure.WHITE_QUEEN),
+                Arguments.of(Color.WHITE, Figure.WHITE_PAWN, "e1", "f1", FigureType.KNIGHT, Figure.WHITE_KNIGHT),
+                Arguments.of(Color.WHITE, Figure.WHITE_PAWN, "e1", "f1", FigureType.KING, null),
+                Arguments.of(Color.WHITE, Figure.WHITE_PAWN, "d1", "e1", FigureType.ROOK, null),
+                Arguments.of(Color.WHITE, Figure.WHITE_PAWN, "d1", "e1", null, Figure.WHITE_PAWN),
+                Arguments.of(Color.BROWN, Figure.BROWN_PAWN, "b4", "a4", null, Figure.BROWN_QUEEN),
+                Arguments.of(Color.BLACK, Figure.BLACK_PAWN, "h12", "h11", null, Figure.BLACK_PAWN)
+        );
+        //@formatter:on
+    }
+
+    @ParameterizedTest
+    @MethodSource("providePromotionTestdata")
+    void promotionTest(Color player, Figure pawn, String from, String to, FigureType promotion, Figure expected) {
+        board.setPlayer(player);
+        board.set(pawn, Pos.of(from));
+        assertEquals(expected != null, engine.move(Pos.of(from), Pos.of(to), promotion));
+        if (expected != null) {
+            assertEquals(expected, board.get(Pos.of(to)));
+            assertEquals(expected == pawn ? null : expected.getType(), board.getLastMove().promotion());
+        }
+    }
+
+    @Test
+    void enPassantTest() {
+        board.setPlayer(Color.WHITE);
+        board.set(Figure.WHITE_PAWN, Pos.of("b2"));
+        board.set(Figure.BROWN_PAWN, Pos.of("d1"));
+        assertTrue(engine.move(Pos.of("b2"), Pos.of("d2")));
+        assertEquals(Pos.of("c2"), board.getEnPassant());
+
+        var destinations = new HashSet<Pos>();
+        engine.addPawnMoves(board, Pos.of("d1"), destinations);
+        assertTrue(destinations.contains(Pos.of("c2")));
+
+        assertTrue(engine.move(Pos.of("d1"), Pos.of("c2")));
+        assertEquals(Figure.BROWN_PAWN, board.get(Pos.of("c2")));
+        assertEquals(Figure.NONE, board.get(Pos.of("d2")));
+        assertTrue(board.getLastMove().isEnPassant());
+        assertEquals(Figure.WHITE_PAWN, board.getLastMove().f2());
+        assertEquals(Pos.NONE, board.getEnPassant());
+    }
+
+    @Test
+    void generateMovesTest() {
+        board.setPlayer(Color.WHITE);
+        board.set(Figure.WHITE_PAWN, Pos.of("b2"));
+        board.set(Figure.BROWN_PAWN, Pos.of("d1"));
+        assertTrue(engine.move(Pos.of("b2"), Pos.of("d2")));
+
+        var moves = new int[DreierschachEngineImpl.MAX_MOVES];
+        var count = engine.generateMoves(board, moves, 1);
+        var legalMoves = engine.computeLegalMoves(board);
+        assertEquals(legalMoves.size(), count - 1);
+        var enPassant = 0;
+        for (int i = 1; i < count; i++) {
+            var p1 = Pos.square(PackedMove.source(moves[i]));
+            var p2 = Pos.square(PackedMove.destination(moves[i]));
+            assertTrue(legalMoves.isLegal(p1, p2));
+            assertEquals(Figure.BROWN_PAWN, PackedMove.moved(moves[i]));
+            if (PackedMove.isEnPassant(moves[i])) {
+                enPassant = moves[i];
+            }
+        }
+        assertEquals(Pos.of("c2").index(), PackedMove.destination(enPassant));
+        assertEquals(Figure.WHITE_PAWN, PackedMove.captured(enPassant));
+
+        var after = engine.after(board, enPassant);
+        assertEquals(Figure.NONE, after.get(Pos.of("d2")));
+        assertEquals(Color.BLACK, after.getPlayer());
+        assertEquals(Figure.WHITE_PAWN, board.get(Pos.of("d2")));
+    }
+
+    @Test
+    void enPassantOnlyInNextMoveTest() {
+        board.setPlayer(Color.WHITE);
+        board.set(Figure.WHITE_PAWN, Pos.of("b2"));
+        board.set(Figure.BROWN_PAWN, Pos.of("d1"));
+        board.set(Figure.BROWN_PAWN, Pos.of("i5"));
+        assertTrue(engine.move(Pos.of("b2"), Pos.of("d2")));
+        assertTrue(engine.move(Pos.of("i5"), Pos.of("i6")));
+        assertEquals(Pos.NONE, board.getEnPassant());
+        board.setPlayer(Color.BROWN);
+        assertFalse(engine.move(Pos.of("d1"), Pos.of("c2")));
+    }
+
+    /**
+     * a player whose time has run out cannot move any more, the other two play on
+     */
+    @Test
+    void clockTest() {
+        var now = new long[1];
+        var clock = new GameClock(new TimeControl(Duration.ofSeconds(10), Duration.ZERO, Duration.ZERO),
+                () -> now[0]);
+        engine.withClock(clock).startGame();
+        assertEquals(Color.WHITE, clock.getRunning().orElseThrow());
+        now[0] += Duration.ofSeconds(4).toNanos();
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        assertEquals(Duration.ofSeconds(6), clock.remaining(Color.WHITE));
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+        var brownMove = anyLegalMove();
+        now[0] += Duration.ofSeconds(10).toNanos();
+        assertEquals(Set.of(Color.BROWN), clock.getFlagged());
+        assertEquals(Color.BLACK, clock.getRunning().orElseThrow());
+        assertFalse(engine.move(brownMove));
+
+        // the turn of brown is passed, black and white play on
+        assertEquals(Color.BLACK, board.getPlayer());
+        assertTrue(engine.move(anyLegalMove()));
+        assertEquals(Color.WHITE, board.getPlayer());
+        assertEquals(Color.WHITE, clock.getRunning().orElseThrow());
+        assertTrue(engine.move(anyLegalMove()));
+        assertEquals(Color.BLACK, board.getPlayer());
+        assertFalse(engine.passFlaggedPlayer());
+
+        // once black has run out of time, too, the game is over
+        now[0] += Duration.ofSeconds(10).toNanos();
+        assertTrue(engine.passFlaggedPlayer());
+        assertEquals(Color.WHITE, board.getPlayer());
+        assertTrue(clock.isOver());
+        assertTrue(clock.getRunning().isEmpty());
+        assertFalse(engine.move(anyLegalMove()));
+
+        engine.startGame();
+        assertTrue(clock.getFlagged().isEmpty());
+        assertEquals(Duration.ofSeconds(10), clock.remaining(Color.BROWN));
+    }
+
+    private Move anyLegalMove() {
+        var legalMoves = engine.legalMoves();
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var source = Pos.square(i);
+            for (var destination : legalMoves.destinations(source)) {
+                return new Move(source, board.get(source), destination, board.get(destination));
+            }
+        }
+        throw new IllegalStateException("kein Zug möglich");
+    }
+
     private static Stream<Arguments> provideGetAttacksStraightTestdata() {
         //@formatter:off
         return Stream.of(
@@ -75,7 +220,100 @@ public class DreierschachEngineTest {
     @MethodSource("provideGetAttacksStraightTestdata")
     void getAttacksStraightTest(List<Pos> attackers, Figure figure, Pos dest, List<Pos> expected) {
         attackers.forEach(p -> board.set(figure, p));
-        var attacks = engine.getAttacksStraight(board, Color.BLACK, dest);
+        var attacks = AttackScans.getAttacksStraight(engine, board, Color.BLACK, dest);
         assertEquals(new HashSet<>(expected), new HashSet<>(attacks));
     }
+
+    @Test
+    void repetitionTest() {
+        engine.startGame();
+        PositionHistoryTest.shuffleKnights(engine);
+        assertTrue(engine.positions().isRepeated());
+        assertFalse(engine.positions().isDraw());
+        PositionHistoryTest.shuffleKnights(engine);
+        assertTrue(engine.positions().isRepetition());
+        assertFalse(engine.move(Pos.of("b1"), Pos.of("c1")));
+        assertEquals(12, board.getMoveCount());
+
+        engine.startGame();
+        assertFalse(engine.positions().isDraw());
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+    }
+
+    /**
+     * random games taken back move by move pass the same positions backwards, only the changed fields are set
+     */
+    @Test
+    void undoTest() {
+        var random = new Random(42);
+        for (int game = 0; game < 5; game++) {
+            engine.startGame();
+            var hashes = new ArrayList<Long>();
+            var moves = new int[DreierschachEngineImpl.MAX_MOVES];
+            for (int ply = 0; ply < 120; ply++) {
+                var count = engine.generateMoves(board, moves, 0);
+                if (count == 0 || engine.positions().isDraw()) {
+                    break;
+                }
+                hashes.add(board.getHash());
+                var move = moves[random.nextInt(count)];
+                assertTrue(engine.move(Pos.square(PackedMove.source(move)), Pos.square(PackedMove.destination(move))));
+            }
+            var changed = new ArrayList<Pos>();
+            var undone = new ArrayList<Board.MoveEvent>();
+            board.addFieldChangeListener(e -> changed.add(e.getPos()));
+            board.addMoveListener(undone::add);
+            for (int i = hashes.size() - 1; i >= 0; i--) {
+                var move = board.getLastMove();
+                changed.clear();
+                assertTrue(engine.undoLastMove());
+                assertEquals(hashes.get(i), board.getHash(), "after undo of " + move);
+                assertTrue(changed.size() <= 4);
+                assertTrue(undone.get(undone.size() - 1).isUndoLastMove());
+                assertEquals(i, undone.get(undone.size() - 1).getMoveCount());
+            }
+            assertFalse(engine.undoLastMove());
+        }
+    }
+
+    @Test
+    void undoEnPassantTest() {
+        board.setPlayer(Color.WHITE);
+        board.set(Figure.WHITE_PAWN, Pos.of("b2"));
+        board.set(Figure.BROWN_PAWN, Pos.of("d1"));
+        assertTrue(engine.move(Pos.of("b2"), Pos.of("d2")));
+        var before = board.getHash();
+        assertTrue(engine.move(Pos.of("d1"), Pos.of("c2")));
+        assertTrue(engine.undoLastMove());
+        assertEquals(before, board.getHash());
+        assertEquals(Figure.WHITE_PAWN, board.get(Pos.of("d2")));
+        assertEquals(Figure.BROWN_PAWN, board.get(Pos.of("d1")));
+        assertEquals(Figure.NONE, board.get(Pos.of("c2")));
+        assertEquals(Pos.of("c2"), board.getEnPassant());
+        assertEquals(Color.BROWN, board.getPlayer());
+    }
+
+    @Test
+    void disablesCastelingTest() {
+        board.setPlayer(Color.WHITE);
+        board.set(Figure.WHITE_ROOK, Pos.of("a1"));
+        board.set(Figure.BROWN_ROOK, Pos.of("m8"));
+        assertTrue(engine.move(Pos.of("a1"), Pos.of("b1")));
+        assertTrue(board.getLastMove().isDisablesCasteling());
+        assertTrue(board.isCastelingForbidden(Color.WHITE));
+        assertTrue(engine.move(Pos.of("m8"), Pos.of("l8")));
+        board.setPlayer(Color.WHITE);
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("a1")));
+        assertFalse(board.getLastMove().isDisablesCasteling());
+        assertTrue(engine.undoLastMove());
+        assertTrue(engine.undoLastMove());
+
+        // a move restored from a stored list is taken back the same way
+        var restored = new DreierschachEngineImpl().withBoard(Board.copyOf(board).withMoves(board.getMoves().toList()));
+        assertTrue(restored.undoLastMove());
+        assertFalse(restored.board().isCastelingForbidden(Color.WHITE));
+        assertTrue(engine.undoLastMove());
+        assertFalse(board.isCastelingForbidden(Color.WHITE));
+        assertEquals(board.getHash(), restored.board().getHash());
+    }
 }
@@ -0,0 +1,109 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegalMovesTest {
+    @Test
+    void legalMovesOfRandomGamesTest() {
+        var random = new Random(42);
+        for (int game = 0; game < 3; game++) {
+            var engine = new DreierschachEngineImpl().startGame();
+            for (int ply = 0; ply < 40; ply++) {
+                var legalMoves = engine.legalMoves();
+                var expected = bruteForce(engine);
+                assertEquals(expected, moves(legalMoves), "game " + game + ", ply " + ply);
+                assertEquals(expected.size(), legalMoves.size());
+                if (expected.isEmpty()) {
+                    break;
+                }
+                var move = new ArrayList<>(expected).get(random.nextInt(expected.size())).split("-");
+                assertFalse(engine.move(Pos.of(move[0]), Pos.of(move[0])));
+                assertTrue(engine.move(Pos.of(move[0]), Pos.of(move[1])), String.join("-", move));
+            }
+        }
+    }
+
+    @Test
+    void legalMovesAreCachedPerPositionTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        var legalMoves = engine.legalMoves();
+        assertSame(legalMoves, engine.legalMoves());
+        assertTrue(legalMoves.isLegal(Pos.of("b1"), Pos.of("c1")));
+        assertTrue(legalMoves.destinations(Pos.of("b1")).containsAll(List.of(Pos.of("c1"), Pos.of("d1"))));
+        assertTrue(legalMoves.destinations(Pos.of("m8")).isEmpty());
+        assertFalse(engine.move(Pos.of("b1"), Pos.of("f1")));
+
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        assertNotSame(legalMoves, engine.legalMoves());
+        assertEquals(engine.board().getHash(), engine.legalMoves().getHash());
+    }
+
+    @Test
+    void hashTest() {
+        var board = new Board();
+        board.setup();
+        var start = board.getHash();
+        var copy = new Board();
+        copy.setFigures(board.getFigures());
+        copy.setPlayer(Color.WHITE);
+        assertEquals(start, copy.getHash());
+
+        board.nextPlayer();
+        assertNotEquals(start, board.getHash());
+        board.setPlayer(Color.WHITE);
+        assertEquals(start, board.getHash());
+
+        // the same position reached by different move orders
+        var engine1 = new DreierschachEngineImpl().startGame();
+        var engine2 = new DreierschachEngineImpl().startGame();
+        OpeningMoves.play(engine1, "b1", "c1", "e1", "e2", "e12", "e11", "b2", "c2");
+        OpeningMoves.play(engine2, "b2", "c2", "e1", "e2", "e12", "e11", "b1", "c1");
+        assertEquals(engine1.board().getHash(), engine2.board().getHash());
+        assertEquals(engine1.board().getHash(), Board.copyOf(engine1.board()).getHash());
+
+        OpeningMoves.play(engine1, OpeningMoves.OPENING.subList(8, 12).toArray(String[]::new));
+        assertNotEquals(engine1.board().getHash(), engine2.board().getHash());
+    }
+
+    private static Set<String> moves(LegalMoves legalMoves) {
+        var result = new HashSet<String>();
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            for (var destination : legalMoves.destinations(Pos.square(i))) {
+                result.add(Pos.square(i) + "-" + destination);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> bruteForce(DreierschachEngineImpl engine) {
+        var board = engine.board();
+        var result = new HashSet<String>();
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            for (int j = 0; j < Pos.SQUARES; j++) {
+                var move = board.createMove(Pos.square(i), Pos.square(j));
+                if (!engine.validateMoveOrAttack(move)) {
+                    continue;
+                }
+                if (engine.isEnPassant(board, move)) {
+                    move = move.withEnPassant(board.get(board.getEnPassantPawn()));
+                }
+                var copy = Board.copyOf(board);
+                copy.doMove(move);
+                engine.checkCheck(copy);
+                if (!copy.isCheck(copy.getPlayer())) {
+                    result.add(move.p1() + "-" + move.p2());
+                }
+            }
+        }
+        return result;
+    }
+}
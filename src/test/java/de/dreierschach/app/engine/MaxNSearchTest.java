@@ -0,0 +1,101 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.Pos;
+import de.dreierschach.app.model.PositionHistoryTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MaxNSearchTest {
+    @Test
+    void captureTest() {
+        var board = new Board();
+        board.set(Figure.WHITE_QUEEN, Pos.of("d5"));
+        board.set(Figure.BLACK_QUEEN, Pos.of("d9"));
+        board.set(Figure.BROWN_ROOK, Pos.of("j10"));
+        board.setPlayer(Color.WHITE);
+        var result = new MaxNSearch().search(board, System.nanoTime() + TimeUnit.SECONDS.toNanos(10), 2);
+        assertEquals(2, result.getDepth());
+        assertEquals(Pos.of("d5"), result.getMove().p1());
+        assertEquals(Pos.of("d9"), result.getMove().p2());
+        assertTrue(result.getScore()[Color.WHITE.ordinal()] > 0);
+    }
+
+    @Test
+    void deadlineTest() {
+        var board = new DreierschachEngineImpl().startGame().board();
+        var start = System.nanoTime();
+        var result = new MaxNSearch().search(board, start + TimeUnit.MILLISECONDS.toNanos(100), 64);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertNotNull(result.getMove());
+        assertTrue(result.getDepth() < 64);
+    }
+
+    @Test
+    void analyzeTest() {
+        var board = new DreierschachEngineImpl().startGame().board();
+        var iterations = new ArrayList<MaxNSearch.Iteration>();
+        var result = new MaxNSearch().analyze(board, 3, 2, () -> false, iterations::add);
+        assertEquals(2, iterations.size());
+        assertSame(result, iterations.get(1));
+        assertEquals(2, result.getDepth());
+        assertEquals(3, result.getLines().size());
+        var white = Color.WHITE.ordinal();
+        for (int i = 1; i < result.getLines().size(); i++) {
+            assertTrue(result.getLines().get(i - 1).getScore()[white] >= result.getLines().get(i).getScore()[white]);
+        }
+        var best = new MaxNSearch().search(board, System.nanoTime() + TimeUnit.SECONDS.toNanos(10), 2);
+        assertEquals(best.getMove().p1(), result.getLines().get(0).getMoves().get(0).p1());
+        assertEquals(best.getMove().p2(), result.getLines().get(0).getMoves().get(0).p2());
+
+        var stopped = new MaxNSearch().analyze(board, 3, 64, () -> true, iterations::add);
+        assertEquals(0, stopped.getDepth());
+        assertEquals(2, iterations.size());
+    }
+
+    /**
+     * the table does not change the scores, it saves nodes when searching again and holds the continuations
+     */
+    @Test
+    void transpositionTableTest() {
+        var board = new DreierschachEngineImpl().startGame().board();
+        var expected = new MaxNSearch().analyze(board, 2, 3, () -> false, null);
+        var table = new TranspositionTable(1 << 16);
+        var search = new MaxNSearch(null, MaxNSearch.defaultValues(), table);
+        var first = search.analyze(board, 2, 3, () -> false, null);
+        for (int i = 0; i < 2; i++) {
+            assertArrayEquals(expected.getLines().get(i).getScore(), first.getLines().get(i).getScore());
+        }
+        assertEquals(3, first.getLines().get(0).getMoves().size());
+
+        var again = search.analyze(board, 2, 3, () -> false, null);
+        assertTrue(again.getNodes() < first.getNodes());
+        assertArrayEquals(first.getLines().get(0).getScore(), again.getLines().get(0).getScore());
+    }
+
+    /**
+     * a move back to a position of the game is scored as a draw without searching it
+     */
+    @Test
+    void cycleTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        PositionHistoryTest.shuffleKnights(engine);
+        // the knights are out again, one move of black repeats a position
+        var knights = List.of(Pos.of("a3"), Pos.of("k6"));
+        for (var knight : knights) {
+            assertTrue(engine.move(knight, engine.legalMoves().destinations(knight).get(0)));
+        }
+        var board = engine.board();
+        var withGame = new MaxNSearch().analyze(board, 1, 2, () -> false, null);
+        var withoutGame = new MaxNSearch().analyze(Board.copyOf(board).withPackedMoves(new int[0], 0), 1, 2,
+                () -> false, null);
+        assertTrue(withGame.getNodes() < withoutGame.getNodes());
+    }
+}
@@ -0,0 +1,46 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Pos;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The opening the tests play to get a game with a few moves: ten legal moves, each given by the squares it moves
+ * from and to.
+ */
+public class OpeningMoves {
+    public static final List<String> OPENING = List.of("b1", "c1", "e1", "e2", "e12", "e11", "b2", "c2", "f2", "f3",
+            "f12", "f11", "b3", "d3", "g3", "g5", "g12", "g10", "a3", "d5");
+
+    private OpeningMoves() {
+    }
+
+    /**
+     * @return the board of a new game with the first moves of the opening played
+     */
+    public static Board play(int moves) {
+        return play(new DreierschachEngineImpl().startGame(), moves);
+    }
+
+    /**
+     * plays the next moves of the opening, starting with the first one
+     *
+     * @return the board of the engine
+     */
+    public static Board play(DreierschachEngine engine, int moves) {
+        play(engine, OPENING.subList(0, 2 * moves).toArray(String[]::new));
+        return engine.board();
+    }
+
+    /**
+     * plays the moves given by their squares
+     */
+    public static void play(DreierschachEngine engine, String... squares) {
+        for (int i = 0; i < squares.length; i += 2) {
+            assertTrue(engine.move(Pos.of(squares[i]), Pos.of(squares[i + 1])), squares[i] + "-" + squares[i + 1]);
+        }
+    }
+}
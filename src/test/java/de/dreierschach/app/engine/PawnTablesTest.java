@@ -0,0 +1,177 @@
+package de.dreierschach.app.engine;
+
+import de.dreierschach.app.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PawnTablesTest {
+    private static final Figure[] PAWNS = {Figure.WHITE_PAWN, Figure.BROWN_PAWN, Figure.BLACK_PAWN};
+
+    @ParameterizedTest
+    @EnumSource(Color.class)
+    void testIsForward(Color color) {
+        for (var type : Dir.Type.values()) {
+            for (int i = 0; i < type.size(); i++) {
+                var dir = Dir.get(type, i);
+                assertEquals(isForward(dir, color), PawnTables.isForward(dir, color), color + " " + type + " " + i);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Color.class)
+    void testBaselineAndPromotion(Color color) {
+        for (int s = 0; s < Pos.SQUARES; s++) {
+            var pos = Pos.square(s);
+            assertEquals(isPawnBaseline(pos, color), PawnTables.isPawnBaseline(pos, color), pos.toString());
+            assertEquals(isBaseline(pos), pos.isBaseline(pos), pos.toString());
+            var own = isBaseline(pos) && isPawnBaseline(Pos.add(pos, forward(color)), color);
+            assertEquals(isBaseline(pos) && !own, PawnTables.isPromotion(pos, color), pos.toString());
+        }
+        assertEquals(false, PawnTables.isPawnBaseline(Pos.NONE, color));
+        assertEquals(false, PawnTables.isPromotion(Pos.NONE, color));
+    }
+
+    @Test
+    void testPawnMovesOnRandomBoards() {
+        var random = new Random(4711);
+        var engine = new DreierschachEngineImpl();
+        var board = engine.board();
+        var figures = Figure.values();
+        for (int round = 0; round < 200; round++) {
+            board.clear();
+            for (int s = 0; s < Pos.SQUARES; s++) {
+                if (random.nextInt(3) == 0) {
+                    board.set(figures[random.nextInt(figures.length)], Pos.square(s));
+                }
+            }
+            for (int s = 0; s < Pos.SQUARES; s++) {
+                var pos = Pos.square(s);
+                for (var pawn : PAWNS) {
+                    var saved = board.get(pos);
+                    board.set(pawn, pos);
+                    var expected = new HashSet<Pos>();
+                    for (int d = 0; d < Pos.SQUARES; d++) {
+                        var destination = Pos.square(d);
+                        if (isValidPawnMove(board, pos, destination)) {
+                            expected.add(destination);
+                        }
+                    }
+                    var actual = new HashSet<Pos>();
+                    engine.addPawnMoves(board, pos, actual);
+                    assertEquals(expected, actual, pawn + " on " + pos);
+                    for (int d = 0; d < Pos.SQUARES; d++) {
+                        var destination = Pos.square(d);
+                        var f2 = board.get(destination);
+                        if (f2 != Figure.NONE && f2.getColor() == pawn.getColor() || destination.equals(pos)) {
+                            continue;
+                        }
+                        var move = new Move(pos, pawn, destination, f2);
+                        var valid = f2 == Figure.NONE ? engine.isValidMovePawn(board, move)
+                                : engine.isValidKillPawn(board, move);
+                        assertEquals(expected.contains(destination), valid, pawn + " " + pos + "-" + destination);
+                    }
+                    board.set(saved, pos);
+                }
+            }
+        }
+    }
+
+    // the rules as they were implemented before the tables
+
+    private static boolean isValidPawnMove(Board b, Pos p1, Pos p2) {
+        var f1 = b.get(p1);
+        var f2 = b.get(p2);
+        if (p1.equals(p2) || f2 != Figure.NONE && f2.getColor() == f1.getColor()) {
+            return false;
+        }
+        var dirDistance = Dir.find(p1, p2).orElse(null);
+        if (dirDistance == null || !isForward(dirDistance.getLeft(), f1.getColor())) {
+            return false;
+        }
+        var dir = dirDistance.getLeft();
+        var distance = dirDistance.getRight();
+        if (f2 != Figure.NONE) {
+            if (dir.getType() != Dir.Type.diagonal || distance != 1) {
+                return false;
+            }
+            var straight = Dir.get(Dir.Type.straight, dir.getIndex());
+            return b.get(Pos.add(p1, straight)) == Figure.NONE
+                    || b.get(Pos.add(p1, Dir.rotateRight(straight))) == Figure.NONE;
+        }
+        if (dir.getType() != Dir.Type.straight) {
+            return false;
+        }
+        var single = Pos.add(p1, dir);
+        if (distance == 1) {
+            return b.get(single) == Figure.NONE;
+        }
+        return distance == 2 && isPawnBaseline(p1, f1.getColor()) && single.isValid()
+                && b.get(single) == Figure.NONE && b.get(p2) == Figure.NONE;
+    }
+
+    private static boolean isForward(Dir dir, Color color) {
+        var i = dir.getIndex();
+        switch (dir.getType()) {
+            case jump:
+                switch (color) {
+                    case WHITE:
+                        return i >= 0 && i <= 5;
+                    case BROWN:
+                        return i >= 4 && i <= 9;
+                    default:
+                        return i >= 8 || i <= 2;
+                }
+            case diagonal:
+                switch (color) {
+                    case WHITE:
+                        return i >= 0 && i <= 2;
+                    case BROWN:
+                        return i >= 2 && i <= 4;
+                    default:
+                        return i >= 4 || i == 0;
+                }
+            default:
+                switch (color) {
+                    case WHITE:
+                        return i == 1 || i == 2;
+                    case BROWN:
+                        return i == 3 || i == 4;
+                    default:
+                        return i == 5 || i == 0;
+                }
+        }
+    }
+
+    private static boolean isPawnBaseline(Pos pos, Color color) {
+        switch (color) {
+            case WHITE:
+                return pos.y() == 1;
+            case BROWN:
+                return pos.y() - pos.x() == 4;
+            default:
+                return pos.x() == 11;
+        }
+    }
+
+    private static boolean isBaseline(Pos pos) {
+        return pos.y() == 0 || pos.y() - pos.x() == 5 || pos.x() == 12;
+    }
+
+    private static Dir forward(Color color) {
+        switch (color) {
+            case WHITE:
+                return Dir.get(Dir.Type.straight, 1);
+            case BROWN:
+                return Dir.get(Dir.Type.straight, 3);
+            default:
+                return Dir.get(Dir.Type.straight, 0);
+        }
+    }
+}
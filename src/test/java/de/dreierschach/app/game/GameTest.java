@@ -0,0 +1,231 @@
+package de.dreierschach.app.game;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.BoardSnapshot;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void commandsInOrderTest() throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(4);
+        var game = new Game("order", new DreierschachEngineImpl().startGame(), executor);
+        var processed = new ArrayList<Integer>();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        var threads = new ArrayList<Thread>();
+        var start = new CountDownLatch(1);
+        for (int t = 0; t < 4; t++) {
+            var thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    var value = thread * 1000 + i;
+                    // no lock: the commands of the game never run at the same time
+                    var future = game.execute(engine -> processed.add(value));
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        synchronized (futures) {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+        // read in the mailbox, after all commands submitted before
+        var result = game.submit(engine -> List.copyOf(processed)).join();
+        assertEquals(4000, result.size());
+        var last = new int[]{-1, -1, -1, -1};
+        for (var value : result) {
+            assertTrue(value % 1000 > last[value / 1000]);
+            last[value / 1000] = value % 1000;
+        }
+        assertEquals(4001, game.getProcessed());
+        assertEquals(0, game.getQueued());
+        game.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void batchTest() {
+        var tasks = new ArrayList<Runnable>();
+        var game = new Game("batch", new DreierschachEngineImpl().startGame(), tasks::add);
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < Game.BATCH_SIZE + 5; i++) {
+            var value = i;
+            futures.add(game.submit(engine -> value));
+        }
+        // the first command schedules the mailbox once, a full batch schedules the rest
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertEquals(Game.BATCH_SIZE, game.getProcessed());
+        assertEquals(5, game.getQueued());
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertTrue(tasks.isEmpty());
+        assertEquals(Game.BATCH_SIZE + 4, futures.get(Game.BATCH_SIZE + 4).join());
+
+        game.submit(engine -> 0);
+        assertEquals(1, tasks.size());
+        game.close();
+    }
+
+    @Test
+    void failingCommandTest() {
+        var game = new Game("failing", new DreierschachEngineImpl().startGame(), Runnable::run);
+        var failed = game.submit(engine -> {
+            throw new IllegalStateException("failed");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertTrue(game.move(Pos.of("b1"), Pos.of("c1"), null).join());
+        game.close();
+    }
+
+    @Test
+    void replyTest() {
+        var game = new Game("reply", new DreierschachEngineImpl().startGame(), Runnable::run);
+        var reply = game.reply((position, clock) -> Optional.of(position.createMove(Pos.of("b1"), Pos.of("c1"))));
+        assertTrue(reply.join());
+        assertEquals(1, game.submit(engine -> engine.board().getMoveCount()).join());
+
+        // the position changes while the computer thinks, its move is not played
+        var stale = game.reply((position, clock) -> {
+            assertTrue(game.move(Pos.of("e1"), Pos.of("e2"), null).join());
+            return Optional.of(new Move(Pos.of("e1"), position.get(Pos.of("e1")), Pos.of("e2"), null));
+        });
+        assertFalse(stale.join());
+        assertEquals(2, game.submit(engine -> engine.board().getMoveCount()).join());
+        assertFalse(game.reply((position, clock) -> Optional.empty()).join());
+        game.close();
+    }
+
+    @Test
+    void snapshotTest() {
+        var game = new Game("snapshot", new DreierschachEngineImpl().startGame(), Runnable::run);
+        var published = new ArrayList<BoardSnapshot>();
+        var remove = game.onSnapshot(published::add);
+        var first = game.snapshot();
+        // reads do not publish
+        game.submit(engine -> engine.board().getMoveCount()).join();
+        assertSame(first, game.snapshot());
+        assertTrue(published.isEmpty());
+
+        assertTrue(game.move(Pos.of("b1"), Pos.of("c1"), null).join());
+        var second = game.snapshot();
+        assertEquals(List.of(second), published);
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertEquals(1, second.getMoveCount());
+        assertEquals(Figure.WHITE_PAWN, second.get(Pos.of("c1")));
+        assertEquals(0, first.getMoveCount());
+
+        remove.run();
+        assertTrue(game.move(Pos.of("e1"), Pos.of("e2"), null).join());
+        assertEquals(1, published.size());
+        assertEquals(2, game.snapshot().getMoveCount());
+        game.close();
+    }
+
+    @Test
+    void pageOutTest() throws IOException {
+        var game = new Game("paged", () -> new DreierschachEngineImpl().startGame(), Runnable::run);
+        assertTrue(game.move(Pos.of("b1"), Pos.of("c1"), null).join());
+        var snapshot = game.snapshot();
+
+        // not idle for long enough
+        assertFalse(game.pageOut(dir, Duration.ofHours(1)).join());
+        assertTrue(game.pageOut(dir, Duration.ZERO).join());
+        assertFalse(game.isResident());
+        assertTrue(Files.exists(dir.resolve("paged.game")));
+        // the snapshot stays
+        assertSame(snapshot, game.snapshot());
+        assertFalse(game.pageOut(dir, Duration.ZERO).join());
+
+        // the next command reads the game back
+        assertTrue(game.move(Pos.of("e1"), Pos.of("e2"), null).join());
+        assertTrue(game.isResident());
+        assertFalse(Files.exists(dir.resolve("paged.game")));
+        assertEquals(2, game.snapshot().getMoveCount());
+        assertEquals(snapshot.getVersion() + 1, game.snapshot().getVersion());
+        assertEquals(Figure.WHITE_PAWN, game.snapshot().get(Pos.of("c1")));
+        assertEquals(snapshot.getId(), game.snapshot().getId());
+        // the moves before the page out can be taken back
+        assertTrue(game.submit(engine -> engine.undoLastMove() && engine.undoLastMove()).join());
+        assertEquals(Figure.WHITE_PAWN, game.snapshot().get(Pos.of("b1")));
+
+        // watched games stay
+        game.execute(engine -> engine.board().addMoveListener(e -> {
+        })).join();
+        assertFalse(game.pageOut(dir, Duration.ZERO).join());
+        game.close();
+
+        // games without a factory of their engine stay
+        var fixed = new Game("fixed", new DreierschachEngineImpl().startGame(), Runnable::run);
+        assertFalse(fixed.isPageable());
+        assertFalse(fixed.pageOut(dir, Duration.ZERO).join());
+        assertTrue(fixed.isResident());
+        fixed.close();
+    }
+
+    @Test
+    void registryTest() {
+        var registry = new GameRegistry(new DreierschachEngineImpl().startGame(), 1, dir, Duration.ZERO, 10);
+        registry.main();
+        var game = registry.register("registered", () -> new DreierschachEngineImpl().startGame());
+        assertEquals(1, registry.pageOutIdle().join());
+        assertTrue(registry.main().isResident());
+        assertFalse(game.isResident());
+        assertEquals(0, registry.pageOutIdle().join());
+
+        assertEquals(0, game.submit(engine -> engine.board().getMoveCount()).join());
+        assertTrue(game.isResident());
+        registry.remove("registered");
+        registry.close();
+    }
+
+    @Test
+    void tableTest() {
+        var registry = new GameRegistry(new DreierschachEngineImpl().startGame(), 1, dir, Duration.ZERO, 2);
+        registry.main();
+        var table = registry.table("table-1");
+        assertSame(table, registry.table("table-1"));
+        assertTrue(table.isPageable());
+        assertThrows(IllegalArgumentException.class, () -> registry.table(GameRegistry.MAIN));
+        assertThrows(IllegalArgumentException.class, () -> registry.table("../table"));
+        assertThrows(IllegalStateException.class, () -> registry.table("table-2"));
+
+        // the table nobody watches is paged out and read back by its next move
+        assertTrue(table.move(Pos.of("b1"), Pos.of("c1"), null).join());
+        assertEquals(1, registry.pageOutIdle().join());
+        assertFalse(table.isResident());
+        assertTrue(table.move(Pos.of("e1"), Pos.of("e2"), null).join());
+        assertEquals(2, table.snapshot().getMoveCount());
+        registry.close();
+    }
+}
@@ -0,0 +1,138 @@
+package de.dreierschach.app.model;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.engine.OpeningMoves;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardSnapshotTest {
+    @Test
+    void versionTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        var board = engine.board();
+        var first = BoardSnapshot.of(board);
+        assertTrue(first.matches(board));
+        assertEquals(0, first.getVersion());
+
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        assertFalse(first.matches(board));
+        var second = first.next(board);
+        assertTrue(second.matches(board));
+        assertEquals(1, second.getVersion());
+
+        // the first version is not changed by the move
+        assertEquals(Figure.WHITE_PAWN, first.get(Pos.of("b1")));
+        assertEquals(Figure.NONE, first.get(Pos.of("c1")));
+        assertEquals(Color.WHITE, first.getPlayer());
+        assertEquals(0, first.getMoveCount());
+        assertEquals(Figure.NONE, second.get(Pos.of("b1")));
+        assertEquals(Figure.WHITE_PAWN, second.get(Pos.of("c1")));
+        assertEquals(Color.BROWN, second.getPlayer());
+        assertEquals(1, second.getMoveCount());
+        assertEquals(Pos.of("c1"), second.getMove(0).p2());
+    }
+
+    @Test
+    void sharingTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        var board = engine.board();
+        var snapshot = BoardSnapshot.of(board);
+        for (int i = 0; i < 6; i++) {
+            OpeningMoves.play(engine, OpeningMoves.OPENING.get(2 * i), OpeningMoves.OPENING.get(2 * i + 1));
+            var next = snapshot.next(board);
+            var shared = 0;
+            for (int c = 0; c * BoardSnapshot.SQUARES_CHUNK < Pos.SQUARES; c++) {
+                // the chunks are not exposed, a shared chunk shows the same figures for all its squares
+                if (sameChunk(snapshot, next, c)) {
+                    shared++;
+                }
+            }
+            assertTrue(shared >= 5, "shared chunks " + shared);
+            snapshot = next;
+        }
+        var copy = snapshot.toBoard();
+        assertEquals(board.getHash(), copy.getHash());
+        assertEquals(board.getMoveCount(), copy.getMoveCount());
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            assertEquals(board.getPackedMove(i), copy.getPackedMove(i));
+        }
+        assertTrue(snapshot.matches(copy));
+    }
+
+    @Test
+    void movesTest() {
+        var board = new Board();
+        board.setup();
+        var snapshot = BoardSnapshot.of(board);
+        var move = PackedMove.of(Pos.of("b1").index(), Figure.WHITE_PAWN, Pos.of("c1").index(), Figure.NONE);
+        var moves = new int[BoardSnapshot.MOVES_CHUNK * 2 + 3];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = move + i % 2;
+            board.withPackedMoves(moves, i + 1);
+            snapshot = snapshot.next(board);
+        }
+        assertEquals(moves.length, snapshot.getMoveCount());
+        for (int i = 0; i < moves.length; i++) {
+            assertEquals(moves[i], snapshot.getPackedMove(i));
+        }
+        // a move taken back and replaced by another one
+        moves[moves.length - 1] = move + 7;
+        board.withPackedMoves(moves, moves.length);
+        assertFalse(snapshot.matches(board));
+        assertEquals(move + 7, snapshot.next(board).getPackedMove(moves.length - 1));
+        var last = snapshot;
+        assertThrows(IndexOutOfBoundsException.class, () -> last.getPackedMove(moves.length));
+    }
+
+    /**
+     * the next version reads the changes recorded by the board, all of them if another snapshot has been taken since
+     */
+    @Test
+    void changesTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        var board = engine.board();
+        var first = BoardSnapshot.of(board);
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        var second = first.next(board);
+        assertTrue(engine.undoLastMove());
+        var third = second.next(board);
+        assertEquals(0, third.getMoveCount());
+        assertEquals(Figure.WHITE_PAWN, third.get(Pos.of("b1")));
+        assertEquals(Figure.NONE, third.get(Pos.of("c1")));
+
+        assertTrue(engine.move(Pos.of("b2"), Pos.of("c2")));
+        var other = BoardSnapshot.of(board);
+        assertTrue(engine.move(Pos.of("e1"), Pos.of("e2")));
+        // the changes since the third version are not recorded any more
+        var fourth = third.next(board);
+        assertTrue(fourth.matches(board));
+        assertTrue(other.next(board).matches(board));
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            assertEquals(board.get(Pos.square(i)), fourth.get(Pos.square(i)));
+        }
+        assertEquals(board.getPackedMove(0), fourth.getPackedMove(0));
+        assertEquals(board.getPackedMove(1), fourth.getPackedMove(1));
+    }
+
+    @Test
+    void jsonTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        var snapshot = BoardSnapshot.of(engine.board());
+        var json = snapshot.toJson();
+        assertSame(json, snapshot.toJson());
+        assertTrue(json.contains(engine.board().getId()));
+    }
+
+    private static boolean sameChunk(BoardSnapshot a, BoardSnapshot b, int chunk) {
+        for (int i = chunk * BoardSnapshot.SQUARES_CHUNK;
+             i < Math.min(Pos.SQUARES, (chunk + 1) * BoardSnapshot.SQUARES_CHUNK); i++) {
+            if (a.get(Pos.square(i)) != b.get(Pos.square(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package de.dreierschach.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameClockTest {
+    private long now;
+
+    private GameClock clock(long initial, long increment, long delay) {
+        return new GameClock(new TimeControl(Duration.ofSeconds(initial), Duration.ofSeconds(increment),
+                Duration.ofSeconds(delay)), () -> now);
+    }
+
+    private void wait(int seconds) {
+        now += Duration.ofSeconds(seconds).toNanos();
+    }
+
+    @Test
+    void incrementTest() {
+        var clock = clock(60, 5, 0);
+        assertTrue(clock.getRunning().isEmpty());
+        clock.start(Color.WHITE);
+        wait(10);
+        assertEquals(Duration.ofSeconds(50), clock.remaining(Color.WHITE));
+        assertTrue(clock.moved(Color.WHITE));
+        assertEquals(Duration.ofSeconds(55), clock.remaining(Color.WHITE));
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+        wait(20);
+        assertEquals(Duration.ofSeconds(55), clock.remaining(Color.WHITE));
+        assertEquals(Duration.ofSeconds(40), clock.remaining(Color.BROWN));
+        assertTrue(clock.moved(Color.BROWN));
+        assertEquals(Color.BLACK, clock.getRunning().orElseThrow());
+        assertTrue(clock.moved(Color.BLACK));
+        assertEquals(Color.WHITE, clock.getRunning().orElseThrow());
+    }
+
+    @Test
+    void delayTest() {
+        var clock = clock(60, 0, 3);
+        clock.start(Color.WHITE);
+        wait(2);
+        assertEquals(Duration.ofSeconds(60), clock.remaining(Color.WHITE));
+        wait(3);
+        assertEquals(Duration.ofSeconds(58), clock.remaining(Color.WHITE));
+        assertTrue(clock.moved(Color.WHITE));
+        assertEquals(Duration.ofSeconds(58), clock.remaining(Color.WHITE));
+    }
+
+    /**
+     * a move taken back gives the player the time before the move, without the increment
+     */
+    @Test
+    void undoTest() {
+        var clock = clock(60, 5, 0);
+        clock.start(Color.WHITE);
+        wait(10);
+        assertTrue(clock.moved(Color.WHITE));
+        assertEquals(Duration.ofSeconds(55), clock.remaining(Color.WHITE));
+        wait(20);
+        clock.undo(Color.WHITE);
+        assertEquals(Color.WHITE, clock.getRunning().orElseThrow());
+        assertEquals(Duration.ofSeconds(60), clock.remaining(Color.BROWN));
+        assertEquals(Duration.ofSeconds(60), clock.remaining(Color.WHITE));
+        wait(5);
+        assertEquals(Duration.ofSeconds(55), clock.remaining(Color.WHITE));
+
+        // nothing to take back, the clock is started only
+        clock.reset();
+        clock.undo(Color.BROWN);
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+        assertEquals(Duration.ofSeconds(60), clock.remaining(Color.BROWN));
+    }
+
+    @Test
+    void flagTest() {
+        var clock = clock(10, 5, 0);
+        clock.start(Color.WHITE);
+        wait(9);
+        assertTrue(clock.getFlagged().isEmpty());
+        wait(1);
+        assertEquals(Set.of(Color.WHITE), clock.getFlagged());
+        assertEquals(Duration.ZERO, clock.remaining(Color.WHITE));
+        assertFalse(clock.moved(Color.WHITE));
+        clock.start(Color.WHITE);
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+
+        clock.reset();
+        assertTrue(clock.getFlagged().isEmpty());
+        assertEquals(Duration.ofSeconds(10), clock.remaining(Color.WHITE));
+    }
+
+    /**
+     * the clock of the next player starts when the time has run out, the other two players play on
+     */
+    @Test
+    void playOnTest() {
+        var clock = clock(10, 0, 0);
+        clock.start(Color.WHITE);
+        wait(12);
+        assertEquals(Set.of(Color.WHITE), clock.getFlagged());
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+        assertEquals(Duration.ofSeconds(8), clock.remaining(Color.BROWN));
+        assertTrue(clock.moved(Color.BROWN));
+        assertEquals(Color.BLACK, clock.getRunning().orElseThrow());
+        assertEquals(Color.BROWN, clock.next(Color.BLACK));
+        wait(1);
+        assertTrue(clock.moved(Color.BLACK));
+        assertEquals(Color.BROWN, clock.getRunning().orElseThrow());
+        assertFalse(clock.isOver());
+
+        wait(8);
+        assertEquals(Set.of(Color.WHITE, Color.BROWN), clock.getFlagged());
+        assertTrue(clock.isOver());
+        assertTrue(clock.getRunning().isEmpty());
+        assertFalse(clock.moved(Color.BLACK));
+        assertEquals(Duration.ofSeconds(9), clock.remaining(Color.BLACK));
+    }
+}
@@ -0,0 +1,54 @@
+package de.dreierschach.app.model;
+
+import de.dreierschach.app.engine.OpeningMoves;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryNavigatorTest {
+    @Test
+    void seekTest() {
+        var game = new Board();
+        game.setup();
+        var positions = new ArrayList<Board>();
+        positions.add(Board.copyOf(game));
+        var moves = OpeningMoves.OPENING;
+        for (int i = 0; i < moves.size(); i += 2) {
+            game.doMove(game.createMove(Pos.of(moves.get(i)), Pos.of(moves.get(i + 1))));
+            game.nextPlayer();
+            positions.add(Board.copyOf(game));
+        }
+
+        var changes = new ArrayList<Pos>();
+        var navigator = new HistoryNavigator(game, 3);
+        navigator.board().addFieldChangeListener(e -> changes.add(e.getPos()));
+
+        for (var ply : List.of(10, 0, 4, 5, 6, 9, 3, 7, 8, 1, 2, 10, 100, -1)) {
+            navigator.seek(ply);
+            var expected = Math.max(0, Math.min(ply, 10));
+            assertEquals(expected, navigator.ply());
+            assertSamePosition(positions.get(expected), navigator.board());
+        }
+        assertTrue(navigator.toEnd().isAtEnd());
+
+        changes.clear();
+        navigator.seek(7).forward();
+        changes.clear();
+        navigator.forward();
+        assertEquals(9, navigator.ply());
+        // a single move only changes its source and destination field
+        assertEquals(2, changes.size());
+    }
+
+    private static void assertSamePosition(Board expected, Board actual) {
+        assertEquals(expected.getPlayer(), actual.getPlayer());
+        for (int y = 0; y < 13; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertEquals(expected.get(Pos.of(x, y)), actual.get(Pos.of(x, y)), "at " + Pos.of(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.dreierschach.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedMoveTest {
+
+    @Test
+    void ofTest() {
+        var move = PackedMove.of(Pos.of("a4").index(), Figure.WHITE_KING, Pos.of("a2").index(), Figure.NONE);
+        assertEquals(Pos.of("a4").index(), PackedMove.source(move));
+        assertEquals(Pos.of("a2").index(), PackedMove.destination(move));
+        assertEquals(Figure.WHITE_KING, PackedMove.moved(move));
+        assertEquals(Figure.NONE, PackedMove.captured(move));
+        assertEquals(Move.Casteling.KING_SIDE_CASTELING, PackedMove.casteling(move));
+        assertNull(PackedMove.promotion(move));
+        assertFalse(PackedMove.isEnPassant(move));
+        assertFalse(PackedMove.isDisablesCasteling(move));
+
+        var promotion = PackedMove.of(Pos.of("i12").index(), Figure.WHITE_PAWN, Pos.of("i13").index(),
+                Figure.BROWN_ROOK);
+        assertEquals(FigureType.QUEEN, PackedMove.promotion(promotion));
+        assertEquals(FigureType.KNIGHT, PackedMove.promotion(PackedMove.withPromotion(promotion, FigureType.KNIGHT)));
+    }
+
+    @Test
+    void flagsTest() {
+        var move = PackedMove.of(Pos.of("e5").index(), Figure.BLACK_PAWN, Pos.of("d4").index(), Figure.NONE);
+        var enPassant = PackedMove.withEnPassant(move, Figure.WHITE_PAWN);
+        assertTrue(PackedMove.isEnPassant(enPassant));
+        assertNull(PackedMove.promotion(enPassant));
+        assertEquals(Figure.WHITE_PAWN, PackedMove.captured(enPassant));
+        assertEquals(PackedMove.source(move), PackedMove.source(enPassant));
+        assertEquals(PackedMove.destination(move), PackedMove.destination(enPassant));
+
+        var disables = PackedMove.withDisablesCasteling(enPassant);
+        assertTrue(disables < 0);
+        assertTrue(PackedMove.isDisablesCasteling(disables));
+        assertEquals(Figure.BLACK_PAWN, PackedMove.moved(disables));
+    }
+
+    @Test
+    void roundTripTest() {
+        for (var check : Move.Check.values()) {
+            for (var disables : new boolean[]{false, true}) {
+                var move = new Move(Pos.of("m13"), Figure.BLACK_QUEEN, Pos.of("a1"), Figure.WHITE_ROOK, check,
+                        Move.Casteling.QUEEN_SIDE_CASTELING, disables, FigureType.BISHOP, false);
+                var decoded = PackedMove.toMove(PackedMove.of(move));
+                assertEquals(move.p1(), decoded.p1());
+                assertEquals(move.f1(), decoded.f1());
+                assertEquals(move.p2(), decoded.p2());
+                assertEquals(move.f2(), decoded.f2());
+                assertEquals(check, decoded.check());
+                assertEquals(move.casteling(), decoded.casteling());
+                assertEquals(disables, decoded.isDisablesCasteling());
+                assertEquals(FigureType.BISHOP, decoded.promotion());
+                assertFalse(decoded.isEnPassant());
+            }
+        }
+    }
+}
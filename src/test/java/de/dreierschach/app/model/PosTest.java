@@ -9,6 +9,7 @@ import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class PosTest {
     @Test
@@ -53,6 +54,36 @@ class PosTest {
         assertEquals(-1, pos.y());
     }
 
+    @Test
+    void testFlyweight() {
+        assertSame(Pos.of(3, 4), Pos.of(3, 4));
+        assertSame(Pos.of("e4"), Pos.of(3, 4));
+        assertSame(Pos.NONE, Pos.of(""));
+        assertSame(Pos.of(4, 6), Pos.add(Pos.of(3, 4), Pos.of(1, 2)));
+        assertSame(Pos.of(2, 2), Pos.sub(Pos.of(3, 4), Pos.of(1, 2)));
+        assertSame(Pos.of(-3, -6), Pos.mult(Pos.of(1, 2), -3));
+        assertSame(Pos.of(1, 2), Pos.of(Dir.get(Dir.Type.diagonal, 1)));
+        assertEquals(Pos.of(100, 100), Pos.of(100, 100));
+    }
+
+    @Test
+    void testIndex() {
+        var count = 0;
+        for (int y = -1; y <= 13; y++) {
+            for (int x = -1; x <= 13; x++) {
+                var pos = Pos.of(x, y);
+                if (pos.isValid()) {
+                    assertEquals(count, pos.index());
+                    assertSame(pos, Pos.square(count));
+                    count++;
+                } else {
+                    assertEquals(-1, pos.index());
+                }
+            }
+        }
+        assertEquals(Pos.SQUARES, count);
+    }
+
     @Test
     void testCreate3() {
         var p1 = Pos.of(3, 4);
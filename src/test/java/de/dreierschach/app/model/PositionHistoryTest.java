@@ -0,0 +1,108 @@
+package de.dreierschach.app.model;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionHistoryTest {
+
+    @Test
+    void repetitionTest() {
+        var positions = new PositionHistory(1);
+        assertEquals(1, positions.push(2, false));
+        assertEquals(2, positions.push(1, false));
+        assertTrue(positions.isRepeated());
+        assertFalse(positions.isRepetition());
+        assertEquals(3, positions.push(1, false));
+        assertTrue(positions.isDraw());
+        positions.pop();
+        positions.pop();
+        assertFalse(positions.isRepeated());
+        assertEquals(1, positions.count(1));
+        assertEquals(2, positions.last());
+        positions.pop();
+        assertThrows(IllegalStateException.class, positions::pop);
+    }
+
+    @Test
+    void noProgressTest() {
+        var positions = new PositionHistory(0);
+        for (int i = 1; i < PositionHistory.NO_PROGRESS_PLIES; i++) {
+            positions.push(i, i == 10);
+        }
+        assertEquals(PositionHistory.NO_PROGRESS_PLIES - 10 - 1, positions.getQuietPlies());
+        for (int i = 1; i <= 11; i++) {
+            positions.push(-i, false);
+        }
+        assertTrue(positions.isNoProgress());
+        assertFalse(positions.isRepetition());
+        positions.pop();
+        assertFalse(positions.isDraw());
+    }
+
+    /**
+     * many equal hashes and hashes sharing their slots, pushed and popped at random, are counted like in a map
+     */
+    @Test
+    void countTest() {
+        var random = new Random(4711);
+        var positions = new PositionHistory(0);
+        var pushed = new ArrayList<Long>();
+        var expected = new HashMap<Long, Integer>();
+        expected.put(0L, 1);
+        for (int i = 0; i < 100_000; i++) {
+            if (!pushed.isEmpty() && random.nextInt(3) == 0) {
+                var hash = pushed.remove(pushed.size() - 1);
+                positions.pop();
+                expected.merge(hash, -1, Integer::sum);
+            } else {
+                var hash = (long) random.nextInt(500) << (random.nextBoolean() ? 10 : 40);
+                pushed.add(hash);
+                assertEquals(expected.merge(hash, 1, Integer::sum), positions.push(hash, false));
+            }
+            if (i % 1000 == 0) {
+                expected.forEach((hash, count) -> assertEquals(count, positions.count(hash)));
+            }
+        }
+        assertEquals(pushed.size() + 1, positions.size());
+    }
+
+    @Test
+    void ofTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        shuffleKnights(engine);
+        var positions = PositionHistory.of(engine.board());
+        assertEquals(7, positions.size());
+        assertEquals(engine.board().getPositionHash(), positions.last());
+        assertEquals(2, positions.count(positions.last()));
+        assertEquals(6, positions.getQuietPlies());
+        assertEquals(positions.count(positions.last()), engine.positions().count(positions.last()));
+
+        // a position not reached from the starting position
+        var board = Board.copyOf(engine.board());
+        board.set(Figure.NONE, Pos.of("a1"));
+        assertEquals(1, PositionHistory.of(board).size());
+    }
+
+    /**
+     * moves the knights of all players forth and back, to the starting position of the game
+     */
+    public static void shuffleKnights(DreierschachEngineImpl engine) {
+        var knights = List.of(Pos.of("a3"), Pos.of("k6"), Pos.of("h13"));
+        var targets = new ArrayList<Pos>();
+        for (var knight : knights) {
+            var target = engine.legalMoves().destinations(knight).get(0);
+            targets.add(target);
+            assertTrue(engine.move(knight, target));
+        }
+        for (int i = 0; i < knights.size(); i++) {
+            assertTrue(engine.move(targets.get(i), knights.get(i)));
+        }
+    }
+}
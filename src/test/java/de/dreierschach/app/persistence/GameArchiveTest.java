@@ -0,0 +1,69 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.engine.OpeningMoves;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Pos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameArchiveTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void archiveAndLoadTest() {
+        var first = OpeningMoves.play(2);
+        var second = OpeningMoves.play(6);
+
+        var archive = new GameArchive(dir);
+        assertEquals(0, archive.archive(first, null));
+        assertEquals(1, archive.archive(second, Color.BROWN));
+        archive.close();
+
+        var reopened = new GameArchive(dir);
+        assertEquals(2, reopened.size());
+        assertEquals(1, reopened.numberOf(second.getId()).orElseThrow());
+        assertEquals(Optional.of(Color.BROWN), reopened.header(1).getWinner());
+        assertEquals(Optional.empty(), reopened.header(0).getWinner());
+        assertEquals(2, reopened.moves(0).length);
+        assertEquals(second.getMoveCount(), reopened.moves(1).length);
+
+        var replayed = reopened.replay(1);
+        assertEquals(second.getId(), replayed.getId());
+        assertEquals(second.getPlayer(), replayed.getPlayer());
+        for (int y = 0; y < 13; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertEquals(second.get(Pos.of(x, y)), replayed.get(Pos.of(x, y)));
+            }
+        }
+        assertEquals(Color.BROWN, reopened.replay(1, 1).getPlayer());
+        reopened.close();
+    }
+
+    @Test
+    void growTest() {
+        var archive = new GameArchive(dir);
+        var game = OpeningMoves.play(2);
+        // more games than the first chunk of the index holds
+        for (int i = 0; i < 1500; i++) {
+            game.setId(UUID.randomUUID().toString());
+            assertEquals(i, archive.archive(game, Color.WHITE));
+        }
+        assertEquals(2, archive.moves(1499).length);
+        archive.close();
+
+        var reopened = new GameArchive(dir);
+        assertEquals(1500, reopened.size());
+        assertEquals(game.getId(), reopened.header(1499).getId().toString());
+        assertEquals(1500, reopened.archive(OpeningMoves.play(1), null));
+        assertEquals(1, reopened.moves(1500).length);
+        assertEquals(2, reopened.moves(1499).length);
+        reopened.close();
+    }
+}
@@ -0,0 +1,151 @@
+package de.dreierschach.app.persistence;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.engine.OpeningMoves;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Move;
+import de.dreierschach.app.model.Pos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void moveCodecTest() {
+        var move = new Move(Pos.of("a4"), Figure.WHITE_KING, Pos.of("a2"), Figure.NONE).withDisablesCasteling();
+        var decoded = MoveCodec.decode(MoveCodec.encode(move));
+        assertEquals(move.p1(), decoded.p1());
+        assertEquals(move.p2(), decoded.p2());
+        assertEquals(move.f1(), decoded.f1());
+        assertEquals(move.f2(), decoded.f2());
+        assertEquals(Move.Casteling.KING_SIDE_CASTELING, decoded.casteling());
+        assertTrue(decoded.isDisablesCasteling());
+        assertNull(decoded.promotion());
+        assertFalse(decoded.isEnPassant());
+    }
+
+    @Test
+    void moveCodecPromotionAndEnPassantTest() {
+        var promotion = new Move(Pos.of("e1"), Figure.WHITE_PAWN, Pos.of("f1"), Figure.BROWN_ROOK)
+                .withPromotion(FigureType.KNIGHT);
+        var decoded = MoveCodec.decode(MoveCodec.encode(promotion));
+        assertEquals(FigureType.KNIGHT, decoded.promotion());
+        assertEquals(FigureType.KNIGHT, MoveCodec.promotion(MoveCodec.encode(promotion)));
+        assertFalse(decoded.isEnPassant());
+
+        var enPassant = new Move(Pos.of("d1"), Figure.BROWN_PAWN, Pos.of("c2"), Figure.NONE)
+                .withEnPassant(Figure.WHITE_PAWN);
+        decoded = MoveCodec.decode(MoveCodec.encode(enPassant));
+        assertTrue(decoded.isEnPassant());
+        assertNull(decoded.promotion());
+        assertEquals(Figure.WHITE_PAWN, decoded.f2());
+    }
+
+    @Test
+    void boardCodecTest() {
+        var board = OpeningMoves.play(6);
+        var decoded = BoardCodec.fromBytes(BoardCodec.toBytes(board));
+        assertBoardEquals(board, decoded);
+    }
+
+    @Test
+    void recoverWithoutSnapshotTest() {
+        var journal = new GameJournal(dir, 100);
+        var engine = new DreierschachEngineImpl().startGame();
+        journal.attach(engine.board());
+        OpeningMoves.play(engine, 2);
+        journal.close();
+
+        var id = engine.board().getId();
+        assertFalse(Files.exists(dir.resolve(id + GameJournal.SNAPSHOT_SUFFIX)));
+        var recovered = new GameJournal(dir, 100).recover(id).orElseThrow();
+        assertBoardEquals(engine.board(), recovered);
+    }
+
+    @Test
+    void recoverFromSnapshotTest() {
+        var journal = new GameJournal(dir, 4);
+        var engine = new DreierschachEngineImpl().startGame();
+        journal.attach(engine.board());
+        OpeningMoves.play(engine, 6);
+        journal.close();
+
+        var id = engine.board().getId();
+        assertTrue(Files.exists(dir.resolve(id + GameJournal.SNAPSHOT_SUFFIX)));
+        var recoveryJournal = new GameJournal(dir, 4);
+        assertEquals(List.of(id), recoveryJournal.gameIds());
+        var recovered = recoveryJournal.recover(id).orElseThrow();
+        assertBoardEquals(engine.board(), recovered);
+        assertEquals(Color.WHITE, recovered.getPlayer());
+    }
+
+    @Test
+    void recoverWithUndoTest() {
+        var journal = new GameJournal(dir, 4);
+        var engine = new DreierschachEngineImpl().startGame();
+        journal.attach(engine.board());
+        OpeningMoves.play(engine, 4);
+        assertTrue(engine.undoLastMove());
+        assertTrue(engine.undoLastMove());
+        assertTrue(engine.move(Pos.of("e12"), Pos.of("e11")));
+        journal.close();
+
+        var recovered = new GameJournal(dir, 4).recover(engine.board().getId()).orElseThrow();
+        assertBoardEquals(engine.board(), recovered);
+        assertEquals(3, recovered.getMoveCount());
+    }
+
+    @Test
+    void retryTest() throws Exception {
+        var journal = new GameJournal(dir, 100);
+        var engine = new DreierschachEngineImpl().startGame();
+        var id = engine.board().getId();
+        // the journal file can not be opened while a directory is in its place
+        var blocked = Files.createDirectory(dir.resolve(id + GameJournal.JOURNAL_SUFFIX));
+        journal.attach(engine.board());
+        OpeningMoves.play(engine, 2);
+        var flushed = new CompletableFuture<Void>();
+        new Thread(() -> {
+            journal.flush();
+            flushed.complete(null);
+        }).start();
+        Thread.sleep(300);
+        // the records are not acknowledged while they can not be written
+        assertFalse(flushed.isDone());
+
+        Files.delete(blocked);
+        flushed.get(10, TimeUnit.SECONDS);
+        journal.close();
+        assertEquals(2L * MoveCodec.BYTES, Files.size(dir.resolve(id + GameJournal.JOURNAL_SUFFIX)));
+        var recovered = new GameJournal(dir, 100).recover(id).orElseThrow();
+        assertBoardEquals(engine.board(), recovered);
+    }
+
+    private static void assertBoardEquals(Board expected, Board actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getPlayer(), actual.getPlayer());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        assertEquals(expected.getCheck(), actual.getCheck());
+        assertEquals(expected.getCastelingForbidden(), actual.getCastelingForbidden());
+        assertEquals(expected.getEnPassant(), actual.getEnPassant());
+        assertEquals(expected.getEnPassantPawn(), actual.getEnPassantPawn());
+        for (int y = 0; y < 13; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertEquals(expected.get(Pos.of(x, y)), actual.get(Pos.of(x, y)), "at " + Pos.of(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package de.dreierschach.app.tablebase;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.engine.MaxNSearch;
+import de.dreierschach.app.model.Board;
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import de.dreierschach.app.model.FigureType;
+import de.dreierschach.app.model.Pos;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TablebaseTest {
+    private static final Color[] COLORS = Color.values();
+    private static final Material KINGS = Material.of(Color.WHITE);
+
+    @TempDir
+    static Path dir;
+
+    private static Tablebases tablebases;
+
+    /**
+     * generates the table of the kings on first use, it takes some seconds, so the tests using it are tagged slow
+     */
+    private static synchronized Tablebases tablebases() {
+        if (tablebases == null) {
+            new TablebaseGenerator(2).generate(KINGS, dir);
+            tablebases = new Tablebases(dir);
+        }
+        return tablebases;
+    }
+
+    @AfterAll
+    static void close() {
+        if (tablebases != null) {
+            tablebases.close();
+        }
+    }
+
+    @Test
+    void materialTest() {
+        var material = Material.parse("BROWN-ROOK-QUEEN");
+        assertEquals("BROWN-QUEEN-ROOK", material.toString());
+        assertEquals(Material.of(Color.BROWN, FigureType.QUEEN, FigureType.ROOK), material);
+        assertEquals(Material.of(Color.BROWN, FigureType.QUEEN), material.without(1));
+        assertEquals(126L * 126 * 126 * 126 * 126 * 3, material.size());
+        assertThrows(IllegalArgumentException.class, () -> Material.parse("WHITE-PAWN"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TablebaseGenerator(1).generate(material, dir.resolve("too-big")));
+
+        var squares = new int[]{0, 125, 60, 17, 99};
+        var index = material.index(squares, 2);
+        var decoded = new int[5];
+        assertEquals(2, material.decode(index, decoded));
+        assertArrayEquals(squares, decoded);
+
+        var board = board(material, squares, 2);
+        assertEquals(material, Material.of(board, Color.WHITE).orElseThrow());
+        assertEquals(index, material.index(board));
+        board.set(Figure.BLACK_PAWN, Pos.square(30));
+        assertTrue(Material.of(board, Color.WHITE).isEmpty());
+    }
+
+    /**
+     * the moves of the tables are the legal moves of the engine
+     */
+    @Test
+    void movesTest() {
+        var random = new Random(7);
+        var types = new FigureType[]{FigureType.QUEEN, FigureType.ROOK, FigureType.BISHOP, FigureType.KNIGHT};
+        for (int n = 0; n < 300; n++) {
+            var material = Material.of(COLORS[random.nextInt(3)], types[random.nextInt(4)], types[random.nextInt(4)]);
+            var squares = distinctSquares(random, material.pieces());
+            var player = random.nextInt(3);
+            var board = board(material, squares, player);
+            var engine = new DreierschachEngineImpl().withBoard(board);
+            var expected = new HashSet<String>();
+            var legalMoves = engine.legalMoves();
+            for (int i = 0; i < Pos.SQUARES; i++) {
+                for (var destination : legalMoves.destinations(Pos.square(i))) {
+                    expected.add(Pos.square(i) + "-" + destination);
+                }
+            }
+            assertEquals(expected, moves(board, player), board.toString());
+        }
+    }
+
+    /**
+     * every decided position follows from its successors and the successors of every undecided position do not
+     * decide it
+     */
+    @Test
+    @Tag("slow")
+    void valuesTest() {
+        var tablebases = tablebases();
+        var table = new Tablebase(dir.resolve("WHITE.tb"));
+        assertEquals(KINGS, table.getMaterial());
+        var random = new Random(11);
+        var squares = new int[3];
+        var counts = new int[4];
+        for (int n = 0; n < 2000; n++) {
+            var index = (long) (random.nextDouble() * KINGS.size());
+            var player = KINGS.decode(index, squares);
+            var value = table.get(index);
+            counts[value.ordinal()]++;
+            if (value == Tablebase.Value.ILLEGAL) {
+                continue;
+            }
+            var board = board(KINGS, squares, player);
+            assertEquals(value, tablebases.probe(board).orElseThrow().getValue());
+            assertEquals(expected(tablebases, board), value, board.toString());
+        }
+        // kings-only endgames are decided, too: two kings working together may leave the third one without moves
+        assertTrue(counts[Tablebase.Value.WIN.ordinal()] > 0);
+        assertTrue(counts[Tablebase.Value.LOSS.ordinal()] > 0);
+        table.close();
+    }
+
+    @Test
+    @Tag("slow")
+    void probeTest() {
+        var tablebases = tablebases();
+        var board = board(KINGS, new int[]{0, 125, 60}, 0);
+        assertTrue(tablebases.probe(board).isPresent());
+        assertEquals(Color.WHITE, tablebases.probe(board).orElseThrow().getStrong());
+        board.enableCasteling(Color.BLACK);
+        assertTrue(tablebases.probe(board).isEmpty());
+        board.disableCasteling(Color.BLACK);
+        board.set(Figure.BROWN_QUEEN, Pos.square(30));
+        assertTrue(tablebases.probe(board).isEmpty());
+        assertTrue(new Tablebases(dir.resolve("missing")).probe(board).isEmpty());
+    }
+
+    /**
+     * the search keeps a won endgame
+     */
+    @Test
+    @Tag("slow")
+    void searchTest() {
+        var tablebases = tablebases();
+        var table = new Tablebase(dir.resolve("WHITE.tb"));
+        var random = new Random(3);
+        var squares = new int[3];
+        var found = 0;
+        while (found < 5) {
+            var index = (long) (random.nextDouble() * KINGS.size());
+            if (KINGS.decode(index, squares) != 0 || table.get(index) != Tablebase.Value.WIN) {
+                continue;
+            }
+            var board = board(KINGS, squares, 0);
+            var move = new MaxNSearch(tablebases).search(board, System.nanoTime() + 1_000_000_000L, 1).getMove();
+            var engine = new DreierschachEngineImpl().withBoard(Board.copyOf(board));
+            assertTrue(engine.move(move.p1(), move.p2()));
+            if (move.f2() == Figure.NONE) {
+                assertEquals(Tablebase.Value.WIN, tablebases.probe(engine.board()).orElseThrow().getValue());
+            }
+            found++;
+        }
+        table.close();
+    }
+
+    private static Tablebase.Value expected(Tablebases tablebases, Board board) {
+        var player = board.getPlayer();
+        var strong = player == Color.WHITE;
+        var moves = 0;
+        var all = true;
+        for (var move : moves(board, player.ordinal())) {
+            var squares = move.split("-");
+            var engine = new DreierschachEngineImpl().withBoard(Board.copyOf(board));
+            var victim = board.get(Pos.of(squares[1]));
+            assertTrue(engine.move(Pos.of(squares[0]), Pos.of(squares[1])));
+            var value = victim.getType() == FigureType.KING
+                    ? victim.getColor() == Color.WHITE ? Tablebase.Value.LOSS : Tablebase.Value.WIN
+                    : tablebases.probe(engine.board()).orElseThrow().getValue();
+            moves++;
+            if (value == (strong ? Tablebase.Value.WIN : Tablebase.Value.LOSS)) {
+                return value;
+            }
+            all &= value == (strong ? Tablebase.Value.LOSS : Tablebase.Value.WIN);
+        }
+        if (moves == 0 || all) {
+            return strong ? Tablebase.Value.LOSS : Tablebase.Value.WIN;
+        }
+        return Tablebase.Value.DRAW;
+    }
+
+    /**
+     * the legal moves computed with the lookups of the tables
+     */
+    private static Set<String> moves(Board board, int player) {
+        var occupant = new byte[Pos.SQUARES];
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = board.get(Pos.square(i));
+            occupant[i] = (byte) (figure == Figure.NONE ? 0 : figure.getColor().ordinal() + 1);
+        }
+        var result = new HashSet<String>();
+        var destinations = new int[128];
+        for (int source = 0; source < Pos.SQUARES; source++) {
+            var figure = board.get(Pos.square(source));
+            if (figure == Figure.NONE || figure.getColor().ordinal() != player) {
+                continue;
+            }
+            var count = Geometry.destinations(figure.getType(), source, occupant, destinations);
+            for (int d = 0; d < count; d++) {
+                var copy = occupant.clone();
+                copy[destinations[d]] = copy[source];
+                copy[source] = 0;
+                var king = figure.getType() == FigureType.KING ? destinations[d]
+                        : board.getKingsPosition(figure.getColor()).index();
+                if (!isAttacked(board, copy, king, destinations[d], player)) {
+                    result.add(Pos.square(source) + "-" + Pos.square(destinations[d]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isAttacked(Board board, byte[] occupant, int king, int captured, int player) {
+        for (int i = 0; i < Pos.SQUARES; i++) {
+            var figure = board.get(Pos.square(i));
+            if (figure != Figure.NONE && figure.getColor().ordinal() != player && i != captured
+                    && Geometry.attacks(figure.getType(), i, king, occupant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] distinctSquares(Random random, int count) {
+        var result = new int[count];
+        var used = new HashSet<Integer>();
+        for (int i = 0; i < count; i++) {
+            do {
+                result[i] = random.nextInt(Pos.SQUARES);
+            } while (!used.add(result[i]));
+        }
+        return result;
+    }
+
+    private static Board board(Material material, int[] squares, int player) {
+        var board = new Board();
+        var figures = material.getFigures();
+        for (int i = 0; i < squares.length; i++) {
+            var figure = i < COLORS.length ? Figure.of(COLORS[i], FigureType.KING)
+                    : Figure.of(material.getStrong(), figures[i - COLORS.length]);
+            board.set(figure, Pos.square(squares[i]));
+        }
+        board.setPlayer(COLORS[player]);
+        for (var color : COLORS) {
+            board.disableCasteling(color);
+        }
+        return board;
+    }
+}
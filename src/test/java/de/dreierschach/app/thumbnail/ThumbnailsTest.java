@@ -0,0 +1,76 @@
+package de.dreierschach.app.thumbnail;
+
+import de.dreierschach.app.engine.DreierschachEngineImpl;
+import de.dreierschach.app.model.BoardSnapshot;
+import de.dreierschach.app.model.Pos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void renderTest() throws IOException {
+        var snapshot = BoardSnapshot.of(new DreierschachEngineImpl().startGame().board());
+        var png = new ThumbnailRenderer().render(snapshot::get, Set.of(), 130);
+        var image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(130, image.getWidth());
+        assertEquals((int) Math.ceil(10.0 / Math.sqrt(3) * 2 * 10), image.getHeight());
+        // the corners are outside the board
+        assertEquals(0, image.getRGB(0, 0) >>> 24);
+    }
+
+    @Test
+    void cacheTest() {
+        var engine = new DreierschachEngineImpl().startGame();
+        var first = BoardSnapshot.of(engine.board());
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        var second = first.next(engine.board());
+
+        var thumbnails = new Thumbnails(1 << 20, "", 0, 1, 4);
+        var png = thumbnails.get(first, 128).join();
+        assertSame(png, thumbnails.get(first, 128).join());
+        assertNotSame(png, thumbnails.get(first, 256).join());
+        assertFalse(Arrays.equals(png, thumbnails.get(second, 128).join()));
+        assertTrue(thumbnails.getSize() > 3L * png.length);
+        assertThrows(IllegalArgumentException.class, () -> thumbnails.get(first, 10));
+        thumbnails.close();
+    }
+
+    @Test
+    void spillTest() throws IOException {
+        var engine = new DreierschachEngineImpl().startGame();
+        var first = BoardSnapshot.of(engine.board());
+        assertTrue(engine.move(Pos.of("b1"), Pos.of("c1")));
+        var second = first.next(engine.board());
+        Files.write(dir.resolve("old.png"), new byte[]{1});
+
+        // room for one thumbnail in memory, the other one is written to disk
+        var thumbnails = new Thumbnails(1, dir.toString(), 1 << 20, 1, 4);
+        assertFalse(Files.exists(dir.resolve("old.png")));
+        var png = thumbnails.get(first, 128).join();
+        var other = thumbnails.get(second, 128).join();
+        assertEquals(other.length, thumbnails.getSize());
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+
+        // read back from disk, the file is removed and the other thumbnail written
+        assertArrayEquals(png, thumbnails.get(first, 128).join());
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+        thumbnails.close();
+    }
+}
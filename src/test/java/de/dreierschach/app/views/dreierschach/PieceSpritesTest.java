@@ -0,0 +1,50 @@
+package de.dreierschach.app.views.dreierschach;
+
+import de.dreierschach.app.model.Color;
+import de.dreierschach.app.model.Figure;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PieceSpritesTest {
+
+    @Test
+    void indexTest() {
+        var indexes = new HashSet<Integer>();
+        for (var figure : Figure.values()) {
+            if (figure != Figure.NONE) {
+                var index = PieceSprites.index(figure);
+                assertTrue(index >= 0 && index < PieceSprites.ROWS * PieceSprites.COLUMNS);
+                assertTrue(indexes.add(index));
+            }
+        }
+        for (var color : Color.values()) {
+            assertTrue(indexes.add(PieceSprites.indexCheck(color)));
+        }
+        assertEquals(PieceSprites.ROWS * PieceSprites.COLUMNS, indexes.size());
+        assertEquals(-1, PieceSprites.index(Figure.NONE));
+    }
+
+    @Test
+    void sheetTest() {
+        var sprites = new PieceSprites();
+        var svg = new String(sprites.getSheet(), StandardCharsets.UTF_8);
+        assertEquals(PieceSprites.ROWS * PieceSprites.COLUMNS, svg.split("<image ", -1).length - 1);
+        assertTrue(sprites.getUrl().matches("sprites/pieces-[0-9a-f]{16}\\.svg"));
+        // the same images give the same name
+        assertEquals(sprites.getUrl(), new PieceSprites().getUrl());
+
+        var response = sprites.sheet(sprites.getUrl().substring("sprites/".length()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(sprites.getSheet(), response.getBody());
+        var cacheControl = response.getHeaders().getCacheControl();
+        assertTrue(cacheControl.contains("immutable"));
+        assertTrue(cacheControl.contains("max-age=31536000"));
+
+        assertEquals(HttpStatus.NOT_FOUND, sprites.sheet("pieces-0000000000000000.svg").getStatusCode());
+    }
+}